@@ -0,0 +1,37 @@
+package Benchmarks;
+
+import Banking.Portfolio;
+import Data.CandleManager;
+import Engine.Order;
+import Engine.OrderBook;
+
+/**
+ * Shared fixtures: every benchmark builds its books the same way so results
+ * are comparable between benchmarks and between runs.
+ */
+final class BenchmarkBooks {
+    static final String SYMBOL = "BENCH";
+    static final double MID = 100.00;
+    static final double TICK = 0.01;
+    static final long SEED = 42; // Fixed so every run sees the same order flow
+
+    private BenchmarkBooks() {}
+
+    // A book with its own candle manager, so nothing is shared between forks or benchmarks
+    static OrderBook newBook() {
+        return new OrderBook(SYMBOL, MID, TICK, new CandleManager(1000));
+    }
+
+    // Effectively unlimited cash; sells without stock simply go short
+    static Portfolio newTrader(String name) {
+        return new Portfolio(1e12, name);
+    }
+
+    // Rest one order of 'quantity' on each of 'depth' levels either side of MID
+    static void fill(OrderBook book, Portfolio trader, int depth, int quantity) {
+        for (int i = 1; i <= depth; i++) {
+            book.placeBuyOrder(book.createOrder(Order.Type.BUY, Order.Side.LIMIT, quantity, MID - i * TICK, trader));
+            book.placeSellOrder(book.createOrder(Order.Type.SELL, Order.Side.LIMIT, quantity, MID + i * TICK, trader));
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package Benchmarks;
+
+import Banking.Portfolio;
+import Engine.Order;
+import Engine.OrderBook;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cancel by id from a book resting 'depth' levels per side. The orders to
+ * cancel are placed between invocations (untimed) at random levels and are
+ * cancelled in random order, so most are removed from the middle of a queue.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CancelBenchmark {
+    static final int OPS = 1000;
+
+    @Param({"10", "100", "1000"})
+    int depth;
+
+    private OrderBook book;
+    private Portfolio trader;
+    private final double[] prices = new double[OPS];
+    private final int[] order = new int[OPS]; // Cancel sequence, a fixed shuffle of 0..OPS-1
+    private final int[] ids = new int[OPS];
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        book = BenchmarkBooks.newBook();
+        trader = BenchmarkBooks.newTrader("maker");
+        BenchmarkBooks.fill(book, trader, depth, 10);
+
+        Random random = new Random(BenchmarkBooks.SEED);
+        for (int i = 0; i < OPS; i++) {
+            prices[i] = BenchmarkBooks.MID - (1 + random.nextInt(depth)) * BenchmarkBooks.TICK;
+            order[i] = i;
+        }
+        for (int i = OPS - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void placeOrders() {
+        for (int i = 0; i < OPS; i++) {
+            Order o = book.createOrder(Order.Type.BUY, Order.Side.LIMIT, 5, prices[i], trader);
+            ids[i] = o.getId();
+            book.placeBuyOrder(o);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public void cancelById(Blackhole blackhole) {
+        for (int i = 0; i < OPS; i++) {
+            blackhole.consume(book.cancel(ids[order[i]]));
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package Benchmarks;
+
+import Data.CandleManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CandleManager.onTrade across every TimeFrame. 'millisPerTrade' sets how
+ * far the clock moves between trades: 0 never closes a candle, 1000 closes a
+ * five-second candle every fifth trade.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CandleBenchmark {
+    static final int PRICES = 4096; // Power of two for cheap wrap-around
+
+    @Param({"0", "10", "1000"})
+    long millisPerTrade;
+
+    private CandleManager candles;
+    private final double[] prices = new double[PRICES];
+    private int next;
+    private long timestamp;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        candles = new CandleManager(1000);
+        candles.initializeSymbol(BenchmarkBooks.SYMBOL, BenchmarkBooks.MID);
+        Random random = new Random(BenchmarkBooks.SEED);
+        for (int i = 0; i < PRICES; i++) {
+            prices[i] = BenchmarkBooks.MID + (random.nextInt(201) - 100) * BenchmarkBooks.TICK;
+        }
+        // A fixed day boundary after the initial candles, so candles close the same way every run
+        timestamp = 46_297L * 86_400_000L;
+    }
+
+    @Benchmark
+    public void onTrade() {
+        timestamp += millisPerTrade;
+        candles.onTrade(BenchmarkBooks.SYMBOL, prices[next++ & (PRICES - 1)], 10, timestamp);
+    }
+}
@@ -0,0 +1,69 @@
+package Benchmarks;
+
+import Banking.Portfolio;
+import Engine.Order;
+import Engine.OrderBook;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non-crossing limit inserts into a book resting 'depth' levels per side.
+ * The inserted orders are cancelled between invocations (untimed), so the
+ * book is the same size for every measurement.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class LimitInsertBenchmark {
+    static final int OPS = 1000;
+
+    @Param({"10", "100", "1000"})
+    int depth;
+
+    private OrderBook book;
+    private Portfolio trader;
+    private final double[] prices = new double[OPS];
+    private final Order[] orders = new Order[OPS];
+    private final int[] ids = new int[OPS];
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        book = BenchmarkBooks.newBook();
+        trader = BenchmarkBooks.newTrader("maker");
+        BenchmarkBooks.fill(book, trader, depth, 10);
+
+        // Join existing bid levels at random, never crossing the ask
+        Random random = new Random(BenchmarkBooks.SEED);
+        for (int i = 0; i < OPS; i++) {
+            prices[i] = BenchmarkBooks.MID - (1 + random.nextInt(depth)) * BenchmarkBooks.TICK;
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void createOrders() {
+        for (int i = 0; i < OPS; i++) {
+            orders[i] = book.createOrder(Order.Type.BUY, Order.Side.LIMIT, 5, prices[i], trader);
+            ids[i] = orders[i].getId();
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void cancelOrders() {
+        for (int i = 0; i < OPS; i++) {
+            book.cancel(ids[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public void insertLimit() {
+        for (int i = 0; i < OPS; i++) {
+            book.placeBuyOrder(orders[i]);
+        }
+    }
+}
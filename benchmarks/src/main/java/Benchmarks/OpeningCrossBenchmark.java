@@ -0,0 +1,70 @@
+package Benchmarks;
+
+import Banking.Portfolio;
+import Engine.Order;
+import Engine.OrderBook;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A burst of overlapping buy and sell limit orders at the open, matched
+ * either continuously as they arrive or collected in a call auction and
+ * uncrossed in one pass. Reported per order in the burst.
+ *
+ * Before every invocation (untimed) a fresh book and the same seeded burst
+ * are built, so every invocation does the same work.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class OpeningCrossBenchmark {
+    static final int BURST = 10_000;
+    static final int SPREAD_TICKS = 200; // Bids and offers both spread over this many ticks around MID
+
+    private OrderBook book;
+    private final Order[] burst = new Order[BURST];
+
+    @Setup(Level.Invocation)
+    public void prepare() {
+        book = BenchmarkBooks.newBook();
+        book.setAuctionQuoteInterval(Long.MAX_VALUE); // Only the uncross itself is measured
+        Portfolio buyer = BenchmarkBooks.newTrader("buyer");
+        Portfolio seller = BenchmarkBooks.newTrader("seller");
+        Random random = new Random(BenchmarkBooks.SEED);
+        for (int i = 0; i < BURST; i++) {
+            boolean buy = (i & 1) == 0;
+            double price = BenchmarkBooks.MID + (random.nextInt(SPREAD_TICKS) - SPREAD_TICKS / 2) * BenchmarkBooks.TICK;
+            burst[i] = book.createOrder(buy ? Order.Type.BUY : Order.Type.SELL, Order.Side.LIMIT,
+                    1 + random.nextInt(10), price, buy ? buyer : seller);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void continuous() {
+        place();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public Object auction() {
+        book.startAuction();
+        place();
+        return book.uncross();
+    }
+
+    private void place() {
+        for (Order order : burst) {
+            if (order.getType() == Order.Type.BUY) {
+                book.placeBuyOrder(order);
+            } else {
+                book.placeSellOrder(order);
+            }
+        }
+    }
+}
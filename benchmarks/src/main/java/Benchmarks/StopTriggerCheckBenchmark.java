@@ -0,0 +1,45 @@
+package Benchmarks;
+
+import Banking.Portfolio;
+import Engine.Order;
+import Engine.OrderBook;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one trade while 'stops' stop orders rest on each side, none of
+ * them close enough to trigger. Each operation rests a one-share sell and
+ * crosses it with a buy, which runs the stop-trigger check after the trade.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class StopTriggerCheckBenchmark {
+    @Param({"0", "100", "10000"})
+    int stops;
+
+    private OrderBook book;
+    private Portfolio trader;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        book = BenchmarkBooks.newBook();
+        trader = BenchmarkBooks.newTrader("trader");
+        // Spread the stops over 1000 trigger levels well away from the traded price
+        for (int i = 0; i < stops; i++) {
+            double offset = 10 + (i % 1000) * BenchmarkBooks.TICK;
+            book.placeBuyOrder(book.createOrder(Order.Type.BUY, Order.Side.STOP, 1, BenchmarkBooks.MID + offset, trader));
+            book.placeSellOrder(book.createOrder(Order.Type.SELL, Order.Side.STOP, 1, BenchmarkBooks.MID - offset, trader));
+        }
+    }
+
+    @Benchmark
+    public void tradeWithRestingStops() {
+        book.placeSellOrder(book.createOrder(Order.Type.SELL, Order.Side.LIMIT, 1, BenchmarkBooks.MID, trader));
+        book.placeBuyOrder(book.createOrder(Order.Type.BUY, Order.Side.LIMIT, 1, BenchmarkBooks.MID, trader));
+    }
+}
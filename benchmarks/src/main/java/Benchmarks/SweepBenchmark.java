@@ -0,0 +1,96 @@
+package Benchmarks;
+
+import Banking.Portfolio;
+import Engine.Order;
+import Engine.OrderBook;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aggressive orders that each consume exactly 'levels' price levels.
+ *
+ * Before every invocation (untimed) the ask side is rebuilt as SWEEPS
+ * consecutive bands of 'levels' levels; each timed order then takes out the
+ * best band completely, so every sweep does the same work and the book is
+ * empty again afterwards.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SweepBenchmark {
+    static final int SWEEPS = 100;
+    static final int LEVEL_QUANTITY = 10;
+
+    @Param({"1", "10", "100"})
+    int levels;
+
+    private OrderBook book;
+    private Portfolio seller;
+    private Portfolio buyer;
+    private final Order[] aggressors = new Order[SWEEPS];
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        book = BenchmarkBooks.newBook();
+        seller = BenchmarkBooks.newTrader("seller");
+        buyer = BenchmarkBooks.newTrader("buyer");
+    }
+
+    private void restBands() {
+        for (int band = 0; band < SWEEPS; band++) {
+            for (int i = 0; i < levels; i++) {
+                double price = BenchmarkBooks.MID + (band * levels + i) * BenchmarkBooks.TICK;
+                book.placeSellOrder(book.createOrder(Order.Type.SELL, Order.Side.LIMIT, LEVEL_QUANTITY, price, seller));
+            }
+        }
+    }
+
+    // Top price of band 'band', so a limit buy there crosses exactly that band
+    private double bandLimit(int band) {
+        return BenchmarkBooks.MID + ((band + 1) * levels - 1) * BenchmarkBooks.TICK;
+    }
+
+    @State(Scope.Thread)
+    public static class CrossingLimits {
+        @Setup(Level.Invocation)
+        public void prepare(SweepBenchmark benchmark) {
+            benchmark.restBands();
+            for (int band = 0; band < SWEEPS; band++) {
+                benchmark.aggressors[band] = benchmark.book.createOrder(Order.Type.BUY, Order.Side.LIMIT,
+                        benchmark.levels * LEVEL_QUANTITY, benchmark.bandLimit(band), benchmark.buyer);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class MarketOrders {
+        @Setup(Level.Invocation)
+        public void prepare(SweepBenchmark benchmark) {
+            benchmark.restBands();
+            for (int band = 0; band < SWEEPS; band++) {
+                benchmark.aggressors[band] = benchmark.book.createOrder(Order.Type.BUY, Order.Side.MARKET,
+                        benchmark.levels * LEVEL_QUANTITY, 0, benchmark.buyer);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SWEEPS)
+    public void crossingLimitSweep(CrossingLimits orders) {
+        for (int i = 0; i < SWEEPS; i++) {
+            book.placeBuyOrder(aggressors[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SWEEPS)
+    public void marketSweep(MarketOrders orders) {
+        for (int i = 0; i < SWEEPS; i++) {
+            book.placeBuyOrder(aggressors[i]);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package Backtest;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Outcome of one backtest run. Two runs of the same scenario produce the same
+ * trades, so everything here except the wall time matches; getFillDigest()
+ * is the quick way to check.
+ */
+public final class BacktestResult {
+    /**
+     * Per-symbol trading summary
+     */
+    public static final class SymbolSummary {
+        private final String symbol;
+        private final long trades;
+        private final long volume;
+        private final double vwap;
+        private final double closePrice;
+
+        SymbolSummary(String symbol, long trades, long volume, double vwap, double closePrice) {
+            this.symbol = symbol;
+            this.trades = trades;
+            this.volume = volume;
+            this.vwap = vwap;
+            this.closePrice = closePrice;
+        }
+
+        public String getSymbol() { return symbol; }
+        public long getTrades() { return trades; }
+        public long getVolume() { return volume; }
+        public double getVwap() { return vwap; }
+        public double getClosePrice() { return closePrice; }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d trades, %d shares, VWAP $%.2f, close $%.2f", symbol, trades, volume, vwap, closePrice);
+        }
+    }
+
+    private final long seed;
+    private final long events;
+    private final long wallNanos;
+    private final long fillDigest;
+    private final Map<String, SymbolSummary> symbols;
+
+    BacktestResult(long seed, long events, long wallNanos, long fillDigest, Map<String, SymbolSummary> symbols) {
+        this.seed = seed;
+        this.events = events;
+        this.wallNanos = wallNanos;
+        this.fillDigest = fillDigest;
+        this.symbols = Collections.unmodifiableMap(symbols);
+    }
+
+    public long getSeed() { return seed; }
+    public long getEvents() { return events; }
+    public long getWallNanos() { return wallNanos; }
+    public double getWallMillis() { return wallNanos / 1e6; }
+    public double getEventsPerSecond() { return wallNanos == 0 ? 0 : events * 1e9 / wallNanos; }
+
+    // Hash over every trade (symbol, sequence, price, quantity, virtual time) in the order they happened
+    public long getFillDigest() { return fillDigest; }
+
+    public Map<String, SymbolSummary> getSymbols() { return symbols; }
+
+    public long getTradeCount() {
+        long trades = 0;
+        for (SymbolSummary summary : symbols.values()) {
+            trades += summary.getTrades();
+        }
+        return trades;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Seed %d: %d events in %.1f ms (%.0f events/s), fill digest %016x%n",
+                seed, events, getWallMillis(), getEventsPerSecond(), fillDigest));
+        for (SymbolSummary summary : symbols.values()) {
+            sb.append("  ").append(summary).append(System.lineSeparator());
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,143 @@
+package Backtest;
+
+import Bots.BotManager;
+import Data.CandleManager;
+import Engine.*;
+import Sim.Clock;
+import Sim.DiscreteEventScheduler;
+import Sim.VirtualClock;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Runs a Scenario headless on virtual time.
+ *
+ * Books run without engine threads and all bots share one discrete-event
+ * scheduler, so the whole run happens on the calling thread in one fixed
+ * interleaving. Every run numbers its orders from its own id sequence and
+ * starts a fresh clock, which makes the same scenario and seed produce the
+ * same fills every time; the ids of live books are never touched.
+ *
+ * The clock is process-wide, so runs are serialized and nothing else should
+ * be trading while one is in progress.
+ */
+public final class BacktestRunner {
+    private static final Object RUN_LOCK = new Object();
+    private static final int CANDLES_PER_TIMEFRAME = 1000;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private boolean quiet = true;
+
+    // Keep the bots off the console while running (the default), or let them print
+    public BacktestRunner setQuiet(boolean quiet) {
+        this.quiet = quiet;
+        return this;
+    }
+
+    public BacktestResult run(Scenario scenario) {
+        synchronized (RUN_LOCK) {
+            Clock previousClock = Clock.current();
+            try {
+                return runLocked(scenario);
+            } finally {
+                Clock.use(previousClock);
+            }
+        }
+    }
+
+    private BacktestResult runLocked(Scenario scenario) {
+        OrderIdSequencer orderIds = new OrderIdSequencer();
+        VirtualClock clock = new VirtualClock(scenario.getStartMillis());
+        Clock.use(clock);
+        DiscreteEventScheduler scheduler = new DiscreteEventScheduler(clock);
+        CandleManager candleManager = new CandleManager(CANDLES_PER_TIMEFRAME);
+
+        Map<String, OrderBook> books = new LinkedHashMap<>();
+        Map<String, TradeTally> tallies = new LinkedHashMap<>();
+        long[] digest = { FNV_OFFSET };
+        for (Map.Entry<String, Double> symbol : scenario.getSymbols().entrySet()) {
+            OrderBook book = new OrderBook(symbol.getKey(), symbol.getValue(), 0.01, candleManager, orderIds);
+            TradeTally tally = new TradeTally();
+            // Delivered inline on the book's thread, which is this one
+            book.subscribeMarketData(new MarketDataListener() {
+                @Override
+                public void onTrade(Trade trade) {
+                    tally.add(trade);
+                    digest[0] = mix(digest[0], trade.getSymbol().hashCode());
+                    digest[0] = mix(digest[0], trade.getSequence());
+                    digest[0] = mix(digest[0], book.toTicks(trade.getPrice()));
+                    digest[0] = mix(digest[0], trade.getQuantity());
+                    digest[0] = mix(digest[0], trade.getTimestamp());
+                }
+            }, Runnable::run);
+            books.put(symbol.getKey(), book);
+            tallies.put(symbol.getKey(), tally);
+        }
+
+        BotManager botManager = new BotManager(scheduler, scenario.getSeed());
+        botManager.setQuiet(quiet);
+        for (Scenario.BotSpec spec : scenario.getBots()) {
+            OrderBook book = books.get(spec.getSymbol());
+            for (int i = 1; i <= spec.getCount(); i++) {
+                addBot(botManager, spec, book, spec.getSymbol() + " " + spec.getType() + " " + i);
+            }
+        }
+
+        long wallStart = System.nanoTime();
+        scheduler.runUntil(scenario.getStartMillis() + scenario.getDurationMillis());
+        long wallNanos = System.nanoTime() - wallStart;
+        botManager.stopAllBots();
+
+        Map<String, BacktestResult.SymbolSummary> summaries = new LinkedHashMap<>();
+        for (Map.Entry<String, OrderBook> entry : books.entrySet()) {
+            TradeTally tally = tallies.get(entry.getKey());
+            double vwap = tally.volume == 0 ? 0 : tally.notional / tally.volume;
+            summaries.put(entry.getKey(), new BacktestResult.SymbolSummary(entry.getKey(), tally.trades,
+                    tally.volume, vwap, entry.getValue().getCurrentPrice()));
+        }
+        return new BacktestResult(scenario.getSeed(), scheduler.getExecutedCount(), wallNanos, digest[0], summaries);
+    }
+
+    private static void addBot(BotManager botManager, Scenario.BotSpec spec, OrderBook book, String name) {
+        switch (spec.getType()) {
+            case MARKET_MAKER:
+                botManager.addMarketMaker(name, spec.getCash(), book, spec.getParameter(), spec.getSize());
+                break;
+            case HF_MARKET_MAKER:
+                botManager.addHFMarketMakerBot(name, spec.getCash(), book, spec.getParameter(), spec.getSize());
+                break;
+            case MOMENTUM:
+                botManager.addMomentumBot(name, spec.getCash(), book, spec.getParameter(), spec.getSize());
+                break;
+            case MEAN_REVERSION:
+                botManager.addMeanReversionBot(name, spec.getCash(), book, spec.getParameter(), spec.getSize());
+                break;
+            default:
+                botManager.addRandomBot(name, spec.getCash(), book, spec.getSize());
+                break;
+        }
+    }
+
+    // FNV-1a over the value's eight bytes
+    private static long mix(long hash, long value) {
+        for (int i = 0; i < 8; i++) {
+            hash ^= (value >>> (i * 8)) & 0xff;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static final class TradeTally {
+        long trades;
+        long volume;
+        double notional;
+
+        void add(Trade trade) {
+            trades++;
+            volume += trade.getQuantity();
+            notional += trade.getPrice() * trade.getQuantity();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package Backtest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What a backtest runs: the listed symbols, the bots trading them, the seed
+ * for the bots' randomness and the stretch of virtual time to cover. Bots are
+ * created in the order they were added, which is part of what makes two runs
+ * of the same scenario identical.
+ */
+public final class Scenario {
+    public enum BotType { MARKET_MAKER, HF_MARKET_MAKER, MOMENTUM, MEAN_REVERSION, RANDOM }
+
+    /**
+     * 'count' bots of one type on one symbol. 'parameter' is the spread for
+     * market makers and the threshold for momentum and mean reversion; random
+     * bots ignore it and use 'size' as their maximum order size.
+     */
+    public static final class BotSpec {
+        private final BotType type;
+        private final String symbol;
+        private final int count;
+        private final double cash;
+        private final double parameter;
+        private final int size;
+
+        BotSpec(BotType type, String symbol, int count, double cash, double parameter, int size) {
+            this.type = type;
+            this.symbol = symbol;
+            this.count = count;
+            this.cash = cash;
+            this.parameter = parameter;
+            this.size = size;
+        }
+
+        public BotType getType() { return type; }
+        public String getSymbol() { return symbol; }
+        public int getCount() { return count; }
+        public double getCash() { return cash; }
+        public double getParameter() { return parameter; }
+        public int getSize() { return size; }
+    }
+
+    private final Map<String, Double> symbols = new LinkedHashMap<>();
+    private final List<BotSpec> bots = new ArrayList<>();
+    private final long seed;
+    private final long startMillis;
+    private final long durationMillis;
+
+    public Scenario(long seed, long startMillis, long duration, TimeUnit unit) {
+        if (duration <= 0) {
+            throw new IllegalArgumentException("Duration must be positive: " + duration);
+        }
+        this.seed = seed;
+        this.startMillis = startMillis;
+        this.durationMillis = unit.toMillis(duration);
+    }
+
+    public Scenario symbol(String symbol, double initialPrice) {
+        if (symbols.putIfAbsent(symbol, initialPrice) != null) {
+            throw new IllegalArgumentException("Symbol already in scenario: " + symbol);
+        }
+        return this;
+    }
+
+    public Scenario bots(BotType type, String symbol, int count, double cash, double parameter, int size) {
+        if (!symbols.containsKey(symbol)) {
+            throw new IllegalArgumentException("Unknown symbol: " + symbol);
+        }
+        if (count <= 0) {
+            throw new IllegalArgumentException("Bot count must be positive: " + count);
+        }
+        bots.add(new BotSpec(type, symbol, count, cash, parameter, size));
+        return this;
+    }
+
+    // Same scenario, another seed
+    public Scenario withSeed(long seed) {
+        Scenario copy = new Scenario(seed, startMillis, durationMillis, TimeUnit.MILLISECONDS);
+        copy.symbols.putAll(symbols);
+        copy.bots.addAll(bots);
+        return copy;
+    }
+
+    public Map<String, Double> getSymbols() { return Collections.unmodifiableMap(symbols); }
+    public List<BotSpec> getBots() { return Collections.unmodifiableList(bots); }
+    public long getSeed() { return seed; }
+    public long getStartMillis() { return startMillis; }
+    public long getDurationMillis() { return durationMillis; }
+}
@@ -0,0 +1,269 @@
+package Banking;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Live mark-to-market P&L and ranking of tracked portfolios.
+ *
+ * Nothing is recomputed from scratch: a fill adjusts only the trader's
+ * entry for that symbol, and a price change walks only the traders holding
+ * that symbol, moving each by its signed quantity times the price change.
+ * Entries are kept ordered by total P&L, so top(k) reads the first k.
+ *
+ * Fills are reported by the portfolios themselves; prices come from the
+ * books (OrderBook.setLeaderboard) or from mark().
+ */
+public class Leaderboard {
+    private long[] marks = new long[0];          // By symbol id, in cents; 0 until the first price
+    private Entry[][] holders = new Entry[0][];  // By symbol id, entries with a position in it
+    private int[] holderCounts = new int[0];
+    private final TreeSet<Entry> ranking = new TreeSet<>(
+            Comparator.comparingDouble((Entry e) -> -e.score).thenComparingLong(e -> e.sequence));
+    private long nextSequence;
+
+    /** One portfolio's P&L and place in the ranking at a point in time. */
+    public static final class Standing {
+        private final String username;
+        private final int rank;
+        private final double realizedPnL;
+        private final double unrealizedPnL;
+
+        Standing(String username, int rank, double realizedPnL, double unrealizedPnL) {
+            this.username = username;
+            this.rank = rank;
+            this.realizedPnL = realizedPnL;
+            this.unrealizedPnL = unrealizedPnL;
+        }
+
+        public String getUsername() { return username; }
+        public int getRank() { return rank; }
+        public double getRealizedPnL() { return realizedPnL; }
+        public double getUnrealizedPnL() { return unrealizedPnL; }
+        public double getTotalPnL() { return realizedPnL + unrealizedPnL; }
+
+        @Override
+        public String toString() {
+            return String.format("#%d %s: %.2f (realized %.2f, unrealized %.2f)",
+                    rank, username, getTotalPnL(), realizedPnL, unrealizedPnL);
+        }
+    }
+
+    // A tracked portfolio; everything here is guarded by the leaderboard
+    final class Entry {
+        final Portfolio portfolio;
+        final long sequence; // Breaks ties in tracking order
+        long[] quantities = new long[0]; // By symbol id; negative when short
+        double[] prices = new double[0]; // By symbol id, average entry price
+        int[] holderSlots = new int[0];  // By symbol id, index into holders
+        long marketValueCents;           // Sum of signed quantity times mark
+        double costBasis;                // Sum of signed quantity times entry price, in dollars
+        long realizedCents;
+        double score;
+        boolean tracked = true;
+
+        Entry(Portfolio portfolio, long sequence) {
+            this.portfolio = portfolio;
+            this.sequence = sequence;
+        }
+
+        Leaderboard owner() {
+            return Leaderboard.this;
+        }
+
+        double unrealized() {
+            return Money.toDollars(marketValueCents) - costBasis;
+        }
+
+        // Called by the portfolio under its write lock after every fill in the symbol
+        void onFill(int symbolId, long quantity, double price, long realizedCents, long fillPriceCents) {
+            synchronized (Leaderboard.this) {
+                if (!tracked) {
+                    return;
+                }
+                ranking.remove(this);
+                ensureSymbol(symbolId);
+                if (marks[symbolId] == 0) {
+                    marks[symbolId] = fillPriceCents;
+                }
+                setHolding(this, symbolId, quantity, price);
+                this.realizedCents = realizedCents;
+                rescore(this);
+                ranking.add(this);
+            }
+        }
+
+        // Called by the portfolio under its write lock when all of it changes at once
+        void reset(Position[] positions, long realizedCents) {
+            synchronized (Leaderboard.this) {
+                if (!tracked) {
+                    return;
+                }
+                ranking.remove(this);
+                for (int id = 0; id < quantities.length; id++) {
+                    setHolding(this, id, 0, 0);
+                }
+                for (Position position : positions) {
+                    if (position != null && !position.isFlat()) {
+                        int id = position.getSymbolId();
+                        ensureSymbol(id);
+                        if (marks[id] == 0) {
+                            marks[id] = Money.toCents(position.getPrice());
+                        }
+                        long quantity = position.getQuantity();
+                        setHolding(this, id, position.isShort() ? -quantity : quantity, position.getPrice());
+                    }
+                }
+                this.realizedCents = realizedCents;
+                rescore(this);
+                ranking.add(this);
+            }
+        }
+    }
+
+    // Start ranking the portfolio from its current holdings; a portfolio can be on one leaderboard at a time
+    public void track(Portfolio portfolio) {
+        Entry entry;
+        synchronized (this) {
+            entry = new Entry(portfolio, nextSequence++);
+        }
+        if (!portfolio.attach(entry)) {
+            throw new IllegalStateException("Portfolio " + portfolio.getUsername() + " is already on a leaderboard");
+        }
+    }
+
+    public void untrack(Portfolio portfolio) {
+        Entry entry = portfolio.detach(this);
+        if (entry == null) {
+            return;
+        }
+        synchronized (this) {
+            ranking.remove(entry);
+            for (int id = 0; id < entry.quantities.length; id++) {
+                setHolding(entry, id, 0, 0);
+            }
+            entry.tracked = false;
+        }
+    }
+
+    public void mark(String symbol, double price) {
+        mark(SymbolRegistry.intern(symbol), Money.toCents(price));
+    }
+
+    // New price for the symbol: revalue only the portfolios holding it
+    public synchronized void mark(int symbolId, long priceCents) {
+        ensureSymbol(symbolId);
+        long change = priceCents - marks[symbolId];
+        marks[symbolId] = priceCents;
+        if (change == 0) {
+            return;
+        }
+        Entry[] entries = holders[symbolId];
+        for (int i = 0, n = holderCounts[symbolId]; i < n; i++) {
+            Entry entry = entries[i];
+            ranking.remove(entry);
+            entry.marketValueCents += entry.quantities[symbolId] * change;
+            rescore(entry);
+            ranking.add(entry);
+        }
+    }
+
+    // Last price seen for the symbol, 0 if none yet
+    public synchronized double getMark(String symbol) {
+        int id = SymbolRegistry.idOf(symbol);
+        return id >= 0 ? Money.toDollars(mark(id)) : 0;
+    }
+
+    // The k best total P&Ls, best first
+    public synchronized List<Standing> top(int k) {
+        List<Standing> top = new ArrayList<>(Math.min(k, ranking.size()));
+        Iterator<Entry> it = ranking.iterator();
+        while (top.size() < k && it.hasNext()) {
+            top.add(standing(it.next(), top.size() + 1));
+        }
+        return top;
+    }
+
+    // The portfolio's current standing, or null if it isn't tracked here
+    public Standing standing(Portfolio portfolio) {
+        Entry entry = portfolio.entry(this);
+        if (entry == null) {
+            return null;
+        }
+        synchronized (this) {
+            if (!entry.tracked || !ranking.contains(entry)) {
+                return null;
+            }
+            return standing(entry, ranking.headSet(entry).size() + 1);
+        }
+    }
+
+    public synchronized int size() {
+        return ranking.size();
+    }
+
+    private Standing standing(Entry entry, int rank) {
+        return new Standing(entry.portfolio.getUsername(), rank, Money.toDollars(entry.realizedCents),
+                entry.unrealized());
+    }
+
+    private static void rescore(Entry entry) {
+        entry.score = Money.toDollars(entry.realizedCents) + entry.unrealized();
+    }
+
+    // Replace the entry's holding in one symbol, keeping the totals and holder lists in step
+    private void setHolding(Entry entry, int symbolId, long quantity, double price) {
+        ensureSymbol(symbolId);
+        if (symbolId >= entry.quantities.length) {
+            int length = Math.max(symbolId + 1, Math.max(8, entry.quantities.length * 2));
+            entry.quantities = Arrays.copyOf(entry.quantities, length);
+            entry.prices = Arrays.copyOf(entry.prices, length);
+            entry.holderSlots = Arrays.copyOf(entry.holderSlots, length);
+        }
+        long oldQuantity = entry.quantities[symbolId];
+        entry.marketValueCents += (quantity - oldQuantity) * marks[symbolId];
+        entry.costBasis += quantity * price - oldQuantity * entry.prices[symbolId];
+        entry.quantities[symbolId] = quantity;
+        entry.prices[symbolId] = price;
+
+        if (oldQuantity == 0 && quantity != 0) {
+            Entry[] entries = holders[symbolId];
+            int count = holderCounts[symbolId];
+            if (count == entries.length) {
+                entries = holders[symbolId] = Arrays.copyOf(entries, Math.max(8, count * 2));
+            }
+            entries[count] = entry;
+            entry.holderSlots[symbolId] = count;
+            holderCounts[symbolId] = count + 1;
+        } else if (oldQuantity != 0 && quantity == 0) {
+            // Swap the last holder into the freed slot
+            Entry[] entries = holders[symbolId];
+            int slot = entry.holderSlots[symbolId];
+            int last = --holderCounts[symbolId];
+            entries[slot] = entries[last];
+            entries[slot].holderSlots[symbolId] = slot;
+            entries[last] = null;
+        }
+    }
+
+    private long mark(int symbolId) {
+        return symbolId < marks.length ? marks[symbolId] : 0;
+    }
+
+    private void ensureSymbol(int symbolId) {
+        if (symbolId >= marks.length) {
+            int length = Math.max(symbolId + 1, Math.max(8, marks.length * 2));
+            marks = Arrays.copyOf(marks, length);
+            holderCounts = Arrays.copyOf(holderCounts, length);
+            Entry[][] grown = Arrays.copyOf(holders, length);
+            for (int i = holders.length; i < length; i++) {
+                grown[i] = new Entry[0];
+            }
+            holders = grown;
+        }
+    }
+}
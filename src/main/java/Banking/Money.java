@@ -0,0 +1,19 @@
+package Banking;
+
+/**
+ * Fixed-point money helpers. Cash is held as a long number of cents inside
+ * the engine and only converted to dollars at the API edge.
+ */
+public final class Money {
+    public static final long CENTS_PER_DOLLAR = 100;
+
+    private Money() {}
+
+    public static long toCents(double dollars) {
+        return Math.round(dollars * CENTS_PER_DOLLAR);
+    }
+
+    public static double toDollars(long cents) {
+        return cents / (double) CENTS_PER_DOLLAR;
+    }
+}
@@ -1,189 +1,318 @@
 package Banking;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
-
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Cash, holdings and reservations of one trader. Per-symbol state lives in
+ * arrays indexed by SymbolRegistry id, so fills never hash a String or box a
+ * quantity. The matching threads of every book the trader is in write it
+ * under the portfolio's own lock; bot threads read it with an optimistic
+ * read that retries under the lock if a write got in the way, so every read
+ * sees one consistent state.
+ *
+ * The String methods are the public API and look the symbol up once; the
+ * engine calls the id overloads directly.
+ */
 public class Portfolio {
-    private double USD;
-    private double reservedCash; // Cash reserved for pending buy orders
-    private String Username;
-    private Map<String, Position> stockHoldings;
-    private Map<String, Integer> reservedStock; // Stock reserved for pending sell orders
+    private final StampedLock lock = new StampedLock();
+    private long USD;          // Available cash in cents
+    private long reservedCash; // Cash reserved for pending buy orders, in cents
+    private long realizedPnL;  // Gains and losses on closed quantities, in cents
+    private volatile String Username;
+    private Position[] positions = new Position[0]; // By symbol id; null when flat
+    private int[] reservedStock = new int[0];       // By symbol id; stock reserved for pending sell orders
+    private Leaderboard.Entry leaderboard;          // Told about every fill while tracked
 
     public Portfolio(double USD, String Username) {
-        this.USD = USD;
-        this.reservedCash = 0.0;
+        this.USD = Money.toCents(USD);
+        this.reservedCash = 0;
         this.Username = Username;
-        this.stockHoldings = new HashMap<String, Position>();
-        this.reservedStock = new HashMap<String, Integer>();
     }
 
-    // Reserve cash for pending buy orders
-    public boolean reserveCash(double amount) {
-        if (USD >= amount) {
-            USD -= amount;
-            reservedCash += amount;
-            return true;
+    // Reserve cash for pending buy orders (amount in cents)
+    public boolean reserveCash(long amount) {
+        long stamp = lock.writeLock();
+        try {
+            if (USD >= amount) {
+                USD -= amount;
+                reservedCash += amount;
+                return true;
+            }
+            return false;
+        } finally {
+            lock.unlockWrite(stamp);
         }
-        return false;
     }
 
-    // Release reserved cash (when order is cancelled)
-    public void releaseReservedCash(double amount) {
-        reservedCash -= amount;
-        USD += amount;
+    // Release reserved cash (when order is cancelled or filled below its limit), in cents
+    public void releaseReservedCash(long amount) {
+        long stamp = lock.writeLock();
+        try {
+            reservedCash -= amount;
+            USD += amount;
+            assert reservedCash >= 0 : Username + " released more cash than it reserved";
+        } finally {
+            lock.unlockWrite(stamp);
+        }
     }
 
     // Reserve stock for pending sell orders
     public boolean reserveStock(String symbol, int quantity) {
-        if (stockHoldings.containsKey(symbol)) {
-            Position position = stockHoldings.get(symbol);
-            if (position.getStatus().equals("long")) {
-                int availableQuantity = position.getQuantity() - reservedStock.getOrDefault(symbol, 0);
+        int id = SymbolRegistry.idOf(symbol);
+        return id >= 0 && reserveStock(id, quantity);
+    }
+
+    public boolean reserveStock(int symbolId, int quantity) {
+        long stamp = lock.writeLock();
+        try {
+            Position position = position(symbolId);
+            if (position != null && !position.isFlat() && position.getSide() == Position.Side.LONG) {
+                int availableQuantity = position.getQuantity() - reserved(symbolId);
                 if (availableQuantity >= quantity) {
-                    reservedStock.put(symbol, reservedStock.getOrDefault(symbol, 0) + quantity);
+                    ensureCapacity(symbolId);
+                    reservedStock[symbolId] += quantity;
                     return true;
                 }
             }
+            return false;
+        } finally {
+            lock.unlockWrite(stamp);
         }
-        return false;
     }
 
     // Release reserved stock (when order is cancelled)
     public void releaseReservedStock(String symbol, int quantity) {
-        int currentReserved = reservedStock.getOrDefault(symbol, 0);
-        int newReserved = Math.max(0, currentReserved - quantity);
-        if (newReserved == 0) {
-            reservedStock.remove(symbol);
-        } else {
-            reservedStock.put(symbol, newReserved);
-        }
-    }
-
-    public void executeBuy(String stockSymbol, int quantity, double price) {
-        double totalCost = quantity * price;
-
-        // Use reserved cash for the purchase
-        reservedCash -= totalCost;
-
-        if (!stockHoldings.containsKey(stockSymbol)) {
-            // New long position
-            stockHoldings.put(stockSymbol, new Position(quantity, price, stockSymbol, "long"));
-        } else {
-            Position currentPosition = stockHoldings.get(stockSymbol);
-
-            if (currentPosition.getStatus().equals("short")) {
-                // Covering short position
-                if (currentPosition.getQuantity() <= quantity) {
-                    // Fully cover short position and potentially go long
-                    int shortQuantity = currentPosition.getQuantity();
-                    double shortPrice = currentPosition.getPrice();
-
-                    // Calculate P&L from covering short (profit if shortPrice > currentPrice)
-                    double shortPnL = shortQuantity * (shortPrice - price);
-                    USD += shortPnL;
-
-                    int remainingQuantity = quantity - shortQuantity;
-                    if (remainingQuantity > 0) {
-                        // Go long with remaining quantity
-                        stockHoldings.put(stockSymbol, new Position(remainingQuantity, price, stockSymbol, "long"));
-                    } else {
-                        // Fully covered, remove position
-                        stockHoldings.remove(stockSymbol);
-                    }
-                } else {
-                    // Partially cover short position
-                    double shortPrice = currentPosition.getPrice();
-                    double partialPnL = quantity * (shortPrice - price);
-                    USD += partialPnL;
-
-                    int newShortQuantity = currentPosition.getQuantity() - quantity;
-                    stockHoldings.put(stockSymbol, new Position(newShortQuantity, shortPrice, stockSymbol, "short"));
-                }
-            } else if (currentPosition.getStatus().equals("long")) {
-                // Adding to long position - calculate weighted average price
-                int currentQuantity = currentPosition.getQuantity();
-                double currentPrice = currentPosition.getPrice();
-
-                int newQuantity = currentQuantity + quantity;
-                double newAvgPrice = ((currentQuantity * currentPrice) + (quantity * price)) / newQuantity;
+        int id = SymbolRegistry.idOf(symbol);
+        if (id >= 0) {
+            releaseReservedStock(id, quantity);
+        }
+    }
 
-                stockHoldings.put(stockSymbol, new Position(newQuantity, newAvgPrice, stockSymbol, "long"));
-            }
+    public void releaseReservedStock(int symbolId, int quantity) {
+        long stamp = lock.writeLock();
+        try {
+            release(symbolId, quantity);
+        } finally {
+            lock.unlockWrite(stamp);
         }
     }
 
-    public void executeSell(String stockSymbol, int quantity, double price) {
-        double totalProceeds = quantity * price;
+    // Prices are in cents; the cost is taken from cash reserved for the order
+    public void executeBuy(String stockSymbol, int quantity, long priceCents) {
+        executeBuy(SymbolRegistry.intern(stockSymbol), quantity, priceCents);
+    }
 
-        // Release reserved stock (only if we had reserved stock)
-        if (reservedStock.containsKey(stockSymbol)) {
-            int reservedAmount = Math.min(reservedStock.get(stockSymbol), quantity);
-            releaseReservedStock(stockSymbol, reservedAmount);
+    public void executeBuy(int symbolId, int quantity, long priceCents) {
+        long totalCost = quantity * priceCents;
+        double price = Money.toDollars(priceCents);
+
+        long stamp = lock.writeLock();
+        try {
+            // Use reserved cash for the purchase
+            reservedCash -= totalCost;
+            assert reservedCash >= 0 : Username + " spent more cash than it reserved";
+
+            Position position = slot(symbolId);
+            if (position.isFlat()) {
+                // New long position
+                position.open(Position.Side.LONG, quantity, price);
+            } else if (position.getSide() == Position.Side.SHORT) {
+                // Covering short position (profit if the short price is above this one)
+                int shortQuantity = Math.min(position.getQuantity(), quantity);
+                long pnl = Money.toCents(shortQuantity * (position.getPrice() - price));
+                USD += pnl;
+                realizedPnL += pnl;
+
+                int remainingQuantity = quantity - shortQuantity;
+                if (remainingQuantity > 0) {
+                    // Covered in full; go long with remaining quantity
+                    position.open(Position.Side.LONG, remainingQuantity, price);
+                } else if (shortQuantity == position.getQuantity()) {
+                    position.close();
+                } else {
+                    position.reduce(shortQuantity);
+                }
+            } else {
+                // Adding to long position
+                position.add(quantity, price);
+            }
+            if (leaderboard != null) {
+                report(position, priceCents);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
         }
+    }
 
-        if (!stockHoldings.containsKey(stockSymbol)) {
-            // No existing position - this is a new short position
-            USD += totalProceeds; // Receive cash from short sale
-            stockHoldings.put(stockSymbol, new Position(quantity, price, stockSymbol, "short"));
-            return;
-        }
+    // Prices are in cents
+    public void executeSell(String stockSymbol, int quantity, long priceCents) {
+        executeSell(SymbolRegistry.intern(stockSymbol), quantity, priceCents);
+    }
 
-        Position currentPosition = stockHoldings.get(stockSymbol);
+    public void executeSell(int symbolId, int quantity, long priceCents) {
+        executeSell(symbolId, quantity, priceCents, -1);
+    }
 
-        if (currentPosition.getStatus().equals("long")) {
-            // Selling long position
+    /**
+     * Sell, giving back exactly releaseQuantity reserved shares: the part of
+     * this sale the order had reserved for itself. The order book passes it so
+     * that one order's fill never frees shares another order reserved; -1
+     * releases as much of the reservation as the sale covers.
+     */
+    public void executeSell(int symbolId, int quantity, long priceCents, int releaseQuantity) {
+        long totalProceeds = quantity * priceCents;
+        double price = Money.toDollars(priceCents);
+
+        long stamp = lock.writeLock();
+        try {
+            // Release reserved stock (only if we had reserved stock)
+            release(symbolId, releaseQuantity < 0 ? Math.min(reserved(symbolId), quantity) : releaseQuantity);
+
+            // Whether it closes a long or opens a short, the sale pays cash now
             USD += totalProceeds;
 
-            if (currentPosition.getQuantity() == quantity) {
-                // Fully sell position
-                stockHoldings.remove(stockSymbol);
-            } else if (currentPosition.getQuantity() > quantity) {
-                // Partially sell position
-                int newQuantity = currentPosition.getQuantity() - quantity;
-                double avgPrice = currentPosition.getPrice();
-                stockHoldings.put(stockSymbol, new Position(newQuantity, avgPrice, stockSymbol, "long"));
-            } else {
-                // Selling more than we own - sell all long position and go short
-                int longQuantity = currentPosition.getQuantity();
-                int shortQuantity = quantity - longQuantity;
-
-                // Remove the long position
-                stockHoldings.remove(stockSymbol);
-
-                // Create new short position with remaining quantity
-                if (shortQuantity > 0) {
-                    stockHoldings.put(stockSymbol, new Position(shortQuantity, price, stockSymbol, "short"));
+            Position position = slot(symbolId);
+            if (position.isFlat()) {
+                // No existing position - this is a new short position
+                position.open(Position.Side.SHORT, quantity, price);
+            } else if (position.getSide() == Position.Side.LONG) {
+                realizedPnL += Money.toCents(Math.min(position.getQuantity(), quantity) * (price - position.getPrice()));
+                if (position.getQuantity() == quantity) {
+                    // Fully sell position
+                    position.close();
+                } else if (position.getQuantity() > quantity) {
+                    // Partially sell position
+                    position.reduce(quantity);
+                } else {
+                    // Selling more than we own - sell all long position and go short
+                    // with the remaining quantity
+                    position.open(Position.Side.SHORT, quantity - position.getQuantity(), price);
                 }
+            } else {
+                // Adding to short position
+                position.add(quantity, price);
             }
-        } else if (currentPosition.getStatus().equals("short")) {
-            // Adding to short position
-            int currentQuantity = currentPosition.getQuantity();
-            double currentPrice = currentPosition.getPrice();
+            if (leaderboard != null) {
+                report(position, priceCents);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
 
-            USD += totalProceeds; // Receive more cash from additional short sale
+    // Replace all balances, holdings and reservations, e.g. when loading a snapshot
+    public void restore(long cashCents, long reservedCashCents, Map<String, Position> holdings,
+                        Map<String, Integer> reserved) {
+        restore(cashCents, reservedCashCents, 0, holdings, reserved);
+    }
 
-            int newQuantity = currentQuantity + quantity;
-            double newAvgPrice = ((currentQuantity * currentPrice) + (quantity * price)) / newQuantity;
+    public void restore(long cashCents, long reservedCashCents, long realizedPnLCents,
+                        Map<String, Position> holdings, Map<String, Integer> reserved) {
+        for (String symbol : holdings.keySet()) {
+            SymbolRegistry.intern(symbol);
+        }
+        for (String symbol : reserved.keySet()) {
+            SymbolRegistry.intern(symbol);
+        }
+        Position[] newPositions = new Position[SymbolRegistry.size()];
+        int[] newReserved = new int[newPositions.length];
+        for (Map.Entry<String, Position> entry : holdings.entrySet()) {
+            int id = SymbolRegistry.idOf(entry.getKey());
+            Position position = entry.getValue();
+            newPositions[id] = new Position(position.getQuantity(), position.getPrice(), id, position.getSide());
+        }
+        for (Map.Entry<String, Integer> entry : reserved.entrySet()) {
+            newReserved[SymbolRegistry.idOf(entry.getKey())] = entry.getValue();
+        }
 
-            stockHoldings.put(stockSymbol, new Position(newQuantity, newAvgPrice, stockSymbol, "short"));
+        long stamp = lock.writeLock();
+        try {
+            this.USD = cashCents;
+            this.reservedCash = reservedCashCents;
+            this.realizedPnL = realizedPnLCents;
+            this.positions = newPositions;
+            this.reservedStock = newReserved;
+            if (leaderboard != null) {
+                leaderboard.reset(positions, realizedPnL);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
         }
     }
 
     public double getUSD() {
-        return USD;
+        return Money.toDollars(getUSDCents());
+    }
+
+    public long getUSDCents() {
+        long stamp = lock.tryOptimisticRead();
+        long cash = USD;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                cash = USD;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return cash;
     }
 
     public double getAvailableCash() {
-        return USD; // USD already excludes reserved cash
+        return Money.toDollars(getUSDCents()); // USD already excludes reserved cash
     }
 
     public double getReservedCash() {
-        return reservedCash;
+        return Money.toDollars(getReservedCashCents());
+    }
+
+    public long getReservedCashCents() {
+        long stamp = lock.tryOptimisticRead();
+        long reserved = reservedCash;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                reserved = reservedCash;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return reserved;
     }
 
     public double getTotalCash() {
-        return USD + reservedCash;
+        long stamp = lock.tryOptimisticRead();
+        long total = USD + reservedCash;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                total = USD + reservedCash;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return Money.toDollars(total);
+    }
+
+    public double getRealizedPnL() {
+        return Money.toDollars(getRealizedPnLCents());
+    }
+
+    public long getRealizedPnLCents() {
+        long stamp = lock.tryOptimisticRead();
+        long realized = realizedPnL;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                realized = realizedPnL;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return realized;
     }
 
     public void setUsername(String username) {
@@ -195,42 +324,78 @@ public class Portfolio {
     }
 
     public Map<String, Position> getStockHoldings() {
-        return new HashMap<>(stockHoldings); // Return copy to prevent external modification
+        Map<String, Position> holdings = new HashMap<>(); // A copy, to prevent external modification
+        long stamp = lock.readLock();
+        try {
+            for (int id = 0; id < positions.length; id++) {
+                Position position = positions[id];
+                if (position != null && !position.isFlat()) {
+                    holdings.put(SymbolRegistry.name(id), position.copy());
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        return holdings;
     }
 
     public Map<String, Integer> getReservedStock() {
-        return new HashMap<>(reservedStock);
+        Map<String, Integer> reserved = new HashMap<>();
+        long stamp = lock.readLock();
+        try {
+            for (int id = 0; id < reservedStock.length; id++) {
+                if (reservedStock[id] > 0) {
+                    reserved.put(SymbolRegistry.name(id), reservedStock[id]);
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        return reserved;
+    }
+
+    public int getReservedStock(int symbolId) {
+        long stamp = lock.tryOptimisticRead();
+        int reserved = reserved(symbolId);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                reserved = reserved(symbolId);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return reserved;
     }
 
     // Get available quantity for a stock (total - reserved)
     public int getAvailableStock(String symbol) {
-        if (!stockHoldings.containsKey(symbol)) {
-            return 0;
-        }
-        Position position = stockHoldings.get(symbol);
-        if (!position.getStatus().equals("long")) {
-            return 0;
+        int id = SymbolRegistry.idOf(symbol);
+        return id >= 0 ? getAvailableStock(id) : 0;
+    }
+
+    public int getAvailableStock(int symbolId) {
+        long stamp = lock.tryOptimisticRead();
+        int available = available(symbolId);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                available = available(symbolId);
+            } finally {
+                lock.unlockRead(stamp);
+            }
         }
-        return position.getQuantity() - reservedStock.getOrDefault(symbol, 0);
+        return available;
     }
 
     // Helper method to get current portfolio value
     public double getPortfolioValue(Map<String, Double> currentPrices) {
-        double totalValue = USD + reservedCash; // Include all cash
+        double totalValue = getTotalCash(); // Include all cash
 
-        for (Map.Entry<String, Position> entry : stockHoldings.entrySet()) {
-            String symbol = entry.getKey();
-            Position position = entry.getValue();
-
-            if (currentPrices.containsKey(symbol)) {
-                double currentPrice = currentPrices.get(symbol);
-
-                if (position.getStatus().equals("long")) {
-                    totalValue += position.getQuantity() * currentPrice;
-                } else if (position.getStatus().equals("short")) {
-                    // For short positions, value decreases as price increases
-                    totalValue += position.getQuantity() * (position.getPrice() - currentPrice);
-                }
+        for (Map.Entry<String, Position> entry : getStockHoldings().entrySet()) {
+            Double currentPrice = currentPrices.get(entry.getKey());
+            if (currentPrice != null) {
+                totalValue += value(entry.getValue(), currentPrice);
             }
         }
 
@@ -239,17 +404,121 @@ public class Portfolio {
 
     // Calculate unrealized P&L for a specific position
     public double getUnrealizedPnL(String symbol, double currentPrice) {
-        if (!stockHoldings.containsKey(symbol)) {
+        int id = SymbolRegistry.idOf(symbol);
+        if (id < 0) {
             return 0.0;
         }
-
-        Position position = stockHoldings.get(symbol);
-        if (position.getStatus().equals("long")) {
+        long stamp = lock.readLock();
+        try {
+            Position position = position(id);
+            if (position == null || position.isFlat()) {
+                return 0.0;
+            }
+            if (position.isShort()) {
+                return position.getQuantity() * (position.getPrice() - currentPrice);
+            }
             return position.getQuantity() * (currentPrice - position.getPrice());
-        } else if (position.getStatus().equals("short")) {
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Leaderboard hooks; entries are swapped under the write lock so no fill is missed or reported twice
+
+    boolean attach(Leaderboard.Entry entry) {
+        long stamp = lock.writeLock();
+        try {
+            if (leaderboard != null) {
+                return false;
+            }
+            leaderboard = entry;
+            entry.reset(positions, realizedPnL);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    Leaderboard.Entry detach(Leaderboard owner) {
+        long stamp = lock.writeLock();
+        try {
+            Leaderboard.Entry entry = leaderboard;
+            if (entry == null || entry.owner() != owner) {
+                return null;
+            }
+            leaderboard = null;
+            return entry;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    Leaderboard.Entry entry(Leaderboard owner) {
+        long stamp = lock.readLock();
+        try {
+            return leaderboard != null && leaderboard.owner() == owner ? leaderboard : null;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private void report(Position position, long priceCents) {
+        long quantity = position.getQuantity();
+        leaderboard.onFill(position.getSymbolId(), position.isShort() ? -quantity : quantity,
+                position.isFlat() ? 0 : position.getPrice(), realizedPnL, priceCents);
+    }
+
+    // Market value of a long position, or the gain on a short one
+    private static double value(Position position, double currentPrice) {
+        if (position.isShort()) {
+            // For short positions, value decreases as price increases
             return position.getQuantity() * (position.getPrice() - currentPrice);
         }
+        return position.getQuantity() * currentPrice;
+    }
+
+    // The helpers below expect the lock to be held, or to be followed by a validate
+
+    private Position position(int symbolId) {
+        Position[] current = positions;
+        return symbolId < current.length ? current[symbolId] : null;
+    }
+
+    private int reserved(int symbolId) {
+        int[] current = reservedStock;
+        return symbolId < current.length ? current[symbolId] : 0;
+    }
+
+    private int available(int symbolId) {
+        Position position = position(symbolId);
+        if (position == null || position.isFlat() || position.getSide() != Position.Side.LONG) {
+            return 0;
+        }
+        return position.getQuantity() - reserved(symbolId);
+    }
+
+    private void release(int symbolId, int quantity) {
+        if (symbolId < reservedStock.length) {
+            reservedStock[symbolId] = Math.max(0, reservedStock[symbolId] - quantity);
+        }
+    }
 
-        return 0.0;
+    // The symbol's position, created flat the first time the symbol is traded
+    private Position slot(int symbolId) {
+        ensureCapacity(symbolId);
+        Position position = positions[symbolId];
+        if (position == null) {
+            position = new Position(0, 0, symbolId, Position.Side.LONG);
+            positions[symbolId] = position;
+        }
+        return position;
+    }
+
+    private void ensureCapacity(int symbolId) {
+        if (symbolId >= positions.length) {
+            int length = Math.max(symbolId + 1, Math.max(8, positions.length * 2));
+            positions = Arrays.copyOf(positions, length);
+            reservedStock = Arrays.copyOf(reservedStock, length);
+        }
     }
-}
\ No newline at end of file
+}
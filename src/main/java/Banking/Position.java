@@ -1,16 +1,59 @@
 package Banking;
 
+/**
+ * Holding in one symbol. Portfolio keeps one Position per symbol it has
+ * traded and updates it in place on every fill; a closed position stays in
+ * place with quantity 0 until the symbol is traded again.
+ */
 public class Position {
+    public enum Side { LONG, SHORT }
+
     private int quantity;
-    private double price;
-    private String stock;
-    private String status;
+    private double price; // Average entry price
+    private final int symbolId;
+    private Side side;
 
     public Position(int quantity, double price, String stockSymbol, String status) {
+        this(quantity, price, SymbolRegistry.intern(stockSymbol), "short".equals(status) ? Side.SHORT : Side.LONG);
+    }
+
+    Position(int quantity, double price, int symbolId, Side side) {
+        this.quantity = quantity;
+        this.price = price;
+        this.symbolId = symbolId;
+        this.side = side;
+    }
+
+    // Start over on one side, e.g. after the previous position was closed or flipped
+    void open(Side side, int quantity, double price) {
+        this.side = side;
         this.quantity = quantity;
         this.price = price;
-        this.stock = stock;
-        this.status = status;
+    }
+
+    // Grow on the current side, averaging in the new price
+    void add(int quantity, double price) {
+        int newQuantity = this.quantity + quantity;
+        this.price = ((this.quantity * this.price) + (quantity * price)) / newQuantity;
+        this.quantity = newQuantity;
+    }
+
+    // Shrink on the current side; the average entry price doesn't change
+    void reduce(int quantity) {
+        this.quantity -= quantity;
+    }
+
+    void close() {
+        this.quantity = 0;
+        this.price = 0;
+    }
+
+    boolean isFlat() {
+        return quantity == 0;
+    }
+
+    Position copy() {
+        return new Position(quantity, price, symbolId, side);
     }
 
     public void addPosition(int quantity, double price, String stock) {
@@ -30,14 +73,23 @@ public class Position {
         this.price = price;
     }
     public String getStock() {
-        return stock;
+        return SymbolRegistry.name(symbolId);
+    }
+    public int getSymbolId() {
+        return symbolId;
+    }
+    public Side getSide() {
+        return side;
     }
     public String getStatus() {
-        return status;
+        return side == Side.SHORT ? "short" : "long";
+    }
+    public boolean isShort() {
+        return side == Side.SHORT;
     }
 
     public void setStatus(String status) {
-        this.status = status;
+        this.side = "short".equals(status) ? Side.SHORT : Side.LONG;
     }
     public void setQuantity(double quantity) {
         this.quantity = (int) quantity;
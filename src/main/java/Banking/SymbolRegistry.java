@@ -0,0 +1,69 @@
+package Banking;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide interning of ticker symbols to dense int ids (0, 1, 2, ...),
+ * so per-symbol state can live in arrays indexed by id instead of maps keyed
+ * by String. Ids are handed out on first use and never reused.
+ */
+public final class SymbolRegistry {
+    private static final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private static volatile String[] names = new String[16];
+    private static int count; // Guarded by the class
+
+    private SymbolRegistry() {}
+
+    // Id of the symbol, assigning the next one if it is new
+    public static int intern(String symbol) {
+        if (symbol == null) {
+            throw new IllegalArgumentException("Symbol must not be empty");
+        }
+        Integer id = ids.get(symbol);
+        if (id != null) {
+            return id;
+        }
+        if (symbol.isEmpty()) {
+            throw new IllegalArgumentException("Symbol must not be empty");
+        }
+        synchronized (SymbolRegistry.class) {
+            id = ids.get(symbol);
+            if (id != null) {
+                return id;
+            }
+            int next = count;
+            String[] current = names;
+            if (next == current.length) {
+                current = Arrays.copyOf(current, next * 2);
+            }
+            current[next] = symbol;
+            names = current;
+            count = next + 1;
+            // Published last: anyone who can see the id can also see its name
+            ids.put(symbol, next);
+            return next;
+        }
+    }
+
+    // Id of a known symbol, or -1 if it was never interned
+    public static int idOf(String symbol) {
+        Integer id = symbol != null ? ids.get(symbol) : null;
+        return id != null ? id : -1;
+    }
+
+    public static String name(int id) {
+        String[] current = names;
+        if (id < 0 || id >= current.length || current[id] == null) {
+            throw new IllegalArgumentException("Unknown symbol id " + id);
+        }
+        return current[id];
+    }
+
+    // Number of ids handed out so far; every id is below this
+    public static int size() {
+        synchronized (SymbolRegistry.class) {
+            return count;
+        }
+    }
+}
@@ -1,66 +1,143 @@
 package Bots;
 import Engine.*;
 import Banking.*;
+import Sim.RealTimeScheduler;
+import Sim.Scheduler;
+import java.io.OutputStream;
+import java.io.PrintStream;
 import java.util.*;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 
 public class BotManager {
+    private static final PrintStream QUIET = new PrintStream(OutputStream.nullOutputStream());
+
     private List<Object> bots;
+    private Scheduler sharedScheduler; // null: each bot gets its own wall-clock thread
+    private List<RealTimeScheduler> ownedSchedulers;
+    private Random seeds; // Hands each bot that needs randomness its own seed
+    private Leaderboard leaderboard; // Ranks every bot added from now on, if set
+    private PrintStream log = System.out; // Where this manager and the bots it adds print
+    private Map<String, Portfolio> existing = new HashMap<>(); // By name; handed to the next bot of that name
 
     public BotManager() {
+        this(null);
+    }
+
+    // Run every bot on one scheduler, e.g. a DiscreteEventScheduler for a simulated session
+    public BotManager(Scheduler scheduler) {
+        this(scheduler, new Random());
+    }
+
+    // Same bots added in the same order with the same seed make the same decisions
+    public BotManager(Scheduler scheduler, long seed) {
+        this(scheduler, new Random(seed));
+    }
+
+    private BotManager(Scheduler scheduler, Random seeds) {
         this.bots = new ArrayList<>();
+        this.sharedScheduler = scheduler;
+        this.ownedSchedulers = new ArrayList<>();
+        this.seeds = seeds;
     }
+
     public void addHFMarketMakerBot(String name, double cash, OrderBook orderBook, double spread, int size) {
-        HFMarketMakerBot bot = new HFMarketMakerBot(name, cash, orderBook, spread, size);
+        HFMarketMakerBot bot = new HFMarketMakerBot(portfolioFor(name, cash), orderBook, spread, size, schedulerForBot());
         bots.add(bot);
+        track(bot.getPortfolio());
         bot.start();
-        System.out.println("Started Market Maker Bot: " + name);
+        log.println("Started Market Maker Bot: " + name);
     }
 
     public void addMarketMaker(String name, double cash, OrderBook orderBook, double spread, int size) {
-        MarketMakerBot bot = new MarketMakerBot(name, cash, orderBook, spread, size);
+        MarketMakerBot bot = new MarketMakerBot(portfolioFor(name, cash), orderBook, spread, size, schedulerForBot());
+        bot.log = log;
         bots.add(bot);
+        track(bot.getPortfolio());
         bot.start();
-        System.out.println("Started Market Maker Bot: " + name);
+        log.println("Started Market Maker Bot: " + name);
     }
 
     public void addMomentumBot(String name, double cash, OrderBook orderBook, double threshold, int size) {
-        MomentumBot bot = new MomentumBot(name, cash, orderBook, threshold, size);
+        MomentumBot bot = new MomentumBot(portfolioFor(name, cash), orderBook, threshold, size, schedulerForBot());
+        bot.log = log;
         bots.add(bot);
+        track(bot.getPortfolio());
         bot.start();
-        System.out.println("Started Momentum Bot: " + name);
+        log.println("Started Momentum Bot: " + name);
     }
 
     public void addMeanReversionBot(String name, double cash, OrderBook orderBook, double threshold, int size) {
-        MeanReversionBot bot = new MeanReversionBot(name, cash, orderBook, threshold, size);
+        MeanReversionBot bot = new MeanReversionBot(portfolioFor(name, cash), orderBook, threshold, size, schedulerForBot());
+        bot.log = log;
         bots.add(bot);
+        track(bot.getPortfolio());
         bot.start();
-        System.out.println("Started Mean Reversion Bot: " + name);
+        log.println("Started Mean Reversion Bot: " + name);
     }
 
     public void addRandomBot(String name, double cash, OrderBook orderBook, int maxSize) {
-        RandomBot bot = new RandomBot(name, cash, orderBook, maxSize);
+        RandomBot bot = new RandomBot(portfolioFor(name, cash), orderBook, maxSize, schedulerForBot(), new Random(seeds.nextLong()));
+        bot.log = log;
         bots.add(bot);
+        track(bot.getPortfolio());
         bot.start();
-        System.out.println("Started Random Bot: " + name);
+        log.println("Started Random Bot: " + name);
+    }
+
+    // Keep this manager and the bots added after this off the console, e.g. in a headless backtest
+    public void setQuiet(boolean quiet) {
+        this.log = quiet ? QUIET : System.out;
+    }
+
+    // Bots added after this trade from the portfolio of the same name, if there is one,
+    // instead of a new one; e.g. the portfolios JournalRecovery rebuilt. Each is used once.
+    public void usePortfolios(Collection<Portfolio> portfolios) {
+        for (Portfolio portfolio : portfolios) {
+            existing.put(portfolio.getUsername(), portfolio);
+        }
     }
 
+    // Track the portfolios of bots added after this on the leaderboard
+    public void setLeaderboard(Leaderboard leaderboard) {
+        this.leaderboard = leaderboard;
+    }
 
+    private void track(Portfolio portfolio) {
+        if (leaderboard != null) {
+            leaderboard.track(portfolio);
+        }
+    }
+
+    private Portfolio portfolioFor(String name, double cash) {
+        Portfolio portfolio = existing.remove(name);
+        return portfolio != null ? portfolio : new Portfolio(cash, name);
+    }
+
+    private Scheduler schedulerForBot() {
+        if (sharedScheduler != null) {
+            return sharedScheduler;
+        }
+        RealTimeScheduler scheduler = new RealTimeScheduler();
+        ownedSchedulers.add(scheduler);
+        return scheduler;
+    }
 
     public void stopAllBots() {
         for (Object bot : bots) {
             try {
                 if (bot instanceof MarketMakerBot) ((MarketMakerBot) bot).stop();
+                else if (bot instanceof HFMarketMakerBot) ((HFMarketMakerBot) bot).stop();
                 else if (bot instanceof MomentumBot) ((MomentumBot) bot).stop();
                 else if (bot instanceof MeanReversionBot) ((MeanReversionBot) bot).stop();
                 else if (bot instanceof RandomBot) ((RandomBot) bot).stop();
             } catch (Exception e) {
-                System.out.println("Error stopping bot: " + e.getMessage());
+                log.println("Error stopping bot: " + e.getMessage());
             }
         }
+        for (RealTimeScheduler scheduler : ownedSchedulers) {
+            scheduler.shutdown();
+        }
+        ownedSchedulers.clear();
         bots.clear();
-        System.out.println("All bots stopped");
+        log.println("All bots stopped");
     }
-}
\ No newline at end of file
+}
@@ -2,10 +2,8 @@ package Bots;
 
 import Engine.*;
 import Banking.*;
+import Sim.Scheduler;
 import java.util.*;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 
 /**
  * High-Frequency Market Maker - Ultra-fast market making with tighter spreads
@@ -16,54 +14,72 @@ class HFMarketMakerBot {
     private String symbol;
     private double minSpread;
     private int orderSize;
-    private List<Integer> activeOrders;
-    private ScheduledExecutorService scheduler;
+    private int buyOrderId;  // Resting quotes, 0 when none
+    private int sellOrderId;
+    private final OrderBatch batch = new OrderBatch(2);
+    private Scheduler scheduler;
+    private MarketDataSubscription subscription;
     private double lastPrice;
 
-    public HFMarketMakerBot(String botName, double initialCash, OrderBook orderBook, double minSpread, int orderSize) {
-        this.portfolio = new Portfolio(initialCash, botName);
+    public HFMarketMakerBot(Portfolio portfolio, OrderBook orderBook, double minSpread, int orderSize, Scheduler scheduler) {
+        this.portfolio = portfolio;
         this.orderBook = orderBook;
         this.symbol = orderBook.getSymbol();
         this.minSpread = minSpread;
         this.orderSize = orderSize;
-        this.activeOrders = new ArrayList<>();
-        this.scheduler = Executors.newSingleThreadScheduledExecutor();
+        this.scheduler = scheduler;
         this.lastPrice = orderBook.getCurrentPrice();
     }
 
     public void start() {
-        // Run every 100ms for high frequency
-        scheduler.scheduleAtFixedRate(this::updateOrdersHF, 0, 100, TimeUnit.MILLISECONDS);
+        // React to every trade rather than polling; coalesced so a burst is handled once
+        subscription = orderBook.subscribeMarketData(new MarketDataListener() {
+            @Override
+            public void onTrade(Trade trade) {
+                updateOrdersHF();
+            }
+        }, scheduler, true);
     }
 
     private void updateOrdersHF() {
         try {
             double currentPrice = orderBook.getCurrentPrice();
-            Double bestBid = orderBook.getBestBid();
-            Double bestAsk = orderBook.getBestAsk();
+            double tick = orderBook.getTickSize();
+            TopOfBook top = orderBook.getTopOfBook(); // One consistent read of both sides
+            Double bestBid = top.hasBid() ? top.getBidPrice() : null;
+            Double bestAsk = top.hasAsk() ? top.getAskPrice() : null;
 
             // Calculate dynamic spread based on volatility
             double priceChange = Math.abs(currentPrice - lastPrice) / lastPrice;
             double dynamicSpread = Math.max(minSpread, minSpread * (1 + priceChange * 10));
 
             // Aggressive pricing - get inside the spread
-            double targetBuyPrice = bestAsk != null ? bestAsk - 0.01 : currentPrice - (dynamicSpread / 2);
-            double targetSellPrice = bestBid != null ? bestBid + 0.01 : currentPrice + (dynamicSpread / 2);
+            double targetBuyPrice = bestAsk != null ? bestAsk - tick : currentPrice - (dynamicSpread / 2);
+            double targetSellPrice = bestBid != null ? bestBid + tick : currentPrice + (dynamicSpread / 2);
 
             // Quick order replacement - only if price moved significantly
             if (Math.abs(currentPrice - lastPrice) > 0.05) {
-                cancelAllOrders();
-
-                // Place tight orders
-                if (portfolio.getAvailableCash() >= targetBuyPrice * orderSize) {
-                    Order buyOrder = new Order(symbol, Order.Type.BUY, Order.Side.LIMIT, orderSize, targetBuyPrice, portfolio);
-                    orderBook.placeBuyOrder(buyOrder);
-                    activeOrders.add(buyOrder.getId());
+                // Move resting quotes in place, or place tight orders where none rest
+                batch.clear();
+                boolean quoteBuy = buyOrderId != 0 || portfolio.getAvailableCash() >= targetBuyPrice * orderSize;
+                if (buyOrderId != 0) {
+                    batch.modify(buyOrderId, targetBuyPrice, orderSize);
+                } else if (quoteBuy) {
+                    batch.add(orderBook.createOrder(Order.Type.BUY, Order.Side.LIMIT, orderSize, targetBuyPrice, portfolio));
+                }
+                if (sellOrderId != 0) {
+                    batch.modify(sellOrderId, targetSellPrice, orderSize);
+                } else {
+                    batch.add(orderBook.createOrder(Order.Type.SELL, Order.Side.LIMIT, orderSize, targetSellPrice, portfolio));
                 }
 
-                Order sellOrder = new Order(symbol, Order.Type.SELL, Order.Side.LIMIT, orderSize, targetSellPrice, portfolio);
-                orderBook.placeSellOrder(sellOrder);
-                activeOrders.add(sellOrder.getId());
+                orderBook.submitBatch(batch);
+                int sellIndex = 0;
+                if (quoteBuy) {
+                    buyOrderId = batch.isSuccess(0) ? batch.getOrderId(0) : 0;
+                    sellIndex = 1;
+                }
+                sellOrderId = batch.isSuccess(sellIndex) ? batch.getOrderId(sellIndex) : 0;
 
                 lastPrice = currentPrice;
             }
@@ -74,15 +90,24 @@ class HFMarketMakerBot {
     }
 
     private void cancelAllOrders() {
-        for (Integer orderId : activeOrders) {
-            orderBook.cancelBuyOrder(orderId);
-            orderBook.cancelSellOrder(orderId);
+        if (buyOrderId != 0) {
+            orderBook.cancel(buyOrderId);
+            buyOrderId = 0;
+        }
+        if (sellOrderId != 0) {
+            orderBook.cancel(sellOrderId);
+            sellOrderId = 0;
         }
-        activeOrders.clear();
     }
 
     public void stop() {
+        if (subscription != null) {
+            subscription.cancel();
+        }
         cancelAllOrders();
-        scheduler.shutdown();
+    }
+
+    public Portfolio getPortfolio() {
+        return portfolio;
     }
 }
\ No newline at end of file
@@ -1,41 +1,53 @@
 package Bots;
 import Engine.*;
 import Banking.*;
+import Sim.Scheduler;
+import java.io.PrintStream;
 import java.util.*;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 
 class MarketMakerBot {
     private Portfolio portfolio;
+    PrintStream log = System.out; // Set by BotManager, which may silence it
     private OrderBook orderBook;
     private String symbol;
     private double spread;
     private int orderSize;
-    private List<Integer> activeOrders;
-    private ScheduledExecutorService scheduler;
+    private static final int LEVELS = 3; // Orders quoted on each side
+    private final int[] buyLadder = new int[LEVELS];  // Resting order ids by level, 0 when empty
+    private final int[] sellLadder = new int[LEVELS];
+    private final OrderBatch batch = new OrderBatch(); // Reused for every requote
+    private final int[] slotByCommand = new int[2 * LEVELS]; // Ladder slot of each batch command; sells offset by LEVELS
+    private Scheduler scheduler;
+    private MarketDataSubscription subscription;
     private double minPrice = 0.50; // Minimum price to prevent unrealistic orders
     private double maxSpreadFromCurrent = 5.0; // Maximum spread from current price
 
-    public MarketMakerBot(String botName, double initialCash, OrderBook orderBook, double spread, int orderSize) {
-        this.portfolio = new Portfolio(initialCash, botName);
+    public MarketMakerBot(Portfolio portfolio, OrderBook orderBook, double spread, int orderSize, Scheduler scheduler) {
+        this.portfolio = portfolio;
         this.orderBook = orderBook;
         this.symbol = orderBook.getSymbol();
         this.spread = spread;
         this.orderSize = orderSize;
-        this.activeOrders = new ArrayList<>();
-        this.scheduler = Executors.newSingleThreadScheduledExecutor();
+        this.scheduler = scheduler;
     }
 
     public void start() {
-        scheduler.scheduleAtFixedRate(this::updateOrders, 0, 500, TimeUnit.MILLISECONDS);
+        // Requote whenever the top of book moves; the current quote arrives first
+        subscription = orderBook.subscribeMarketData(new MarketDataListener() {
+            @Override
+            public void onTopOfBookChange(TopOfBook topOfBook) {
+                updateOrders();
+            }
+        }, scheduler, true);
     }
 
     private void updateOrders() {
         try {
             double currentPrice = orderBook.getCurrentPrice();
-            Double bestBid = orderBook.getBestBid();
-            Double bestAsk = orderBook.getBestAsk();
+            double tick = orderBook.getTickSize();
+            TopOfBook top = orderBook.getTopOfBook(); // One consistent read of both sides
+            Double bestBid = top.hasBid() ? top.getBidPrice() : null;
+            Double bestAsk = top.hasAsk() ? top.getAskPrice() : null;
 
             // Calculate target prices - use current price as fallback when no bid/ask exists
             double targetBuyPrice, targetSellPrice;
@@ -46,19 +58,19 @@ class MarketMakerBot {
                 targetSellPrice = currentPrice + (spread / 2);
             } else if (bestBid == null) {
                 // No bids - place buy orders below best ask
-                targetBuyPrice = Math.min(bestAsk - 0.01, currentPrice - (spread / 2));
-                targetSellPrice = bestAsk + 0.01;
+                targetBuyPrice = Math.min(bestAsk - tick, currentPrice - (spread / 2));
+                targetSellPrice = bestAsk + tick;
             } else if (bestAsk == null) {
                 // No asks - place sell orders above best bid
-                targetBuyPrice = bestBid - 0.01;
-                targetSellPrice = Math.max(bestBid + 0.01, currentPrice + (spread / 2));
+                targetBuyPrice = bestBid - tick;
+                targetSellPrice = Math.max(bestBid + tick, currentPrice + (spread / 2));
             } else {
                 // Normal market - place orders inside the spread
                 double currentSpread = bestAsk - bestBid;
                 if (currentSpread > spread) {
                     // Wide spread - place tighter orders
-                    targetBuyPrice = bestBid + 0.01;
-                    targetSellPrice = bestAsk - 0.01;
+                    targetBuyPrice = bestBid + tick;
+                    targetSellPrice = bestAsk - tick;
                 } else {
                     // Tight spread - place orders at current levels or slightly outside
                     targetBuyPrice = bestBid;
@@ -79,40 +91,42 @@ class MarketMakerBot {
             }
 
             // Only update orders if prices have moved significantly or no orders exist
-            boolean shouldUpdateBuy = bestBid == null || activeOrders.isEmpty() ||
+            boolean noOrders = isEmpty(buyLadder) && isEmpty(sellLadder);
+            boolean shouldUpdateBuy = bestBid == null || noOrders ||
                     Math.abs(bestBid - targetBuyPrice) > 0.25;
-            boolean shouldUpdateSell = bestAsk == null || activeOrders.isEmpty() ||
+            boolean shouldUpdateSell = bestAsk == null || noOrders ||
                     Math.abs(bestAsk - targetSellPrice) > 0.25;
 
+            // Requote both sides in one batch so the book is taken once; resting
+            // orders are modified in place rather than cancelled and replaced
+            batch.clear();
             if (shouldUpdateBuy) {
-                cancelBuyOrders();
                 placeBuyOrders(targetBuyPrice);
             }
 
             if (shouldUpdateSell) {
-                cancelSellOrders();
                 placeSellOrders(targetSellPrice);
             }
+            submitBatch();
 
         } catch (Exception e) {
-            System.out.println("MarketMaker error: " + e.getMessage());
+            log.println("MarketMaker error: " + e.getMessage());
             e.printStackTrace();
         }
     }
 
     private void placeBuyOrders(double targetBuyPrice) {
         // Place multiple buy orders at different levels for better coverage
-        for (int i = 0; i < 3; i++) {
+        for (int i = 0; i < LEVELS; i++) {
             double buyPrice = Math.max(targetBuyPrice - (i * 0.25), minPrice);
-            if (portfolio.getAvailableCash() >= buyPrice * orderSize) {
+            slotByCommand[batch.size()] = i;
+            if (buyLadder[i] != 0) {
+                batch.modify(buyLadder[i], buyPrice, orderSize);
+            } else if (portfolio.getAvailableCash() >= buyPrice * orderSize) {
                 try {
-                    Order buyOrder = new Order(symbol, Order.Type.BUY, Order.Side.LIMIT, orderSize, buyPrice, portfolio);
-                    if (buyOrder != null) {
-                        orderBook.placeBuyOrder(buyOrder);
-                        activeOrders.add(buyOrder.getId());
-                    }
+                    batch.add(orderBook.createOrder(Order.Type.BUY, Order.Side.LIMIT, orderSize, buyPrice, portfolio));
                 } catch (Exception e) {
-                    System.out.println("Failed to create buy order: " + e.getMessage());
+                    log.println("Failed to create buy order: " + e.getMessage());
                 }
             }
         }
@@ -120,55 +134,54 @@ class MarketMakerBot {
 
     private void placeSellOrders(double targetSellPrice) {
         // Place multiple sell orders at different levels
-        for (int i = 0; i < 3; i++) {
+        for (int i = 0; i < LEVELS; i++) {
             double sellPrice = Math.max(targetSellPrice + (i * 0.25), minPrice);
+            slotByCommand[batch.size()] = LEVELS + i;
+            if (sellLadder[i] != 0) {
+                batch.modify(sellLadder[i], sellPrice, orderSize);
+                continue;
+            }
             try {
-                Order sellOrder = new Order(symbol, Order.Type.SELL, Order.Side.LIMIT, orderSize, sellPrice, portfolio);
-                if (sellOrder != null) {
-                    orderBook.placeSellOrder(sellOrder);
-                    activeOrders.add(sellOrder.getId());
-                }
+                batch.add(orderBook.createOrder(Order.Type.SELL, Order.Side.LIMIT, orderSize, sellPrice, portfolio));
             } catch (Exception e) {
-                System.out.println("Failed to create sell order: " + e.getMessage());
+                log.println("Failed to create sell order: " + e.getMessage());
             }
         }
     }
 
     private void cancelAllOrders() {
-        Iterator<Integer> iterator = activeOrders.iterator();
-        while (iterator.hasNext()) {
-            Integer orderId = iterator.next();
-            boolean cancelledBuy = orderBook.cancelBuyOrder(orderId);
-            boolean cancelledSell = orderBook.cancelSellOrder(orderId);
-            if (cancelledBuy || cancelledSell) {
-                iterator.remove();
-            }
-        }
+        cancelLadder(buyLadder);
+        cancelLadder(sellLadder);
     }
 
-    private void cancelBuyOrders() {
-        Iterator<Integer> iterator = activeOrders.iterator();
-        while (iterator.hasNext()) {
-            Integer orderId = iterator.next();
-            if (orderBook.cancelBuyOrder(orderId)) {
-                iterator.remove();
+    private void cancelLadder(int[] ladder) {
+        for (int i = 0; i < LEVELS; i++) {
+            if (ladder[i] != 0) {
+                orderBook.cancel(ladder[i]);
+                ladder[i] = 0;
             }
         }
     }
 
-    private void cancelSellOrders() {
-        Iterator<Integer> iterator = activeOrders.iterator();
-        while (iterator.hasNext()) {
-            Integer orderId = iterator.next();
-            if (orderBook.cancelSellOrder(orderId)) {
-                iterator.remove();
-            }
+    // Apply the queued commands, then record which ladder slots now hold a resting order
+    private void submitBatch() {
+        if (batch.size() == 0) {
+            return;
+        }
+        orderBook.submitBatch(batch);
+        for (int i = 0; i < batch.size(); i++) {
+            int slot = slotByCommand[i];
+            int[] ladder = slot < LEVELS ? buyLadder : sellLadder;
+            // A failed modify means the order filled or went away; the slot is quoted afresh next time
+            ladder[slot % LEVELS] = batch.isSuccess(i) ? batch.getOrderId(i) : 0;
         }
     }
 
     public void stop() {
+        if (subscription != null) {
+            subscription.cancel();
+        }
         cancelAllOrders();
-        scheduler.shutdown();
     }
 
     // Getter methods for monitoring
@@ -177,7 +190,21 @@ class MarketMakerBot {
     }
 
     public List<Integer> getActiveOrders() {
-        return new ArrayList<>(activeOrders);
+        List<Integer> orders = new ArrayList<>();
+        for (int i = 0; i < LEVELS; i++) {
+            if (buyLadder[i] != 0) orders.add(buyLadder[i]);
+            if (sellLadder[i] != 0) orders.add(sellLadder[i]);
+        }
+        return orders;
+    }
+
+    private static boolean isEmpty(int[] ladder) {
+        for (int orderId : ladder) {
+            if (orderId != 0) {
+                return false;
+            }
+        }
+        return true;
     }
 
     public String getSymbol() {
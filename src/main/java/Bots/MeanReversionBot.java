@@ -1,40 +1,50 @@
 package Bots;
 import Engine.*;
 import Banking.*;
+import Sim.Scheduler;
+import Data.Candle;
+import Data.CandleManager;
+import java.io.PrintStream;
 import java.util.*;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 
 class MeanReversionBot {
     private Portfolio portfolio;
+    PrintStream log = System.out; // Set by BotManager, which may silence it
     private OrderBook orderBook;
     private String symbol;
     private double baselinePrice;
     private double reversionThreshold;
     private int orderSize;
-    private ScheduledExecutorService scheduler;
+    private Scheduler scheduler;
+    private MarketDataSubscription subscription;
     private Queue<Double> priceHistory;
     private int historySize = 10;
 
-    public MeanReversionBot(String botName, double initialCash, OrderBook orderBook, double threshold, int orderSize) {
-        this.portfolio = new Portfolio(initialCash, botName);
+    public MeanReversionBot(Portfolio portfolio, OrderBook orderBook, double threshold, int orderSize, Scheduler scheduler) {
+        this.portfolio = portfolio;
         this.orderBook = orderBook;
         this.symbol = orderBook.getSymbol();
         this.baselinePrice = orderBook.getCurrentPrice();
         this.reversionThreshold = threshold;
         this.orderSize = orderSize;
-        this.scheduler = Executors.newSingleThreadScheduledExecutor();
+        this.scheduler = scheduler;
         this.priceHistory = new LinkedList<>();
     }
 
     public void start() {
-        scheduler.scheduleAtFixedRate(this::checkReversion, 0, 4, TimeUnit.SECONDS);
+        // Sample the price at each five-second candle close instead of on a timer
+        subscription = orderBook.subscribeMarketData(new MarketDataListener() {
+            @Override
+            public void onCandleClose(String symbol, CandleManager.TimeFrame timeFrame, long startTime, Candle candle) {
+                if (timeFrame == CandleManager.TimeFrame.FIVE_SECOND) {
+                    checkReversion(candle.getClose());
+                }
+            }
+        }, scheduler);
     }
 
-    private void checkReversion() {
+    private void checkReversion(double currentPrice) {
         try {
-            double currentPrice = orderBook.getCurrentPrice();
 
             // Update price history and baseline
             priceHistory.offer(currentPrice);
@@ -51,23 +61,29 @@ class MeanReversionBot {
 
             // Buy when price is significantly below baseline
             if (deviation < -reversionThreshold && portfolio.getAvailableCash() >= currentPrice * orderSize) {
-                Order buyOrder = new Order(symbol, Order.Type.BUY, Order.Side.MARKET, orderSize, 0, portfolio);
+                Order buyOrder = orderBook.createOrder(Order.Type.BUY, Order.Side.MARKET, orderSize, 0, portfolio);
                 orderBook.placeBuyOrder(buyOrder);
-                System.out.println("Mean Reversion Bot: Buying at low price");
+                log.println("Mean Reversion Bot: Buying at low price");
             }
             // Sell when price is significantly above baseline
             else if (deviation > reversionThreshold && portfolio.getAvailableStock(symbol) >= orderSize) {
-                Order sellOrder = new Order(symbol, Order.Type.SELL, Order.Side.MARKET, orderSize, 0, portfolio);
+                Order sellOrder = orderBook.createOrder(Order.Type.SELL, Order.Side.MARKET, orderSize, 0, portfolio);
                 orderBook.placeSellOrder(sellOrder);
-                System.out.println("Mean Reversion Bot: Selling at high price");
+                log.println("Mean Reversion Bot: Selling at high price");
             }
 
         } catch (Exception e) {
-            System.out.println("Mean Reversion Bot error: " + e.getMessage());
+            log.println("Mean Reversion Bot error: " + e.getMessage());
         }
     }
 
     public void stop() {
-        scheduler.shutdown();
+        if (subscription != null) {
+            subscription.cancel();
+        }
+    }
+
+    public Portfolio getPortfolio() {
+        return portfolio;
     }
 }
@@ -1,63 +1,79 @@
 package Bots;
 import Engine.*;
 import Banking.*;
+import Sim.Scheduler;
+import Data.Candle;
+import Data.CandleManager;
+import java.io.PrintStream;
 import java.util.*;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 
 class MomentumBot {
     private Portfolio portfolio;
+    PrintStream log = System.out; // Set by BotManager, which may silence it
     private OrderBook orderBook;
     private String symbol;
     private double lastPrice;
     private double priceChangeThreshold;
     private int orderSize;
-    private ScheduledExecutorService scheduler;
+    private Scheduler scheduler;
+    private MarketDataSubscription subscription;
     private boolean hasPosition;
 
-    public MomentumBot(String botName, double initialCash, OrderBook orderBook, double threshold, int orderSize) {
-        this.portfolio = new Portfolio(initialCash, botName);
+    public MomentumBot(Portfolio portfolio, OrderBook orderBook, double threshold, int orderSize, Scheduler scheduler) {
+        this.portfolio = portfolio;
         this.orderBook = orderBook;
         this.symbol = orderBook.getSymbol();
         this.lastPrice = orderBook.getCurrentPrice();
         this.priceChangeThreshold = threshold;
         this.orderSize = orderSize;
-        this.scheduler = Executors.newSingleThreadScheduledExecutor();
-        this.hasPosition = false;
+        this.scheduler = scheduler;
+        this.hasPosition = portfolio.getAvailableStock(symbol) > 0; // A recovered portfolio may hold some already
     }
 
     public void start() {
-        scheduler.scheduleAtFixedRate(this::checkMomentum, 0, 3, TimeUnit.SECONDS);
+        // Sample the price at each five-second candle close instead of on a timer
+        subscription = orderBook.subscribeMarketData(new MarketDataListener() {
+            @Override
+            public void onCandleClose(String symbol, CandleManager.TimeFrame timeFrame, long startTime, Candle candle) {
+                if (timeFrame == CandleManager.TimeFrame.FIVE_SECOND) {
+                    checkMomentum(candle.getClose());
+                }
+            }
+        }, scheduler);
     }
 
-    private void checkMomentum() {
+    private void checkMomentum(double currentPrice) {
         try {
-            double currentPrice = orderBook.getCurrentPrice();
             double priceChange = (currentPrice - lastPrice) / lastPrice;
 
             // Buy on upward momentum
             if (priceChange > priceChangeThreshold && !hasPosition && portfolio.getAvailableCash() >= currentPrice * orderSize) {
-                Order buyOrder = new Order(symbol, Order.Type.BUY, Order.Side.MARKET, orderSize, 0, portfolio);
+                Order buyOrder = orderBook.createOrder(Order.Type.BUY, Order.Side.MARKET, orderSize, 0, portfolio);
                 orderBook.placeBuyOrder(buyOrder);
                 hasPosition = true;
-                System.out.println("Momentum Bot: Buying on upward momentum");
+                log.println("Momentum Bot: Buying on upward momentum");
             }
             // Sell on downward momentum
             else if (priceChange < -priceChangeThreshold && hasPosition) {
-                Order sellOrder = new Order(symbol, Order.Type.SELL, Order.Side.MARKET, orderSize, 0, portfolio);
+                Order sellOrder = orderBook.createOrder(Order.Type.SELL, Order.Side.MARKET, orderSize, 0, portfolio);
                 orderBook.placeSellOrder(sellOrder);
                 hasPosition = false;
-                System.out.println("Momentum Bot: Selling on downward momentum");
+                log.println("Momentum Bot: Selling on downward momentum");
             }
 
             lastPrice = currentPrice;
         } catch (Exception e) {
-            System.out.println("Momentum Bot error: " + e.getMessage());
+            log.println("Momentum Bot error: " + e.getMessage());
         }
     }
 
     public void stop() {
-        scheduler.shutdown();
+        if (subscription != null) {
+            subscription.cancel();
+        }
+    }
+
+    public Portfolio getPortfolio() {
+        return portfolio;
     }
 }
\ No newline at end of file
@@ -1,30 +1,33 @@
 package Bots;
 import Engine.*;
 import Banking.*;
+import Sim.ScheduledTask;
+import Sim.Scheduler;
+import java.io.PrintStream;
 import java.util.*;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 class RandomBot {
     private Portfolio portfolio;
+    PrintStream log = System.out; // Set by BotManager, which may silence it
     private OrderBook orderBook;
     private String symbol;
     private int maxOrderSize;
-    private ScheduledExecutorService scheduler;
+    private Scheduler scheduler;
+    private ScheduledTask task;
     private Random random;
 
-    public RandomBot(String botName, double initialCash, OrderBook orderBook, int maxOrderSize) {
-        this.portfolio = new Portfolio(initialCash, botName);
+    public RandomBot(Portfolio portfolio, OrderBook orderBook, int maxOrderSize, Scheduler scheduler, Random random) {
+        this.portfolio = portfolio;
         this.orderBook = orderBook;
         this.symbol = orderBook.getSymbol();
         this.maxOrderSize = maxOrderSize;
-        this.scheduler = Executors.newSingleThreadScheduledExecutor();
-        this.random = new Random();
+        this.scheduler = scheduler;
+        this.random = random;
     }
 
     public void start() {
-        scheduler.scheduleAtFixedRate(this::makeRandomTrade, 0, 8, TimeUnit.SECONDS);
+        task = scheduler.scheduleAtFixedRate(this::makeRandomTrade, 0, 8, TimeUnit.SECONDS);
     }
 
     private void makeRandomTrade() {
@@ -38,7 +41,7 @@ class RandomBot {
                     double priceVariation = 0.95 + (random.nextDouble() * 0.1); // ±5% price variation
                     double orderPrice = currentPrice * priceVariation;
 
-                    Order buyOrder = new Order(symbol, Order.Type.BUY, Order.Side.LIMIT, orderSize, orderPrice, portfolio);
+                    Order buyOrder = orderBook.createOrder(Order.Type.BUY, Order.Side.LIMIT, orderSize, orderPrice, portfolio);
                     orderBook.placeBuyOrder(buyOrder);
                 }
             } else {
@@ -46,16 +49,22 @@ class RandomBot {
                 double priceVariation = 0.95 + (random.nextDouble() * 0.1);
                 double orderPrice = currentPrice * priceVariation;
 
-                Order sellOrder = new Order(symbol, Order.Type.SELL, Order.Side.LIMIT, orderSize, orderPrice, portfolio);
+                Order sellOrder = orderBook.createOrder(Order.Type.SELL, Order.Side.LIMIT, orderSize, orderPrice, portfolio);
                 orderBook.placeSellOrder(sellOrder);
             }
 
         } catch (Exception e) {
-            System.out.println("Random Bot error: " + e.getMessage());
+            log.println("Random Bot error: " + e.getMessage());
         }
     }
 
     public void stop() {
-        scheduler.shutdown();
+        if (task != null) {
+            task.cancel();
+        }
+    }
+
+    public Portfolio getPortfolio() {
+        return portfolio;
     }
 }
\ No newline at end of file
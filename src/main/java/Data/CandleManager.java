@@ -1,11 +1,11 @@
 package Data;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import Banking.*;
 import Data.Candle;
+import Sim.Clock;
 
 /**
  * Event-driven candle system that updates only when trades occur
@@ -36,14 +36,39 @@ public class CandleManager {
         }
     }
 
-    // Store candles for each symbol and timeframe
-    private final Map<String, Map<TimeFrame, NavigableMap<Long, Candle>>> candleData;
-    private final Map<String, Map<TimeFrame, Long>> currentCandleTimes;
+    /**
+     * Told when a candle is complete. Candles are event-driven, so a candle
+     * closes when the first trade of the next period arrives.
+     */
+    public interface CandleCloseListener {
+        void onCandleClose(String symbol, TimeFrame timeFrame, long startTime, Candle candle);
+    }
+
+    private static final TimeFrame[] TIME_FRAMES = TimeFrame.values(); // values() clones on every call
+
+    // Candles of one symbol, by TimeFrame ordinal
+    private static final class SymbolCandles {
+        final String symbol;
+        final NavigableMap<Long, Candle>[] candles;
+        final long[] currentCandleTimes;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        SymbolCandles(String symbol) {
+            this.symbol = symbol;
+            this.candles = new NavigableMap[TIME_FRAMES.length];
+            this.currentCandleTimes = new long[TIME_FRAMES.length];
+            for (int i = 0; i < candles.length; i++) {
+                candles[i] = new TreeMap<>();
+            }
+        }
+    }
+
+    // Store candles for each symbol by SymbolRegistry id; replaced under the manager's lock
+    private volatile SymbolCandles[] candleData;
     private final int maxCandlesPerTimeframe;
 
     public CandleManager(int maxCandlesPerTimeframe) {
-        this.candleData = new ConcurrentHashMap<>();
-        this.currentCandleTimes = new ConcurrentHashMap<>();
+        this.candleData = new SymbolCandles[16];
         this.maxCandlesPerTimeframe = maxCandlesPerTimeframe;
     }
 
@@ -51,48 +76,72 @@ public class CandleManager {
      * Initialize candles for a new symbol
      */
     public void initializeSymbol(String symbol, double initialPrice) {
-        candleData.put(symbol, new ConcurrentHashMap<>());
-        currentCandleTimes.put(symbol, new ConcurrentHashMap<>());
+        initializeSymbol(SymbolRegistry.intern(symbol), initialPrice);
+    }
 
-        long currentTime = System.currentTimeMillis();
+    public void initializeSymbol(int symbolId, double initialPrice) {
+        SymbolCandles symbolCandles = new SymbolCandles(SymbolRegistry.name(symbolId));
+        long currentTime = Clock.current().currentTimeMillis();
 
-        for (TimeFrame tf : TimeFrame.values()) {
-            candleData.get(symbol).put(tf, new TreeMap<>());
+        for (TimeFrame tf : TIME_FRAMES) {
             long candleTime = getCandleStartTime(currentTime, tf);
-            currentCandleTimes.get(symbol).put(tf, candleTime);
+            symbolCandles.currentCandleTimes[tf.ordinal()] = candleTime;
 
             // Create initial candle
-            candleData.get(symbol).get(tf).put(candleTime,
+            symbolCandles.candles[tf.ordinal()].put(candleTime,
                     new Candle(initialPrice, initialPrice, initialPrice, initialPrice, 0));
         }
+
+        // Copy on write, so readers on other threads see the symbol's candles complete
+        synchronized (this) {
+            SymbolCandles[] data = Arrays.copyOf(candleData, Math.max(symbolId + 1, candleData.length));
+            data[symbolId] = symbolCandles;
+            candleData = data;
+        }
     }
 
     /**
      * Update candles when a trade occurs - this is the main method
      */
     public void onTrade(String symbol, double price, int volume, long timestamp) {
-        if (!candleData.containsKey(symbol)) {
-            initializeSymbol(symbol, price);
-        }
+        onTrade(SymbolRegistry.intern(symbol), price, volume, timestamp, null);
+    }
+
+    // As above, reporting every candle this trade closes to closeListener (may be null)
+    public void onTrade(String symbol, double price, int volume, long timestamp, CandleCloseListener closeListener) {
+        onTrade(SymbolRegistry.intern(symbol), price, volume, timestamp, closeListener);
+    }
 
-        Map<TimeFrame, NavigableMap<Long, Candle>> symbolCandles = candleData.get(symbol);
-        Map<TimeFrame, Long> symbolCurrentTimes = currentCandleTimes.get(symbol);
+    public void onTrade(int symbolId, double price, int volume, long timestamp, CandleCloseListener closeListener) {
+        SymbolCandles symbolCandles = candles(symbolId);
+        if (symbolCandles == null) {
+            initializeSymbol(symbolId, price);
+            symbolCandles = candles(symbolId);
+        }
 
-        for (TimeFrame tf : TimeFrame.values()) {
+        long[] symbolCurrentTimes = symbolCandles.currentCandleTimes;
+        for (TimeFrame tf : TIME_FRAMES) {
+            int i = tf.ordinal();
             long candleTime = getCandleStartTime(timestamp, tf);
-            long currentCandleTime = symbolCurrentTimes.get(tf);
+            long currentCandleTime = symbolCurrentTimes[i];
 
-            NavigableMap<Long, Candle> timeframeCandles = symbolCandles.get(tf);
+            NavigableMap<Long, Candle> timeframeCandles = symbolCandles.candles[i];
 
             // Check if we need a new candle
             if (candleTime > currentCandleTime) {
                 // Close previous candle and create new one
+                if (closeListener != null) {
+                    Candle closed = timeframeCandles.get(currentCandleTime);
+                    if (closed != null) {
+                        closeListener.onCandleClose(symbolCandles.symbol, tf, currentCandleTime, closed);
+                    }
+                }
                 createNewCandleAndCleanup(timeframeCandles, candleTime, price);
-                symbolCurrentTimes.put(tf, candleTime);
+                symbolCurrentTimes[i] = candleTime;
             }
 
             // Update current candle
-            Candle currentCandle = timeframeCandles.get(symbolCurrentTimes.get(tf));
+            Candle currentCandle = timeframeCandles.get(symbolCurrentTimes[i]);
             if (currentCandle != null) {
                 updateCandle(currentCandle, price, volume);
             }
@@ -140,21 +189,21 @@ public class CandleManager {
      * Get current candle for symbol and timeframe
      */
     public Candle getCurrentCandle(String symbol, TimeFrame timeFrame) {
-        if (!candleData.containsKey(symbol)) return null;
-
-        Long currentTime = currentCandleTimes.get(symbol).get(timeFrame);
-        if (currentTime == null) return null;
+        SymbolCandles symbolCandles = candles(symbol);
+        if (symbolCandles == null) return null;
 
-        return candleData.get(symbol).get(timeFrame).get(currentTime);
+        int i = timeFrame.ordinal();
+        return symbolCandles.candles[i].get(symbolCandles.currentCandleTimes[i]);
     }
 
     /**
      * Get historical candles for symbol and timeframe
      */
     public List<Candle> getCandles(String symbol, TimeFrame timeFrame, int count) {
-        if (!candleData.containsKey(symbol)) return new ArrayList<>();
+        SymbolCandles symbolCandles = candles(symbol);
+        if (symbolCandles == null) return new ArrayList<>();
 
-        NavigableMap<Long, Candle> candles = candleData.get(symbol).get(timeFrame);
+        NavigableMap<Long, Candle> candles = symbolCandles.candles[timeFrame.ordinal()];
 
         // Option 1: Using standard collectors (recommended)
         return candles.descendingMap().values().stream()
@@ -164,12 +213,44 @@ public class CandleManager {
     }
     public List<Candle> getCandlesInRange(String symbol, TimeFrame timeFrame,
                                           long startTime, long endTime) {
-        if (!candleData.containsKey(symbol)) return new ArrayList<>();
+        SymbolCandles symbolCandles = candles(symbol);
+        if (symbolCandles == null) return new ArrayList<>();
 
-        NavigableMap<Long, Candle> candles = candleData.get(symbol).get(timeFrame);
+        NavigableMap<Long, Candle> candles = symbolCandles.candles[timeFrame.ordinal()];
         return new ArrayList<>(candles.subMap(startTime, true, endTime, true).values());
     }
 
+    // Start of the candle currently being built, or -1 if the symbol is unknown
+    public long getCurrentCandleTime(String symbol, TimeFrame timeFrame) {
+        SymbolCandles symbolCandles = candles(symbol);
+        return symbolCandles == null ? -1 : symbolCandles.currentCandleTimes[timeFrame.ordinal()];
+    }
+
+    // Copies of every kept candle by start time; the caller must hold off trades on the symbol
+    public NavigableMap<Long, Candle> copySeries(String symbol, TimeFrame timeFrame) {
+        NavigableMap<Long, Candle> copy = new TreeMap<>();
+        SymbolCandles symbolCandles = candles(symbol);
+        if (symbolCandles != null) {
+            for (Map.Entry<Long, Candle> entry : symbolCandles.candles[timeFrame.ordinal()].entrySet()) {
+                Candle c = entry.getValue();
+                copy.put(entry.getKey(), new Candle(c.getHigh(), c.getLow(), c.getOpen(), c.getClose(), c.getVolume()));
+            }
+        }
+        return copy;
+    }
+
+    // Replace one series, e.g. when loading a snapshot
+    public void restoreSeries(String symbol, TimeFrame timeFrame, NavigableMap<Long, Candle> candles, long currentCandleTime) {
+        if (candles(symbol) == null) {
+            initializeSymbol(symbol, candles.isEmpty() ? 0 : candles.lastEntry().getValue().getClose());
+        }
+        SymbolCandles symbolCandles = candles(symbol);
+        NavigableMap<Long, Candle> series = symbolCandles.candles[timeFrame.ordinal()];
+        series.clear();
+        series.putAll(candles);
+        symbolCandles.currentCandleTimes[timeFrame.ordinal()] = currentCandleTime;
+    }
+
     /**
      * Get latest price for symbol (close of current candle)
      */
@@ -177,4 +258,14 @@ public class CandleManager {
         Candle currentCandle = getCurrentCandle(symbol, TimeFrame.FIVE_SECOND);
         return currentCandle != null ? currentCandle.getClose() : null;
     }
+
+    private SymbolCandles candles(String symbol) {
+        int symbolId = SymbolRegistry.idOf(symbol);
+        return symbolId < 0 ? null : candles(symbolId);
+    }
+
+    private SymbolCandles candles(int symbolId) {
+        SymbolCandles[] data = candleData;
+        return symbolId < data.length ? data[symbolId] : null;
+    }
 }
\ No newline at end of file
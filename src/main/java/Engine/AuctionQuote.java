@@ -0,0 +1,57 @@
+package Engine;
+
+import Sim.Clock;
+
+/**
+ * Indicative result of a book's call auction: the price that would execute
+ * the most volume if the auction uncrossed now, that volume, and what would
+ * be left over on each side at that price. Published like TopOfBook while
+ * the auction collects orders; the quote returned by uncross is the final
+ * result.
+ */
+public final class AuctionQuote {
+    private final String symbol;
+    private final long sequence;      // Increases by one with every published change
+    private final double price;       // 0 when nothing would execute
+    private final long volume;
+    private final long buySurplus;    // Bids at or above the price that would not be filled
+    private final long sellSurplus;   // Offers at or below the price that would not be filled
+    private final long timestamp;
+
+    final long priceTicks;
+
+    AuctionQuote(String symbol, long sequence, long priceTicks, double price, long volume, long buySurplus,
+                 long sellSurplus) {
+        this.symbol = symbol;
+        this.sequence = sequence;
+        this.priceTicks = priceTicks;
+        this.price = price;
+        this.volume = volume;
+        this.buySurplus = buySurplus;
+        this.sellSurplus = sellSurplus;
+        this.timestamp = Clock.current().currentTimeMillis();
+    }
+
+    boolean sameAs(long priceTicks, long volume, long buySurplus, long sellSurplus) {
+        return this.priceTicks == priceTicks && this.volume == volume
+                && this.buySurplus == buySurplus && this.sellSurplus == sellSurplus;
+    }
+
+    public String getSymbol() { return symbol; }
+    public long getSequence() { return sequence; }
+    public boolean hasPrice() { return volume > 0; }
+    public double getPrice() { return price; }
+    public long getVolume() { return volume; }
+    public long getBuySurplus() { return buySurplus; }
+    public long getSellSurplus() { return sellSurplus; }
+    public long getTimestamp() { return timestamp; }
+
+    @Override
+    public String toString() {
+        if (!hasPrice()) {
+            return symbol + " auction #" + sequence + ": no cross";
+        }
+        return symbol + " auction #" + sequence + ": " + volume + " @ $" + price + ", surplus " +
+                (buySurplus > 0 ? buySurplus + " to buy" : sellSurplus > 0 ? sellSurplus + " to sell" : "none");
+    }
+}
@@ -0,0 +1,215 @@
+package Engine;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Instrumentation for one order book. The book's writer records into it with
+ * plain atomic increments and no allocation; counters and histograms can be
+ * read, snapshotted or reset from any thread, including over JMX.
+ */
+public final class BookMetrics implements BookMetricsMXBean {
+    private final String symbol;
+    // The book's sides; the gauges read their counts from other threads, one plain int each
+    private final BookSide bids, asks, buyStops, sellStops;
+
+    private final AtomicLong orders = new AtomicLong();
+    private final AtomicLong fills = new AtomicLong();
+    private final AtomicLong cancels = new AtomicLong();
+    private final AtomicLong rejects = new AtomicLong();
+
+    private final LatencyHistogram placeToAck = new LatencyHistogram();
+    private final LatencyHistogram placeToFirstFill = new LatencyHistogram();
+    private final LatencyHistogram cancelToAck = new LatencyHistogram();
+    private final LatencyHistogram matchingTime = new LatencyHistogram();
+
+    BookMetrics(String symbol, BookSide bids, BookSide asks, BookSide buyStops, BookSide sellStops) {
+        this.symbol = symbol;
+        this.bids = bids;
+        this.asks = asks;
+        this.buyStops = buyStops;
+        this.sellStops = sellStops;
+    }
+
+    // Recording, called by the book's writer only
+
+    void orderReceived() {
+        orders.incrementAndGet();
+    }
+
+    // Only an order's first acknowledgement is timed; a triggered stop is accepted again
+    void acknowledged(Order order, boolean rejected) {
+        if (rejected) {
+            rejects.incrementAndGet();
+        }
+        if (!order.acked && order.submitNanos != 0) {
+            placeToAck.record(System.nanoTime() - order.submitNanos);
+        }
+        order.acked = true;
+    }
+
+    void filled(Order order) {
+        fills.incrementAndGet();
+        if (!order.filled && order.submitNanos != 0) {
+            placeToFirstFill.record(System.nanoTime() - order.submitNanos);
+        }
+        order.filled = true;
+    }
+
+    void cancelled(long submitNanos) {
+        cancels.incrementAndGet();
+        cancelToAck.record(System.nanoTime() - submitNanos);
+    }
+
+    void matched(long nanos) {
+        matchingTime.record(nanos);
+    }
+
+    // Reading
+
+    @Override
+    public String getSymbol() {
+        return symbol;
+    }
+
+    @Override
+    public long getOrderCount() {
+        return orders.get();
+    }
+
+    // Fills counted per order, so one trade between two orders counts twice
+    @Override
+    public long getFillCount() {
+        return fills.get();
+    }
+
+    @Override
+    public long getCancelCount() {
+        return cancels.get();
+    }
+
+    @Override
+    public long getRejectCount() {
+        return rejects.get();
+    }
+
+    @Override
+    public int getBidLevels() {
+        return bids.getLevelCount();
+    }
+
+    @Override
+    public int getAskLevels() {
+        return asks.getLevelCount();
+    }
+
+    @Override
+    public int getRestingOrders() {
+        return bids.getOrderCount() + asks.getOrderCount();
+    }
+
+    @Override
+    public int getStopOrders() {
+        return buyStops.getOrderCount() + sellStops.getOrderCount();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getPlaceToAck() {
+        return placeToAck.snapshot();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getPlaceToFirstFill() {
+        return placeToFirstFill.snapshot();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getCancelToAck() {
+        return cancelToAck.snapshot();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getMatchingTime() {
+        return matchingTime.snapshot();
+    }
+
+    @Override
+    public void reset() {
+        orders.set(0);
+        fills.set(0);
+        cancels.set(0);
+        rejects.set(0);
+        placeToAck.reset();
+        placeToFirstFill.reset();
+        cancelToAck.reset();
+        matchingTime.reset();
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * Everything above, read once. Produced by snapshot() and handed to
+     * MetricsReporter listeners.
+     */
+    public static final class Snapshot {
+        private final String symbol;
+        private final long timestamp;
+        private final long orders;
+        private final long fills;
+        private final long cancels;
+        private final long rejects;
+        private final int bidLevels;
+        private final int askLevels;
+        private final int restingOrders;
+        private final int stopOrders;
+        private final LatencyHistogram.Snapshot placeToAck;
+        private final LatencyHistogram.Snapshot placeToFirstFill;
+        private final LatencyHistogram.Snapshot cancelToAck;
+        private final LatencyHistogram.Snapshot matchingTime;
+
+        private Snapshot(BookMetrics metrics) {
+            this.symbol = metrics.getSymbol();
+            this.timestamp = System.currentTimeMillis();
+            this.orders = metrics.getOrderCount();
+            this.fills = metrics.getFillCount();
+            this.cancels = metrics.getCancelCount();
+            this.rejects = metrics.getRejectCount();
+            this.bidLevels = metrics.getBidLevels();
+            this.askLevels = metrics.getAskLevels();
+            this.restingOrders = metrics.getRestingOrders();
+            this.stopOrders = metrics.getStopOrders();
+            this.placeToAck = metrics.getPlaceToAck();
+            this.placeToFirstFill = metrics.getPlaceToFirstFill();
+            this.cancelToAck = metrics.getCancelToAck();
+            this.matchingTime = metrics.getMatchingTime();
+        }
+
+        public String getSymbol() { return symbol; }
+        public long getTimestamp() { return timestamp; }
+        public long getOrders() { return orders; }
+        public long getFills() { return fills; }
+        public long getCancels() { return cancels; }
+        public long getRejects() { return rejects; }
+        public int getBidLevels() { return bidLevels; }
+        public int getAskLevels() { return askLevels; }
+        public int getRestingOrders() { return restingOrders; }
+        public int getStopOrders() { return stopOrders; }
+        public LatencyHistogram.Snapshot getPlaceToAck() { return placeToAck; }
+        public LatencyHistogram.Snapshot getPlaceToFirstFill() { return placeToFirstFill; }
+        public LatencyHistogram.Snapshot getCancelToAck() { return cancelToAck; }
+        public LatencyHistogram.Snapshot getMatchingTime() { return matchingTime; }
+
+        @Override
+        public String toString() {
+            return "Metrics for " + symbol + ":\n" +
+                    "Orders: " + orders + ", fills: " + fills + ", cancels: " + cancels + ", rejects: " + rejects + "\n" +
+                    "Depth: " + bidLevels + " bid / " + askLevels + " ask levels, " + restingOrders +
+                    " resting orders, " + stopOrders + " stops\n" +
+                    "Place to ack: " + placeToAck + "\n" +
+                    "Place to first fill: " + placeToFirstFill + "\n" +
+                    "Cancel to ack: " + cancelToAck + "\n" +
+                    "Matching time: " + matchingTime + "\n";
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package Engine;
+
+/**
+ * JMX view of one order book's counters, gauges and latency histograms.
+ * Latencies are in nanoseconds.
+ */
+public interface BookMetricsMXBean {
+    String getSymbol();
+
+    long getOrderCount();
+    long getFillCount();
+    long getCancelCount();
+    long getRejectCount();
+
+    int getBidLevels();
+    int getAskLevels();
+    int getRestingOrders();
+    int getStopOrders();
+
+    LatencyHistogram.Snapshot getPlaceToAck();
+    LatencyHistogram.Snapshot getPlaceToFirstFill();
+    LatencyHistogram.Snapshot getCancelToAck();
+    LatencyHistogram.Snapshot getMatchingTime();
+
+    void reset();
+}
@@ -0,0 +1,119 @@
+package Engine;
+
+import java.util.*;
+
+/**
+ * One side of the order book (or of the stop book): price levels sorted
+ * best-first, each holding its orders in time priority. Best level lookups are O(1) through a cached
+ * reference; adding or dropping a level is O(log L) in the number of levels.
+ */
+class BookSide {
+    private final NavigableMap<Long, PriceLevel> levels;
+    private final IntObjectMap<Order> orderIndex; // Shared with the other side of the book
+    private DepthPublisher depthPublisher;        // Null for the stop book
+    private Order.Type side;
+    private PriceLevel best;
+    private final ArrayDeque<PriceLevel> freeLevels = new ArrayDeque<>(); // Emptied levels kept for reuse
+    private int orderCount;
+
+    BookSide(boolean descending, IntObjectMap<Order> orderIndex) {
+        this.levels = descending ? new TreeMap<>(Comparator.reverseOrder()) : new TreeMap<>();
+        this.orderIndex = orderIndex;
+    }
+
+    // Report every level change of this side to the book's depth feed
+    void publishTo(DepthPublisher depthPublisher, Order.Type side) {
+        this.depthPublisher = depthPublisher;
+        this.side = side;
+    }
+
+    void add(Order order) {
+        PriceLevel level = levels.get(order.getPriceTicks());
+        boolean newLevel = level == null;
+        if (newLevel) {
+            level = freeLevels.poll();
+            if (level == null) {
+                level = new PriceLevel(order.getPriceTicks());
+            } else {
+                level.reset(order.getPriceTicks());
+            }
+            levels.put(order.getPriceTicks(), level);
+            best = levels.firstEntry().getValue();
+        }
+        level.append(order);
+        orderIndex.put(order.getId(), order);
+        orderCount++;
+        publish(level, newLevel ? DepthUpdate.Action.ADD : DepthUpdate.Action.CHANGE);
+    }
+
+    void remove(Order order) {
+        PriceLevel level = order.level;
+        level.remove(order);
+        orderIndex.remove(order.getId());
+        orderCount--;
+        if (level.isEmpty()) {
+            levels.remove(level.getPrice());
+            if (level == best) {
+                Map.Entry<Long, PriceLevel> first = levels.firstEntry();
+                best = first != null ? first.getValue() : null;
+            }
+            publish(level, DepthUpdate.Action.DELETE);
+            freeLevels.push(level);
+        } else {
+            publish(level, DepthUpdate.Action.CHANGE);
+        }
+    }
+
+    // Reduce a resting order in place after a fill or a size-down modify, dropping it once
+    // empty; the order keeps its place in the queue
+    void reduce(Order order, int quantity) {
+        order.reduceQuantity(quantity);
+        order.level.reduceQuantity(quantity);
+        if (order.getQuantity() == 0) {
+            remove(order);
+        } else {
+            publish(order.level, DepthUpdate.Action.CHANGE);
+        }
+    }
+
+    private void publish(PriceLevel level, DepthUpdate.Action action) {
+        if (depthPublisher != null) {
+            depthPublisher.levelChanged(side, level, action);
+        }
+    }
+
+    PriceLevel bestLevel() {
+        return best;
+    }
+
+    Order bestOrder() {
+        return best != null ? best.getHead() : null;
+    }
+
+    boolean isEmpty() {
+        return best == null;
+    }
+
+    int getOrderCount() {
+        return orderCount;
+    }
+
+    int getLevelCount() {
+        return levels.size();
+    }
+
+    Collection<PriceLevel> levels() {
+        return levels.values();
+    }
+
+    // Orders in price-time priority
+    List<Order> toList() {
+        List<Order> orders = new ArrayList<>(orderCount);
+        for (PriceLevel level : levels.values()) {
+            for (Order order = level.getHead(); order != null; order = order.next) {
+                orders.add(order);
+            }
+        }
+        return orders;
+    }
+}
@@ -0,0 +1,11 @@
+package Engine;
+
+/**
+ * Prints every execution report to the console. Slow; meant for demos and debugging.
+ */
+public class ConsoleExecutionListener implements ExecutionListener {
+    @Override
+    public void onExecutionReport(ExecutionReport report) {
+        System.out.println(report);
+    }
+}
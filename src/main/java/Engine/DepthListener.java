@@ -0,0 +1,11 @@
+package Engine;
+
+/**
+ * Subscriber to a book's aggregated depth. Receives one snapshot first, then
+ * incremental updates newer than it, on the subscription's executor.
+ */
+public interface DepthListener {
+    void onSnapshot(DepthSnapshot snapshot);
+
+    void onDepthUpdate(DepthUpdate update);
+}
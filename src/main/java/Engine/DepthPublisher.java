@@ -0,0 +1,53 @@
+package Engine;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+import Banking.Money;
+
+/**
+ * Publishes incremental, sequenced L2 updates for one book. The book's writer
+ * reports every level change here; each change gets the next sequence number
+ * whether or not anyone is subscribed.
+ */
+final class DepthPublisher {
+    private final String symbol;
+    private final long tickCents; // The book's tick size, to report prices in dollars
+    private final List<DepthSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private long sequence;
+
+    DepthPublisher(String symbol, long tickCents) {
+        this.symbol = symbol;
+        this.tickCents = tickCents;
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    void levelChanged(Order.Type side, PriceLevel level, DepthUpdate.Action action) {
+        sequence++;
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        long quantity = action == DepthUpdate.Action.DELETE ? 0 : level.getTotalQuantity();
+        int orderCount = action == DepthUpdate.Action.DELETE ? 0 : level.getOrderCount();
+        double price = Money.toDollars(level.getPrice() * tickCents);
+        for (DepthSubscription subscription : subscriptions) {
+            subscription.offer(symbol, sequence, side, action, level.getPrice(), price, quantity, orderCount);
+        }
+    }
+
+    // Must be called while holding the book so the snapshot and the feed line up
+    DepthSubscription subscribe(DepthListener listener, Executor executor, DepthSnapshot snapshot) {
+        DepthSubscription subscription = new DepthSubscription(this, listener, executor);
+        subscription.offerSnapshot(snapshot);
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    void unsubscribe(DepthSubscription subscription) {
+        subscriptions.remove(subscription);
+    }
+}
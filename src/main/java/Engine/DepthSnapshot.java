@@ -0,0 +1,42 @@
+package Engine;
+
+/**
+ * Immutable aggregated view of the top levels of a book. Incremental updates
+ * with a sequence above getSequence() apply on top of it.
+ */
+public final class DepthSnapshot {
+    private final String symbol;
+    private final long sequence;
+    private final double[] bidPrices;
+    private final long[] bidQuantities;
+    private final int[] bidOrders;
+    private final double[] askPrices;
+    private final long[] askQuantities;
+    private final int[] askOrders;
+
+    DepthSnapshot(String symbol, long sequence, double[] bidPrices, long[] bidQuantities, int[] bidOrders,
+                  double[] askPrices, long[] askQuantities, int[] askOrders) {
+        this.symbol = symbol;
+        this.sequence = sequence;
+        this.bidPrices = bidPrices;
+        this.bidQuantities = bidQuantities;
+        this.bidOrders = bidOrders;
+        this.askPrices = askPrices;
+        this.askQuantities = askQuantities;
+        this.askOrders = askOrders;
+    }
+
+    public String getSymbol() { return symbol; }
+    public long getSequence() { return sequence; }
+
+    // Levels are indexed best-first
+    public int getBidLevels() { return bidPrices.length; }
+    public double getBidPrice(int level) { return bidPrices[level]; }
+    public long getBidQuantity(int level) { return bidQuantities[level]; }
+    public int getBidOrderCount(int level) { return bidOrders[level]; }
+
+    public int getAskLevels() { return askPrices.length; }
+    public double getAskPrice(int level) { return askPrices[level]; }
+    public long getAskQuantity(int level) { return askQuantities[level]; }
+    public int getAskOrderCount(int level) { return askOrders[level]; }
+}
@@ -0,0 +1,120 @@
+package Engine;
+
+import java.util.*;
+import java.util.concurrent.Executor;
+
+/**
+ * One subscriber's view of a book's depth feed.
+ *
+ * Updates are queued per price level: if the subscriber has not yet been sent
+ * an earlier change to the same level, the pending update is overwritten with
+ * the newer state. A slow subscriber therefore sees fewer, conflated updates
+ * and the queue never grows beyond the number of levels that changed, so the
+ * matching thread never waits on it. A conflated update moves to the back of
+ * the queue, so sequence numbers always increase within a subscription.
+ */
+public final class DepthSubscription {
+    private final DepthPublisher publisher;
+    private final DepthListener listener;
+    private final Executor executor;
+    private final Runnable drainTask = this::drain;
+
+    // Guarded by 'this'; held only for map updates, never while delivering
+    private LinkedHashMap<Long, DepthUpdate> pending = new LinkedHashMap<>();
+    private LinkedHashMap<Long, DepthUpdate> delivering = new LinkedHashMap<>();
+    private final ArrayDeque<DepthUpdate> pool = new ArrayDeque<>();
+    private DepthSnapshot snapshot;
+    private boolean scheduled;
+    private long conflatedCount;
+    private volatile boolean cancelled;
+
+    DepthSubscription(DepthPublisher publisher, DepthListener listener, Executor executor) {
+        this.publisher = publisher;
+        this.listener = listener;
+        this.executor = executor;
+    }
+
+    public void cancel() {
+        cancelled = true;
+        publisher.unsubscribe(this);
+    }
+
+    // Number of updates overwritten before the subscriber saw them
+    public synchronized long getConflatedCount() {
+        return conflatedCount;
+    }
+
+    synchronized void offerSnapshot(DepthSnapshot snapshot) {
+        this.snapshot = snapshot;
+        schedule();
+    }
+
+    synchronized void offer(String symbol, long sequence, Order.Type side, DepthUpdate.Action action,
+                            long priceTicks, double price, long quantity, int orderCount) {
+        Long key = side == Order.Type.BUY ? priceTicks : -priceTicks - 1;
+        DepthUpdate update = pending.get(key);
+        if (update == null) {
+            update = pool.isEmpty() ? new DepthUpdate() : pool.poll();
+            pending.put(key, update);
+        } else {
+            // Re-queue at the tail: it now carries the latest sequence
+            pending.remove(key);
+            pending.put(key, update);
+            conflatedCount++;
+            // A level added and changed before delivery is still new to the subscriber
+            if (update.action == DepthUpdate.Action.ADD && action == DepthUpdate.Action.CHANGE) {
+                action = DepthUpdate.Action.ADD;
+            }
+        }
+        update.symbol = symbol;
+        update.sequence = sequence;
+        update.side = side;
+        update.action = action;
+        update.priceTicks = priceTicks;
+        update.price = price;
+        update.quantity = quantity;
+        update.orderCount = orderCount;
+        schedule();
+    }
+
+    private void schedule() {
+        if (!scheduled && !cancelled) {
+            scheduled = true;
+            executor.execute(drainTask);
+        }
+    }
+
+    private void drain() {
+        DepthSnapshot snapshotToSend;
+        LinkedHashMap<Long, DepthUpdate> batch;
+        synchronized (this) {
+            snapshotToSend = snapshot;
+            snapshot = null;
+            batch = pending;
+            pending = delivering;
+            delivering = batch;
+        }
+
+        try {
+            if (!cancelled) {
+                if (snapshotToSend != null) {
+                    listener.onSnapshot(snapshotToSend);
+                }
+                for (DepthUpdate update : batch.values()) {
+                    listener.onDepthUpdate(update);
+                }
+            }
+        } catch (RuntimeException e) {
+            System.out.println("Depth listener error: " + e.getMessage());
+        } finally {
+            synchronized (this) {
+                pool.addAll(batch.values());
+                batch.clear();
+                scheduled = false;
+                if (!pending.isEmpty() || snapshot != null) {
+                    schedule();
+                }
+            }
+        }
+    }
+}
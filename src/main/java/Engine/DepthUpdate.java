@@ -0,0 +1,33 @@
+package Engine;
+
+/**
+ * One incremental change to the aggregated depth of a book: a price level was
+ * added, changed or deleted. Instances are recycled after delivery, so
+ * listeners must copy anything they want to keep.
+ */
+public final class DepthUpdate {
+    public enum Action { ADD, CHANGE, DELETE }
+
+    String symbol;
+    long sequence;
+    Order.Type side;
+    Action action;
+    long priceTicks;
+    double price;
+    long quantity;   // Total resting quantity at the level, 0 for DELETE
+    int orderCount;
+
+    public String getSymbol() { return symbol; }
+    public long getSequence() { return sequence; }
+    public Order.Type getSide() { return side; }
+    public Action getAction() { return action; }
+    public long getPriceTicks() { return priceTicks; }
+    public double getPrice() { return price; }
+    public long getQuantity() { return quantity; }
+    public int getOrderCount() { return orderCount; }
+
+    @Override
+    public String toString() {
+        return "#" + sequence + " " + symbol + " " + side + " " + action + " $" + price + " x " + quantity;
+    }
+}
@@ -0,0 +1,68 @@
+package Engine;
+
+import javax.management.*;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Registers book and engine metrics with the platform MBean server, under
+ * NYSE-Sim:type=OrderBook,symbol=... and NYSE-Sim:type=MatchingEngine,name=...
+ */
+public final class EngineMBeans {
+    private static final String DOMAIN = "NYSE-Sim";
+
+    private EngineMBeans() {}
+
+    public static void register(OrderBook book) {
+        register(book.getMetrics(), bookName(book));
+    }
+
+    public static void register(MatchingEngine engine) {
+        register(engine, engineName(engine));
+    }
+
+    public static void unregister(OrderBook book) {
+        unregister(bookName(book));
+    }
+
+    public static void unregister(MatchingEngine engine) {
+        unregister(engineName(engine));
+    }
+
+    private static void register(Object bean, ObjectName name) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (!server.isRegistered(name)) {
+                server.registerMBean(bean, name);
+            }
+        } catch (JMException e) {
+            System.out.println("Could not register " + name + ": " + e.getMessage());
+        }
+    }
+
+    private static void unregister(ObjectName name) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            System.out.println("Could not unregister " + name + ": " + e.getMessage());
+        }
+    }
+
+    private static ObjectName bookName(OrderBook book) {
+        return name("type=OrderBook,symbol=" + ObjectName.quote(book.getSymbol()));
+    }
+
+    private static ObjectName engineName(MatchingEngine engine) {
+        return name("type=MatchingEngine,name=" + ObjectName.quote(engine.getName()));
+    }
+
+    private static ObjectName name(String properties) {
+        try {
+            return new ObjectName(DOMAIN + ":" + properties);
+        } catch (MalformedObjectNameException e) {
+            throw new IllegalArgumentException("Bad MBean name: " + properties, e);
+        }
+    }
+}
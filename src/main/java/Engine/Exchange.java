@@ -0,0 +1,275 @@
+package Engine;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import Banking.Leaderboard;
+import Banking.SymbolRegistry;
+import Data.CandleManager;
+
+/**
+ * A multi-symbol exchange: owns one order book per listed symbol and routes
+ * orders to them by symbol.
+ *
+ * Books are partitioned across a fixed pool of single-writer matching engines,
+ * one thread each, so independent symbols match in parallel on different
+ * cores while every book still has exactly one writer.
+ */
+public class Exchange {
+    private static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    private final Map<String, OrderBook> books = new ConcurrentHashMap<>();
+    private final Map<OrderBook, MatchingEngine> engineByBook = new ConcurrentHashMap<>();
+    // Order routing by SymbolRegistry id, replaced on every listing; engines are published before books,
+    // so a book found in booksById always has its engine in enginesById
+    private volatile OrderBook[] booksById = new OrderBook[0];
+    private volatile MatchingEngine[] enginesById = new MatchingEngine[0];
+    private final MatchingEngine[] engines;
+    private final int[] booksPerEngine;
+    private final CandleManager candleManager;
+    private final ExecutionReportStream executionReports;
+    private OrderJournal journal;
+    private Leaderboard leaderboard;
+    private boolean started;
+
+    public Exchange() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public Exchange(int engineThreads) {
+        this(engineThreads, DEFAULT_BUFFER_SIZE);
+    }
+
+    public Exchange(int engineThreads, int bufferSize) {
+        if (engineThreads <= 0) {
+            throw new IllegalArgumentException("An exchange needs at least one engine thread");
+        }
+        this.engines = new MatchingEngine[engineThreads];
+        this.booksPerEngine = new int[engineThreads];
+        for (int i = 0; i < engineThreads; i++) {
+            engines[i] = new MatchingEngine("engine-" + i, bufferSize);
+        }
+        this.candleManager = new CandleManager(1000); // Keep 1000 candles per timeframe
+        this.executionReports = new ExecutionReportStream();
+    }
+
+    public OrderBook listSymbol(String symbol, double initialPrice) {
+        return listSymbol(symbol, initialPrice, 0.01);
+    }
+
+    // Create a book for the symbol and assign it to the least loaded engine
+    public synchronized OrderBook listSymbol(String symbol, double initialPrice, double tickSize) {
+        if (books.containsKey(symbol)) {
+            throw new IllegalArgumentException("Symbol already listed: " + symbol);
+        }
+        OrderBook book = new OrderBook(symbol, initialPrice, tickSize, candleManager);
+        book.setExecutionReportStream(executionReports);
+        if (journal != null) {
+            book.setJournal(journal);
+        }
+        if (leaderboard != null) {
+            book.setLeaderboard(leaderboard);
+        }
+
+        int shard = 0;
+        for (int i = 1; i < engines.length; i++) {
+            if (booksPerEngine[i] < booksPerEngine[shard]) {
+                shard = i;
+            }
+        }
+        booksPerEngine[shard]++;
+        engines[shard].addBook(book);
+        engineByBook.put(book, engines[shard]);
+        books.put(symbol, book);
+        int symbolId = SymbolRegistry.idOf(symbol); // Interned by the book
+        int length = Math.max(symbolId + 1, booksById.length);
+        MatchingEngine[] engineRoutes = Arrays.copyOf(enginesById, length);
+        engineRoutes[symbolId] = engines[shard];
+        enginesById = engineRoutes;
+        OrderBook[] bookRoutes = Arrays.copyOf(booksById, length);
+        bookRoutes[symbolId] = book;
+        booksById = bookRoutes;
+        if (started) {
+            EngineMBeans.register(book);
+        }
+        return book;
+    }
+
+    public synchronized void start() {
+        if (started) return;
+        executionReports.start();
+        for (MatchingEngine engine : engines) {
+            engine.start();
+            EngineMBeans.register(engine);
+        }
+        for (OrderBook book : books.values()) {
+            EngineMBeans.register(book);
+        }
+        started = true;
+    }
+
+    public synchronized void stop() {
+        if (!started) return;
+        for (MatchingEngine engine : engines) {
+            engine.stop();
+            EngineMBeans.unregister(engine);
+        }
+        for (OrderBook book : books.values()) {
+            EngineMBeans.unregister(book);
+        }
+        executionReports.stop();
+        started = false;
+    }
+
+    // Route an order to its symbol's engine; the callback reports acceptance
+    public void place(Order order, OrderCallback callback) {
+        int symbolId = order.getSymbolId();
+        OrderBook[] bookRoutes = booksById;
+        OrderBook book = symbolId < bookRoutes.length ? bookRoutes[symbolId] : null;
+        if (book == null) {
+            executionReports.publish(ExecutionReport.Type.REJECTED, order.getStockSymbol(), order, order.getQuantity(),
+                    order.getPrice(), 0, false, "Unknown symbol");
+            if (callback != null) {
+                callback.onComplete(order.getId(), false);
+            }
+            return;
+        }
+        enginesById[symbolId].place(book, order, callback);
+    }
+
+    public void placeOrder(Order order) {
+        place(order, null);
+    }
+
+    public void cancel(String symbol, int orderId, OrderCallback callback) {
+        OrderBook book = books.get(symbol);
+        if (book == null) {
+            if (callback != null) {
+                callback.onComplete(orderId, false);
+            }
+            return;
+        }
+        engineByBook.get(book).cancel(book, orderId, callback);
+    }
+
+    /**
+     * Put every listed book into a call auction, e.g. before the open; see
+     * OrderBook.startAuction. Engines switch their books in parallel; before
+     * start() the books are switched on the caller's thread.
+     */
+    public synchronized void startAuction() {
+        if (!started) {
+            for (OrderBook book : books.values()) {
+                book.startAuction();
+            }
+            return;
+        }
+        List<CompletableFuture<Boolean>> results = new ArrayList<>();
+        for (OrderBook book : books.values()) {
+            results.add(engineByBook.get(book).startAuctionAsync(book));
+        }
+        for (CompletableFuture<Boolean> result : results) {
+            result.join();
+        }
+    }
+
+    /**
+     * Uncross every book in an auction (opening or closing cross) and return
+     * what executed, by symbol. Each engine uncrosses its own books, so
+     * symbols on different engines cross in parallel; before start() the
+     * books are uncrossed on the caller's thread.
+     */
+    public synchronized Map<String, AuctionQuote> uncross() {
+        if (!started) {
+            Map<String, AuctionQuote> quotes = new TreeMap<>();
+            for (OrderBook book : books.values()) {
+                AuctionQuote quote = book.uncross();
+                if (quote != null) {
+                    quotes.put(book.getSymbol(), quote);
+                }
+            }
+            return quotes;
+        }
+        Map<String, CompletableFuture<AuctionQuote>> results = new TreeMap<>();
+        for (OrderBook book : books.values()) {
+            results.put(book.getSymbol(), engineByBook.get(book).uncrossAsync(book));
+        }
+        Map<String, AuctionQuote> quotes = new TreeMap<>();
+        for (Map.Entry<String, CompletableFuture<AuctionQuote>> entry : results.entrySet()) {
+            AuctionQuote quote = entry.getValue().join();
+            if (quote != null) {
+                quotes.put(entry.getKey(), quote);
+            }
+        }
+        return quotes;
+    }
+
+    /**
+     * Journal every listed book, and books listed later, to the given journal.
+     * Recover from the journal first (JournalRecovery), then attach it.
+     */
+    public synchronized void setJournal(OrderJournal journal) {
+        this.journal = journal;
+        for (OrderBook book : books.values()) {
+            book.setJournal(journal);
+        }
+    }
+
+    public synchronized OrderJournal getJournal() {
+        return journal;
+    }
+
+    // Mark the leaderboard with every listed book's prices, including books listed later
+    public synchronized void setLeaderboard(Leaderboard leaderboard) {
+        this.leaderboard = leaderboard;
+        for (OrderBook book : books.values()) {
+            book.setLeaderboard(leaderboard);
+        }
+    }
+
+    public synchronized Leaderboard getLeaderboard() {
+        return leaderboard;
+    }
+
+    synchronized boolean isStarted() {
+        return started;
+    }
+
+    public OrderBook getOrderBook(String symbol) {
+        return books.get(symbol);
+    }
+
+    public Set<String> getSymbols() {
+        return Collections.unmodifiableSet(books.keySet());
+    }
+
+    // Order lifecycle events from every listed book
+    public ExecutionReportStream getExecutionReports() {
+        return executionReports;
+    }
+
+    public CandleManager getCandleManager() {
+        return candleManager;
+    }
+
+    // One metrics snapshot per listed book, taken now
+    public List<BookMetrics.Snapshot> getMetrics() {
+        List<BookMetrics.Snapshot> snapshots = new ArrayList<>();
+        for (OrderBook book : books.values()) {
+            snapshots.add(book.getMetrics().snapshot());
+        }
+        return snapshots;
+    }
+
+    // Report every book's metrics at a fixed rate; start the returned reporter to begin
+    public MetricsReporter metricsReporter(long period, TimeUnit unit, Consumer<List<BookMetrics.Snapshot>> listener) {
+        return new MetricsReporter(books::values, period, unit, listener);
+    }
+
+    public int getEngineCount() {
+        return engines.length;
+    }
+}
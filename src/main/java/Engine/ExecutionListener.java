@@ -0,0 +1,9 @@
+package Engine;
+
+/**
+ * Receives execution reports on the stream's dispatcher thread, in sequence order
+ */
+@FunctionalInterface
+public interface ExecutionListener {
+    void onExecutionReport(ExecutionReport report);
+}
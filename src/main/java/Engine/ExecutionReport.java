@@ -0,0 +1,69 @@
+package Engine;
+
+/**
+ * One order lifecycle event. Instances are pre-allocated slots of an
+ * ExecutionReportStream and are reused, so listeners must copy anything they
+ * want to keep beyond the onExecutionReport call.
+ */
+public final class ExecutionReport {
+    public enum Type { ACCEPTED, REJECTED, PARTIALLY_FILLED, FILLED, CANCELLED, STOP_TRIGGERED, MODIFIED }
+
+    long sequence;
+    Type reportType;
+    String symbol;
+    int orderId;
+    Order.Type orderType;
+    Order.Side orderSide;
+    int quantity;          // Fill size for fills, order size otherwise
+    int remainingQuantity;
+    double price;          // Fill price for fills, order price otherwise
+    int counterOrderId;    // Resting or incoming order on the other side of a fill, 0 if none
+    boolean shortSell;
+    String reason;         // Why an order was rejected
+    long timestamp;
+
+    void clear() {
+        symbol = null;
+        reason = null;
+    }
+
+    public long getSequence() { return sequence; }
+    public Type getReportType() { return reportType; }
+    public String getSymbol() { return symbol; }
+    public int getOrderId() { return orderId; }
+    public Order.Type getOrderType() { return orderType; }
+    public Order.Side getOrderSide() { return orderSide; }
+    public int getQuantity() { return quantity; }
+    public int getRemainingQuantity() { return remainingQuantity; }
+    public double getPrice() { return price; }
+    public int getCounterOrderId() { return counterOrderId; }
+    public boolean isShortSell() { return shortSell; }
+    public String getReason() { return reason; }
+    public long getTimestamp() { return timestamp; }
+
+    public boolean isFill() {
+        return reportType == Type.FILLED || reportType == Type.PARTIALLY_FILLED;
+    }
+
+    @Override
+    public String toString() {
+        switch (reportType) {
+            case REJECTED:
+                return "Order " + orderId + " rejected (" + symbol + "): " + reason;
+            case ACCEPTED:
+                return orderSide + " " + orderType + " order " + orderId + " accepted: " + quantity +
+                        " shares of " + symbol + (orderSide == Order.Side.MARKET ? "" : " at $" + price) +
+                        (shortSell ? " (short)" : "");
+            case CANCELLED:
+                return "Order " + orderId + " cancelled: " + remainingQuantity + " shares of " + symbol;
+            case MODIFIED:
+                return "Order " + orderId + " modified: " + quantity + " shares of " + symbol + " at $" + price;
+            case STOP_TRIGGERED:
+                return (orderType == Order.Type.BUY ? "Buy" : "Sell") + " stop " + orderId + " triggered at $" + price;
+            default:
+                return (orderType == Order.Type.BUY ? "Buy " : "Sell ") + orderId +
+                        (reportType == Type.FILLED ? " filled: " : " partially filled: ") + quantity +
+                        " shares of " + symbol + " at $" + price + " per share" + (shortSell ? " (short)" : "");
+        }
+    }
+}
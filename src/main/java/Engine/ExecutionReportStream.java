@@ -0,0 +1,119 @@
+package Engine;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import Sim.Clock;
+
+/**
+ * Typed stream of order lifecycle events from one or more order books.
+ *
+ * Matching threads write reports into a bounded ring of pre-allocated slots
+ * and never wait: if the listeners fall so far behind that the ring is full,
+ * the report is dropped and counted. A dispatcher thread hands reports to the
+ * listeners in sequence order. A dropped report never takes a sequence number,
+ * so sequences stay contiguous; watch getDroppedCount() to detect losses.
+ */
+public class ExecutionReportStream implements RingBuffer.Handler<ExecutionReport> {
+    private static final int DEFAULT_CAPACITY = 1 << 16;
+    private static final int BATCH_SIZE = 256;
+    private static final long PARK_NANOS = 100_000;
+
+    private final RingBuffer<ExecutionReport> ring;
+    private final List<ExecutionListener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong dropped = new AtomicLong();
+    private Thread dispatcher; // Created by start
+    private volatile boolean running;
+
+    public ExecutionReportStream() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ExecutionReportStream(int capacity) {
+        this.ring = new RingBuffer<>(capacity, ExecutionReport::new);
+    }
+
+    public void addListener(ExecutionListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(ExecutionListener listener) {
+        listeners.remove(listener);
+    }
+
+    public synchronized void start() {
+        if (dispatcher != null) {
+            return;
+        }
+        running = true;
+        dispatcher = new Thread(this::run, "execution-reports");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    // Stop after delivering everything already published
+    public synchronized void stop() {
+        if (dispatcher == null) {
+            return;
+        }
+        running = false;
+        try {
+            dispatcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        dispatcher = null;
+    }
+
+    // Reports dropped because the ring was full; they leave no gap in the sequence
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    // Publish one report; called by matching threads, never blocks
+    void publish(ExecutionReport.Type type, String symbol, Order order, int quantity, double price,
+                 int counterOrderId, boolean shortSell, String reason) {
+        long sequence = ring.tryClaim();
+        if (sequence < 0) {
+            dropped.incrementAndGet();
+            return;
+        }
+        ExecutionReport report = ring.get(sequence);
+        report.sequence = sequence;
+        report.reportType = type;
+        report.symbol = symbol;
+        report.orderId = order.getId();
+        report.orderType = order.getType();
+        report.orderSide = order.getSide();
+        report.quantity = quantity;
+        report.remainingQuantity = order.getQuantity();
+        report.price = price;
+        report.counterOrderId = counterOrderId;
+        report.shortSell = shortSell;
+        report.reason = reason;
+        report.timestamp = Clock.current().currentTimeMillis();
+        ring.publish(sequence);
+    }
+
+    private void run() {
+        while (running || ring.hasPending()) {
+            if (ring.drain(this, BATCH_SIZE) == 0) {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+        }
+    }
+
+    @Override
+    public void onEntry(ExecutionReport report, long sequence) {
+        for (ExecutionListener listener : listeners) {
+            try {
+                listener.onExecutionReport(report);
+            } catch (RuntimeException e) {
+                System.out.println("Execution listener error: " + e.getMessage());
+            }
+        }
+        report.clear();
+    }
+}
@@ -0,0 +1,98 @@
+package Engine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Reads journal records in order through read-only mapped windows, stopping
+ * at the first zero length (never written) or damaged record.
+ */
+final class JournalReader implements Closeable {
+    private static final long WINDOW_BYTES = 64L << 20;
+
+    private final FileChannel channel;
+    private final boolean ownsChannel;
+    private final long size;
+    private final CRC32C crc = new CRC32C();
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long position;
+
+    JournalReader(Path path) throws IOException {
+        this(FileChannel.open(path, StandardOpenOption.READ), true);
+    }
+
+    private JournalReader(FileChannel channel, boolean ownsChannel) throws IOException {
+        this.channel = channel;
+        this.ownsChannel = ownsChannel;
+        this.size = channel.size();
+    }
+
+    // File offset just past the last intact record; each intact record goes to 'visitor' on the way
+    static long endOfRecords(FileChannel channel, Consumer<JournalRecord> visitor) throws IOException {
+        JournalReader reader = new JournalReader(channel, false);
+        JournalRecord record = new JournalRecord();
+        while (reader.next(record)) {
+            visitor.accept(record);
+        }
+        return reader.position;
+    }
+
+    long getPosition() {
+        return position;
+    }
+
+    // Continue from a record boundary, e.g. the journal offset of a snapshot
+    void seek(long offset) {
+        if (offset < 0 || offset > size) {
+            throw new IllegalArgumentException("Offset " + offset + " is outside the journal (" + size + " bytes)");
+        }
+        position = offset;
+    }
+
+    // Decode the next record; false at the end of the intact records
+    boolean next(JournalRecord record) throws IOException {
+        if (position >= size) {
+            return false;
+        }
+        if (window == null || !decodeAt(record)) {
+            // The record may straddle the window; map a fresh one starting at it
+            long length = Math.min(WINDOW_BYTES, size - position);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            window.order(ByteOrder.LITTLE_ENDIAN);
+            windowStart = position;
+            if (!decodeAt(record)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean decodeAt(JournalRecord record) {
+        long offset = position - windowStart;
+        if (offset < 0 || offset >= window.limit()) {
+            return false;
+        }
+        window.position((int) offset);
+        if (!record.decode(window, crc)) {
+            return false;
+        }
+        position = windowStart + window.position();
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        if (ownsChannel) {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package Engine;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.LongConsumer;
+import java.util.zip.CRC32C;
+
+/**
+ * One journal entry: a reusable ring buffer slot on the way in and the
+ * decoded form on the way out.
+ *
+ * On disk each entry is [length:int][type:byte][payload][crc32c:int], little
+ * endian, where length covers the whole entry and the checksum covers type
+ * and payload. A zero length marks the end of the written part of the file;
+ * a bad length or checksum marks a write torn by a crash.
+ */
+final class JournalRecord {
+    enum Type {
+        SYMBOL,     // A book joined the journal: symbolId, tick size, current price
+        PORTFOLIO,  // First order seen from a new portfolio: portfolioId (unique in the file), total cash, name
+        PLACE,
+        CANCEL,
+        MODIFY,
+        TRADE,      // OrderBook.recordTrade
+        FILL,       // One match; written for auditing, recovery recreates fills itself
+        AUCTION,    // OrderBook.startAuction
+        UNCROSS,    // OrderBook.uncross
+        HOLDING,    // One position of a portfolio when it was first seen: portfolioId, signed quantity, price, symbol
+        SYNC;       // Never written: asks the writer to force everything before it to disk and report the offset
+
+        static final Type[] VALUES = values();
+    }
+
+    static final int HEADER_SIZE = 5;   // length + type
+    static final int TRAILER_SIZE = 4;  // crc32c
+    static final int MAX_TEXT_BYTES = Short.MAX_VALUE;
+
+    Type type;
+    long timestamp;
+    int symbolId;
+    int orderId;       // PLACE, CANCEL, MODIFY; buy order for FILL
+    int counterId;     // Sell order for FILL; portfolio id for PLACE, PORTFOLIO and HOLDING
+    Order.Type orderType;   // PLACE; side filter for CANCEL, null for either
+    Order.Side orderSide;   // PLACE
+    int quantity;      // Negative for a short HOLDING
+    double price;      // PLACE, MODIFY, TRADE, HOLDING
+    long amount;       // Tick size in cents for SYMBOL, cash in cents for PORTFOLIO, price in ticks for FILL
+    long priceTicks;   // SYMBOL
+    String text;       // Symbol for SYMBOL and HOLDING, name for PORTFOLIO
+    LongConsumer onSynced; // SYNC: receives the file offset just past everything before it
+
+    void clear() {
+        text = null;
+        orderType = null;
+        orderSide = null;
+        onSynced = null;
+    }
+
+    // Encode into 'out' starting at its position; returns the bytes written
+    int encode(ByteBuffer out, CRC32C crc) {
+        int start = out.position();
+        out.putInt(0);
+        out.put((byte) type.ordinal());
+        switch (type) {
+            case SYMBOL:
+                out.putInt(symbolId);
+                out.putLong(amount);
+                out.putLong(priceTicks);
+                putText(out, text);
+                break;
+            case PORTFOLIO:
+                out.putInt(counterId);
+                out.putLong(amount);
+                putText(out, text);
+                break;
+            case PLACE:
+                out.putLong(timestamp);
+                out.putInt(symbolId);
+                out.putInt(orderId);
+                out.putInt(counterId);
+                out.put((byte) orderType.ordinal());
+                out.put((byte) orderSide.ordinal());
+                out.putInt(quantity);
+                out.putDouble(price);
+                break;
+            case CANCEL:
+                out.putLong(timestamp);
+                out.putInt(symbolId);
+                out.putInt(orderId);
+                out.put((byte) (orderType == null ? -1 : orderType.ordinal()));
+                break;
+            case MODIFY:
+                out.putLong(timestamp);
+                out.putInt(symbolId);
+                out.putInt(orderId);
+                out.putDouble(price);
+                out.putInt(quantity);
+                break;
+            case TRADE:
+                out.putLong(timestamp);
+                out.putInt(symbolId);
+                out.putDouble(price);
+                out.putInt(quantity);
+                break;
+            case FILL:
+                out.putLong(timestamp);
+                out.putInt(symbolId);
+                out.putInt(orderId);
+                out.putInt(counterId);
+                out.putInt(quantity);
+                out.putLong(amount);
+                break;
+            case AUCTION:
+            case UNCROSS:
+                out.putLong(timestamp);
+                out.putInt(symbolId);
+                break;
+            case HOLDING:
+                out.putInt(counterId);
+                out.putInt(quantity);
+                out.putDouble(price);
+                putText(out, text);
+                break;
+            default:
+                throw new IllegalStateException("Record type " + type + " is not written to disk");
+        }
+        crc.reset();
+        crc.update(out.array(), out.arrayOffset() + start + 4, out.position() - start - 4);
+        out.putInt((int) crc.getValue());
+        int length = out.position() - start;
+        out.putInt(start, length);
+        return length;
+    }
+
+    // Decode the entry at 'in's position; false (position unchanged) if there is no complete, intact entry
+    boolean decode(ByteBuffer in, CRC32C crc) {
+        int start = in.position();
+        if (in.remaining() < HEADER_SIZE + TRAILER_SIZE) {
+            return false;
+        }
+        int length = in.getInt(start);
+        if (length < HEADER_SIZE + TRAILER_SIZE || length > in.remaining()) {
+            return false;
+        }
+        crc.reset();
+        ByteBuffer body = in.duplicate();
+        body.position(start + 4).limit(start + length - TRAILER_SIZE);
+        crc.update(body);
+        if ((int) crc.getValue() != in.getInt(start + length - TRAILER_SIZE)) {
+            return false;
+        }
+
+        clear();
+        try {
+            in.position(start + 4);
+            int typeIndex = in.get();
+            if (typeIndex < 0 || typeIndex >= Type.SYNC.ordinal()) {
+                throw new IllegalArgumentException("Unknown journal record type " + typeIndex);
+            }
+            type = Type.VALUES[typeIndex];
+            switch (type) {
+                case SYMBOL:
+                    symbolId = in.getInt();
+                    amount = in.getLong();
+                    priceTicks = in.getLong();
+                    text = getText(in);
+                    break;
+                case PORTFOLIO:
+                    counterId = in.getInt();
+                    amount = in.getLong();
+                    text = getText(in);
+                    break;
+                case PLACE:
+                    timestamp = in.getLong();
+                    symbolId = in.getInt();
+                    orderId = in.getInt();
+                    counterId = in.getInt();
+                    orderType = Order.Type.values()[in.get()];
+                    orderSide = Order.Side.values()[in.get()];
+                    quantity = in.getInt();
+                    price = in.getDouble();
+                    break;
+                case CANCEL:
+                    timestamp = in.getLong();
+                    symbolId = in.getInt();
+                    orderId = in.getInt();
+                    int cancelType = in.get();
+                    orderType = cancelType < 0 ? null : Order.Type.values()[cancelType];
+                    break;
+                case MODIFY:
+                    timestamp = in.getLong();
+                    symbolId = in.getInt();
+                    orderId = in.getInt();
+                    price = in.getDouble();
+                    quantity = in.getInt();
+                    break;
+                case TRADE:
+                    timestamp = in.getLong();
+                    symbolId = in.getInt();
+                    price = in.getDouble();
+                    quantity = in.getInt();
+                    break;
+                case FILL:
+                    timestamp = in.getLong();
+                    symbolId = in.getInt();
+                    orderId = in.getInt();
+                    counterId = in.getInt();
+                    quantity = in.getInt();
+                    amount = in.getLong();
+                    break;
+                case HOLDING:
+                    counterId = in.getInt();
+                    quantity = in.getInt();
+                    price = in.getDouble();
+                    text = getText(in);
+                    break;
+                default:
+                    timestamp = in.getLong();
+                    symbolId = in.getInt();
+                    break;
+            }
+        } catch (BufferUnderflowException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Malformed journal record at offset " + start, e);
+        }
+        in.position(start + length);
+        return true;
+    }
+
+    // Upper bound on the encoded size, to size the scratch buffer
+    int maxEncodedSize() {
+        int textBytes = text == null ? 0 : 2 + text.length() * 3;
+        return HEADER_SIZE + 40 + textBytes + TRAILER_SIZE;
+    }
+
+    private static void putText(ByteBuffer out, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_TEXT_BYTES) {
+            throw new IllegalArgumentException("Journal text too long: " + bytes.length + " bytes");
+        }
+        out.putShort((short) bytes.length);
+        out.put(bytes);
+    }
+
+    private static String getText(ByteBuffer in) {
+        byte[] bytes = new byte[in.getShort()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,342 @@
+package Engine;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import Banking.Money;
+import Banking.Portfolio;
+import Banking.Position;
+import Data.Candle;
+import Data.CandleManager;
+import Sim.Clock;
+import Sim.VirtualClock;
+
+/**
+ * Rebuilds order books and portfolios by replaying an OrderJournal.
+ *
+ * Every journaled command is applied again, in journal order and under its
+ * original order id, so matching recreates the same fills, resting orders,
+ * reservations and balances. Portfolios start from the cash and holdings journaled
+ * when their first order was seen; a portfolio is known by its journal id,
+ * never by its name, so two traders of the same name keep separate ledgers.
+ * While replaying, a virtual clock follows the journaled
+ * times so candles are rebuilt in the right periods.
+ *
+ * With a snapshot directory (see Snapshotter), the newest intact snapshot
+ * is loaded first and only the journal written after it is replayed.
+ *
+ * Recover before attaching the journal to any book, and before the engines
+ * start; afterwards the journal can be reopened and appended to. Trade on
+ * from getPortfolios() (see BotManager.usePortfolios) and pass the recovery
+ * to OrderJournal.resume, so their later orders carry on the same ledgers.
+ */
+public final class JournalRecovery {
+    private final Path journal;
+    private final Map<String, OrderBook> books = new LinkedHashMap<>();
+    private final List<Portfolio> portfolios = new ArrayList<>();
+    private long records;
+    private long commands;
+    private long journaledFills;
+    private long replayedFills;
+    private long lastTimestamp;
+    private int maxOrderId;
+    private long snapshotId = -1;
+
+    // Symbol ids are per journal session, a reopened journal defines them again; portfolio ids are unique in the file
+    private final Map<Integer, OrderBook> booksById = new HashMap<>();
+    private final Map<Integer, Portfolio> portfoliosById = new HashMap<>();
+    private final Map<Integer, Map<String, Position>> holdingsById = new HashMap<>();
+    private final Map<OrderBook, Long> fillsBefore = new HashMap<>();
+
+    private JournalRecovery(Path journal) {
+        this.journal = journal;
+    }
+
+    // Recover into an exchange that has not been started, listing any symbol it doesn't have yet
+    public static JournalRecovery recover(Path journal, Exchange exchange) throws IOException {
+        return recover(journal, null, exchange);
+    }
+
+    // As above, starting from the newest snapshot in 'snapshots' (null for none)
+    public static JournalRecovery recover(Path journal, Path snapshots, Exchange exchange) throws IOException {
+        if (exchange.isStarted()) {
+            throw new IllegalStateException("Recover before starting the exchange");
+        }
+        return recover(journal, snapshots, symbol -> {
+            OrderBook book = exchange.getOrderBook(symbol.text);
+            return book != null ? book : exchange.listSymbol(symbol.text, initialPrice(symbol), tickSize(symbol));
+        });
+    }
+
+    // Recover into standalone books, creating any that 'books' doesn't have
+    public static JournalRecovery recover(Path journal, Map<String, OrderBook> books) throws IOException {
+        return recover(journal, null, books);
+    }
+
+    // As above, starting from the newest snapshot in 'snapshots' (null for none)
+    public static JournalRecovery recover(Path journal, Path snapshots, Map<String, OrderBook> books)
+            throws IOException {
+        return recover(journal, snapshots, symbol -> books.computeIfAbsent(symbol.text,
+                s -> new OrderBook(s, initialPrice(symbol), tickSize(symbol))));
+    }
+
+    private static JournalRecovery recover(Path journal, Path snapshots, Function<JournalRecord, OrderBook> bookForSymbol)
+            throws IOException {
+        JournalRecovery recovery = new JournalRecovery(journal);
+        SnapshotFile snapshot = snapshots != null ? latestSnapshot(snapshots) : null;
+        if (snapshot != null) {
+            recovery.load(snapshot, bookForSymbol);
+        }
+        if (!Files.exists(journal)) {
+            if (snapshot != null && snapshot.journalOffset > 0) {
+                throw new IllegalStateException("Snapshot " + snapshot.id + " needs journal " + journal + ", which is missing");
+            }
+        } else {
+            Clock previousClock = Clock.current();
+            try (JournalReader reader = new JournalReader(journal)) {
+                if (snapshot != null) {
+                    reader.seek(snapshot.journalOffset);
+                }
+                recovery.replay(reader, bookForSymbol);
+            } finally {
+                Clock.use(previousClock);
+            }
+        }
+        OrderIdSequencer.global().advanceTo(recovery.maxOrderId + 1);
+        return recovery;
+    }
+
+    // The newest snapshot that reads back intact, or null if there is none
+    private static SnapshotFile latestSnapshot(Path directory) throws IOException {
+        List<Path> files = Snapshotter.list(directory);
+        for (int i = files.size() - 1; i >= 0; i--) {
+            SnapshotFile snapshot = SnapshotFile.read(files.get(i));
+            if (snapshot != null) {
+                return snapshot;
+            }
+            System.out.println("Skipping damaged snapshot " + files.get(i));
+        }
+        return null;
+    }
+
+    // Rebuild books and portfolios as they were when the snapshot was taken
+    private void load(SnapshotFile snapshot, Function<JournalRecord, OrderBook> bookForSymbol) {
+        snapshotId = snapshot.id;
+        lastTimestamp = snapshot.timestamp;
+        maxOrderId = Math.max(maxOrderId, snapshot.nextOrderId - 1);
+
+        List<Portfolio> loaded = new ArrayList<>(snapshot.portfolios.size());
+        for (SnapshotFile.PortfolioState state : snapshot.portfolios) {
+            Portfolio portfolio = new Portfolio(0, state.name);
+            portfolios.add(portfolio);
+            Map<String, Position> holdings = new HashMap<>();
+            for (int i = 0; i < state.symbols.size(); i++) {
+                holdings.put(state.symbols.get(i), new Position(state.quantities.get(i), state.prices.get(i),
+                        state.symbols.get(i), state.statuses.get(i)));
+            }
+            Map<String, Integer> reserved = new HashMap<>();
+            for (int i = 0; i < state.reservedSymbols.size(); i++) {
+                reserved.put(state.reservedSymbols.get(i), state.reservedQuantities.get(i));
+            }
+            portfolio.restore(state.cashCents, state.reservedCashCents, state.realizedPnLCents, holdings, reserved);
+            if (state.journalId != 0) {
+                portfoliosById.put(state.journalId, portfolio);
+            }
+            loaded.add(portfolio);
+        }
+
+        CandleManager.TimeFrame[] timeFrames = CandleManager.TimeFrame.values();
+        for (SnapshotFile.BookState state : snapshot.books) {
+            JournalRecord symbol = new JournalRecord();
+            symbol.text = state.symbol;
+            symbol.amount = state.tickCents;
+            symbol.priceTicks = state.currentPriceTicks;
+            OrderBook book = bookForSymbol.apply(symbol);
+            if (book.getJournal() != null) {
+                throw new IllegalStateException("Book " + book.getSymbol() + " is already journaling");
+            }
+            if (book.getTickCents() != state.tickCents) {
+                throw new IllegalStateException("Book " + book.getSymbol() + " has a different tick size than its snapshot");
+            }
+            book.restore(state.currentPriceTicks, state.lastTradeTicks, state.auction, orders(book, state.buyOrders, loaded),
+                    orders(book, state.sellOrders, loaded), orders(book, state.buyStops, loaded),
+                    orders(book, state.sellStops, loaded));
+
+            CandleManager candles = book.getBookCandleManager();
+            for (int tf = 0; tf < timeFrames.length; tf++) {
+                NavigableMap<Long, Candle> series = new TreeMap<>();
+                for (SnapshotFile.CandleState c : state.candles.get(tf)) {
+                    series.put(c.start, new Candle(c.high, c.low, c.open, c.close, c.volume));
+                }
+                candles.restoreSeries(state.symbol, timeFrames[tf], series, state.currentCandleTimes[tf]);
+            }
+
+            booksById.put(state.journalSymbolId, book);
+            books.put(book.getSymbol(), book);
+            fillsBefore.putIfAbsent(book, book.getMetrics().getFillCount());
+        }
+    }
+
+    private List<Order> orders(OrderBook book, List<SnapshotFile.OrderState> states, List<Portfolio> loaded) {
+        List<Order> orders = new ArrayList<>(states.size());
+        for (SnapshotFile.OrderState state : states) {
+            Order order = new Order(state.id, book.getSymbol(), state.type, state.side, state.quantity,
+                    book.toPrice(state.priceTicks), loaded.get(state.portfolio));
+            order.setPriceTicks(state.priceTicks, book.toPrice(state.priceTicks));
+            order.restoreTimes(state.timestamp, state.entryStamp);
+            order.reservedStock = state.reservedStock;
+            maxOrderId = Math.max(maxOrderId, state.id);
+            orders.add(order);
+        }
+        return orders;
+    }
+
+    private void replay(JournalReader reader, Function<JournalRecord, OrderBook> bookForSymbol) throws IOException {
+        VirtualClock clock = null;
+        JournalRecord record = new JournalRecord();
+
+        while (reader.next(record)) {
+            records++;
+            if (record.type == JournalRecord.Type.SYMBOL) {
+                OrderBook book = bookForSymbol.apply(record);
+                if (book.getJournal() != null) {
+                    throw new IllegalStateException("Book " + book.getSymbol() + " is already journaling");
+                }
+                booksById.put(record.symbolId, book);
+                books.put(book.getSymbol(), book);
+                fillsBefore.putIfAbsent(book, book.getMetrics().getFillCount());
+                continue;
+            }
+            if (record.type == JournalRecord.Type.PORTFOLIO) {
+                Portfolio portfolio = new Portfolio(Money.toDollars(record.amount), record.text);
+                portfolios.add(portfolio);
+                portfoliosById.put(record.counterId, portfolio);
+                holdingsById.put(record.counterId, new HashMap<>());
+                continue;
+            }
+            if (record.type == JournalRecord.Type.HOLDING) {
+                restoreHolding(record);
+                continue;
+            }
+
+            OrderBook book = booksById.get(record.symbolId);
+            if (book == null) {
+                throw new IllegalStateException("Journal record " + records + " refers to unknown symbol id " + record.symbolId);
+            }
+            if (clock == null) {
+                clock = new VirtualClock(record.timestamp);
+                Clock.use(clock);
+            } else if (record.timestamp > clock.currentTimeMillis()) {
+                clock.advanceTo(record.timestamp * 1_000_000L);
+            }
+            lastTimestamp = record.timestamp;
+
+            if (record.type == JournalRecord.Type.FILL) {
+                journaledFills++;
+                continue;
+            }
+            commands++;
+            synchronized (book) {
+                switch (record.type) {
+                    case PLACE:
+                        Portfolio portfolio = portfoliosById.get(record.counterId);
+                        if (portfolio == null) {
+                            throw new IllegalStateException("Journal record " + records + " refers to unknown portfolio id " + record.counterId);
+                        }
+                        maxOrderId = Math.max(maxOrderId, record.orderId);
+                        book.apply(new Order(record.orderId, book.getSymbol(), record.orderType, record.orderSide,
+                                record.quantity, record.price, portfolio));
+                        break;
+                    case CANCEL:
+                        book.applyCancel(record.orderId, record.orderType);
+                        break;
+                    case MODIFY:
+                        book.applyModify(record.orderId, record.price, record.quantity);
+                        break;
+                    case AUCTION:
+                        book.applyStartAuction();
+                        break;
+                    case UNCROSS:
+                        book.applyUncross();
+                        break;
+                    default:
+                        book.applyTrade(record.price, record.quantity);
+                        break;
+                }
+            }
+        }
+
+        // Metrics count each match twice, once for each side
+        for (Map.Entry<OrderBook, Long> entry : fillsBefore.entrySet()) {
+            replayedFills += (entry.getKey().getMetrics().getFillCount() - entry.getValue()) / 2;
+        }
+    }
+
+    // Give a portfolio created from the journal a position it held when it was first seen
+    private void restoreHolding(JournalRecord record) {
+        Map<String, Position> holdings = holdingsById.get(record.counterId);
+        if (holdings == null) {
+            throw new IllegalStateException("Journal record " + records + " refers to unknown portfolio id " + record.counterId);
+        }
+        Portfolio portfolio = portfoliosById.get(record.counterId);
+        holdings.put(record.text, new Position(Math.abs(record.quantity), record.price, record.text,
+                record.quantity < 0 ? "short" : "long"));
+        portfolio.restore(portfolio.getUSDCents(), portfolio.getReservedCashCents(), portfolio.getRealizedPnLCents(),
+                holdings, Map.of());
+    }
+
+    private static double initialPrice(JournalRecord symbol) {
+        return Money.toDollars(symbol.priceTicks * symbol.amount);
+    }
+
+    private static double tickSize(JournalRecord symbol) {
+        return Money.toDollars(symbol.amount);
+    }
+
+    // Books touched by the journal, by symbol
+    public Map<String, OrderBook> getBooks() { return books; }
+
+    // Every portfolio rebuilt, in the order they were first seen; names need not be unique
+    public List<Portfolio> getPortfolios() { return portfolios; }
+
+    public Path getJournal() { return journal; }
+
+    // Journal ids of the rebuilt portfolios, for OrderJournal.resume
+    Map<Portfolio, Integer> getPortfolioIds() {
+        Map<Portfolio, Integer> ids = new HashMap<>();
+        for (Map.Entry<Integer, Portfolio> entry : portfoliosById.entrySet()) {
+            ids.put(entry.getValue(), entry.getKey());
+        }
+        return ids;
+    }
+
+    public long getRecordCount() { return records; }
+    public long getCommandCount() { return commands; }
+    public long getJournaledFillCount() { return journaledFills; }
+    public long getReplayedFillCount() { return replayedFills; }
+    public long getLastTimestamp() { return lastTimestamp; }
+
+    // Id of the snapshot recovery started from, or -1 if it replayed the whole journal
+    public long getSnapshotId() { return snapshotId; }
+
+    // Replay produced exactly the fills the journal recorded
+    public boolean isConsistent() {
+        return journaledFills == replayedFills;
+    }
+
+    @Override
+    public String toString() {
+        return "Recovered " + books.size() + " books and " + portfolios.size() + " portfolios from " +
+                (snapshotId >= 0 ? "snapshot " + snapshotId + " and " : "") + records +
+                " records (" + commands + " commands); fills journaled " + journaledFills + ", replayed " + replayedFills;
+    }
+}
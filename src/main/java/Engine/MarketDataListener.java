@@ -0,0 +1,19 @@
+package Engine;
+
+import Data.Candle;
+import Data.CandleManager;
+
+/**
+ * Push-based market data for one book, delivered on the subscription's
+ * executor. Implement only the callbacks you need.
+ */
+public interface MarketDataListener {
+    default void onTrade(Trade trade) {}
+
+    default void onTopOfBookChange(TopOfBook topOfBook) {}
+
+    default void onCandleClose(String symbol, CandleManager.TimeFrame timeFrame, long startTime, Candle candle) {}
+
+    // Indicative price and volume while the book is in a call auction
+    default void onAuctionQuote(AuctionQuote quote) {}
+}
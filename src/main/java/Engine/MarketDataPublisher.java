@@ -0,0 +1,64 @@
+package Engine;
+
+import Data.Candle;
+import Data.CandleManager;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * Fans a book's trades, top-of-book changes, candle closes and auction quotes out to its
+ * market-data subscriptions. Called only by the book's writer; nothing is
+ * allocated while no one is subscribed.
+ */
+final class MarketDataPublisher implements CandleManager.CandleCloseListener {
+    private final List<MarketDataSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private long tradeSequence;
+
+    boolean hasSubscribers() {
+        return !subscriptions.isEmpty();
+    }
+
+    void trade(String symbol, double price, int quantity, long timestamp) {
+        tradeSequence++;
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        Trade trade = new Trade(symbol, tradeSequence, price, quantity, timestamp);
+        for (MarketDataSubscription subscription : subscriptions) {
+            subscription.offerTrade(trade);
+        }
+    }
+
+    void topOfBookChanged(TopOfBook top) {
+        for (MarketDataSubscription subscription : subscriptions) {
+            subscription.offerTopOfBook(top);
+        }
+    }
+
+    void auctionQuoteChanged(AuctionQuote quote) {
+        for (MarketDataSubscription subscription : subscriptions) {
+            subscription.offerAuctionQuote(quote);
+        }
+    }
+
+    @Override
+    public void onCandleClose(String symbol, CandleManager.TimeFrame timeFrame, long startTime, Candle candle) {
+        for (MarketDataSubscription subscription : subscriptions) {
+            subscription.offerCandleClose(symbol, timeFrame, startTime, candle);
+        }
+    }
+
+    // Must be called while holding the book so the initial top of book is current
+    MarketDataSubscription subscribe(MarketDataListener listener, Executor executor, boolean coalesce, TopOfBook current) {
+        MarketDataSubscription subscription = new MarketDataSubscription(this, listener, executor, coalesce);
+        subscription.offerTopOfBook(current);
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    void unsubscribe(MarketDataSubscription subscription) {
+        subscriptions.remove(subscription);
+    }
+}
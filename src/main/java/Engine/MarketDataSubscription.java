@@ -0,0 +1,175 @@
+package Engine;
+
+import Data.Candle;
+import Data.CandleManager;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+
+/**
+ * One subscriber's market-data feed from a book.
+ *
+ * Without coalescing every event is queued and delivered in order. With
+ * coalescing only the latest trade, top of book and auction quote are kept
+ * between deliveries, so a slow subscriber sees the current state rather than
+ * a backlog; candle closes are never coalesced. The book's writer only ever
+ * appends under this subscription's monitor and never waits on the listener.
+ */
+public final class MarketDataSubscription {
+    private final MarketDataPublisher publisher;
+    private final MarketDataListener listener;
+    private final Executor executor;
+    private final boolean coalesce;
+    private final Runnable drainTask = this::drain;
+
+    // Guarded by 'this'; held only to queue or swap, never while delivering
+    private ArrayDeque<Object> pending = new ArrayDeque<>();
+    private ArrayDeque<Object> delivering = new ArrayDeque<>();
+    private Trade latestTrade;      // Coalescing only
+    private TopOfBook latestTop;    // Coalescing only
+    private AuctionQuote latestQuote; // Coalescing only
+    private boolean scheduled;
+    private long coalescedCount;
+    private volatile boolean cancelled;
+
+    MarketDataSubscription(MarketDataPublisher publisher, MarketDataListener listener, Executor executor,
+                           boolean coalesce) {
+        this.publisher = publisher;
+        this.listener = listener;
+        this.executor = executor;
+        this.coalesce = coalesce;
+    }
+
+    public void cancel() {
+        cancelled = true;
+        publisher.unsubscribe(this);
+    }
+
+    public boolean isCoalescing() {
+        return coalesce;
+    }
+
+    // Number of events replaced by a newer one before the subscriber saw them
+    public synchronized long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    synchronized void offerTrade(Trade trade) {
+        if (coalesce) {
+            if (latestTrade != null) {
+                coalescedCount++;
+            }
+            latestTrade = trade;
+        } else {
+            pending.add(trade);
+        }
+        schedule();
+    }
+
+    synchronized void offerTopOfBook(TopOfBook top) {
+        if (coalesce) {
+            if (latestTop != null) {
+                coalescedCount++;
+            }
+            latestTop = top;
+        } else {
+            pending.add(top);
+        }
+        schedule();
+    }
+
+    synchronized void offerAuctionQuote(AuctionQuote quote) {
+        if (coalesce) {
+            if (latestQuote != null) {
+                coalescedCount++;
+            }
+            latestQuote = quote;
+        } else {
+            pending.add(quote);
+        }
+        schedule();
+    }
+
+    synchronized void offerCandleClose(String symbol, CandleManager.TimeFrame timeFrame, long startTime, Candle candle) {
+        pending.add(new CandleClose(symbol, timeFrame, startTime, candle));
+        schedule();
+    }
+
+    private void schedule() {
+        if (!scheduled && !cancelled) {
+            scheduled = true;
+            executor.execute(drainTask);
+        }
+    }
+
+    private void drain() {
+        ArrayDeque<Object> batch;
+        Trade trade;
+        TopOfBook top;
+        AuctionQuote quote;
+        synchronized (this) {
+            batch = pending;
+            pending = delivering;
+            delivering = batch;
+            trade = latestTrade;
+            top = latestTop;
+            quote = latestQuote;
+            latestTrade = null;
+            latestTop = null;
+            latestQuote = null;
+        }
+
+        try {
+            Object event;
+            while (!cancelled && (event = batch.poll()) != null) {
+                deliver(event);
+            }
+            if (!cancelled && trade != null) {
+                listener.onTrade(trade);
+            }
+            if (!cancelled && top != null) {
+                listener.onTopOfBookChange(top);
+            }
+            if (!cancelled && quote != null) {
+                listener.onAuctionQuote(quote);
+            }
+        } catch (RuntimeException e) {
+            System.out.println("Market data listener error: " + e.getMessage());
+        } finally {
+            synchronized (this) {
+                batch.clear();
+                scheduled = false;
+                if (!pending.isEmpty() || latestTrade != null || latestTop != null || latestQuote != null) {
+                    schedule();
+                }
+            }
+        }
+    }
+
+    private void deliver(Object event) {
+        if (event instanceof Trade) {
+            listener.onTrade((Trade) event);
+        } else if (event instanceof TopOfBook) {
+            listener.onTopOfBookChange((TopOfBook) event);
+        } else if (event instanceof AuctionQuote) {
+            listener.onAuctionQuote((AuctionQuote) event);
+        } else {
+            CandleClose close = (CandleClose) event;
+            listener.onCandleClose(close.symbol, close.timeFrame, close.startTime, close.candle);
+        }
+    }
+
+    private static final class CandleClose {
+        final String symbol;
+        final CandleManager.TimeFrame timeFrame;
+        final long startTime;
+        final Candle candle;
+
+        CandleClose(String symbol, CandleManager.TimeFrame timeFrame, long startTime, Candle candle) {
+            this.symbol = symbol;
+            this.timeFrame = timeFrame;
+            this.startTime = startTime;
+            this.candle = candle;
+        }
+    }
+}
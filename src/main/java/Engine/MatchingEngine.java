@@ -0,0 +1,461 @@
+package Engine;
+
+import java.lang.invoke.VarHandle;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
+
+/**
+ * Single-writer matching engine for one or more order books.
+ *
+ * Any number of threads submit place, cancel, modify and batch commands into a lock-free
+ * ring buffer; one dedicated engine thread consumes them in order and is the
+ * only thread that ever mutates its books. Results come back through
+ * OrderCallback on the engine thread, or as futures for convenience.
+ *
+ * While the engine runs, OrderBook.placeBuyOrder/placeSellOrder/cancel route
+ * through it automatically, so existing callers keep working unchanged.
+ *
+ * Once stopped, the engine refuses new commands with IllegalStateException.
+ * A command that slipped in after the engine thread exited is failed rather
+ * than left waiting: its callback reports false and its future completes
+ * exceptionally.
+ */
+public class MatchingEngine implements RingBuffer.Handler<OrderCommand>, MatchingEngineMXBean {
+    private static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+    private static final int BATCH_SIZE = 256;
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    private static final long PARK_NANOS = 50_000;
+
+    private final String name;
+    private final List<OrderBook> books = new CopyOnWriteArrayList<>();
+    private final RingBuffer<OrderCommand> ring;
+    private volatile Thread thread; // Created by start
+    private volatile boolean running;
+    private volatile boolean closed; // Set by stop; producers fail fast from then on
+    private boolean stopped; // Guarded by this; the engine thread has exited and will run nothing more
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private OrderBook batchBook; // Engine thread only; the book whose monitor the current batch holds
+    private final Predicate<OrderCommand> sameBook = command -> command.book == batchBook;
+
+    public MatchingEngine(OrderBook book) {
+        this(book, DEFAULT_BUFFER_SIZE);
+    }
+
+    public MatchingEngine(OrderBook book, int bufferSize) {
+        this("engine-" + book.getSymbol(), bufferSize);
+        books.add(book);
+    }
+
+    // An engine with no books yet; books are added with addBook
+    public MatchingEngine(String name, int bufferSize) {
+        this.name = name;
+        this.ring = new RingBuffer<>(bufferSize, OrderCommand::new);
+    }
+
+    // Give this engine ownership of another book, before or after start
+    public void addBook(OrderBook book) {
+        books.add(book);
+        if (running) {
+            book.attachEngine(this);
+        }
+    }
+
+    public void start() {
+        for (OrderBook book : books) {
+            book.attachEngine(this);
+        }
+        synchronized (this) {
+            stopped = false;
+        }
+        closed = false;
+        running = true;
+        Thread engineThread = new Thread(this::run, name);
+        engineThread.setDaemon(true);
+        thread = engineThread;
+        engineThread.start();
+    }
+
+    // Stop after draining every command already published. The books are detached first, so
+    // their own methods run on the caller's thread from now on instead of queueing here.
+    public void stop() {
+        Thread engineThread = thread;
+        if (engineThread == null) {
+            return;
+        }
+        for (OrderBook book : books) {
+            book.attachEngine(null);
+        }
+        closed = true;
+        running = false;
+        try {
+            engineThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+        synchronized (this) {
+            stopped = true;
+        }
+        abandonPending();
+    }
+
+    // Place an order on the engine's only book
+    public void place(Order order, OrderCallback callback) {
+        place(singleBook(), order, callback);
+    }
+
+    public void place(OrderBook book, Order order, OrderCallback callback) {
+        order.submitNanos = System.nanoTime();
+        long sequence = claim();
+        OrderCommand command = ring.get(sequence);
+        command.kind = OrderCommand.Kind.PLACE;
+        command.book = book;
+        command.order = order;
+        command.callback = callback;
+        publish(sequence);
+    }
+
+    // Cancel an order on the engine's only book
+    public void cancel(int orderId, OrderCallback callback) {
+        cancel(singleBook(), orderId, null, callback);
+    }
+
+    public void cancel(OrderBook book, int orderId, OrderCallback callback) {
+        cancel(book, orderId, null, callback);
+    }
+
+    void cancel(OrderBook book, int orderId, Order.Type type, OrderCallback callback) {
+        long sequence = claim();
+        OrderCommand command = ring.get(sequence);
+        command.kind = OrderCommand.Kind.CANCEL;
+        command.book = book;
+        command.orderId = orderId;
+        command.cancelType = type;
+        command.callback = callback;
+        command.submitNanos = System.nanoTime();
+        publish(sequence);
+    }
+
+    // Modify a resting order on the engine's only book
+    public void modify(int orderId, double newPrice, int newQuantity, OrderCallback callback) {
+        modify(singleBook(), orderId, newPrice, newQuantity, callback);
+    }
+
+    public void modify(OrderBook book, int orderId, double newPrice, int newQuantity, OrderCallback callback) {
+        long sequence = claim();
+        OrderCommand command = ring.get(sequence);
+        command.kind = OrderCommand.Kind.MODIFY;
+        command.book = book;
+        command.orderId = orderId;
+        command.price = newPrice;
+        command.quantity = newQuantity;
+        command.callback = callback;
+        publish(sequence);
+    }
+
+    // Record an external trade on a book; see OrderBook.recordTrade
+    public void recordTrade(OrderBook book, double price, int quantity) {
+        long sequence = claim();
+        OrderCommand command = ring.get(sequence);
+        command.kind = OrderCommand.Kind.TRADE;
+        command.book = book;
+        command.orderId = 0;
+        command.price = price;
+        command.quantity = quantity;
+        publish(sequence);
+    }
+
+    // Put a book into a call auction; see OrderBook.startAuction
+    public CompletableFuture<Boolean> startAuctionAsync(OrderBook book) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        long sequence = claim();
+        OrderCommand command = ring.get(sequence);
+        command.kind = OrderCommand.Kind.AUCTION;
+        command.book = book;
+        command.orderId = 0;
+        command.result = result;
+        publish(sequence);
+        return result;
+    }
+
+    // End a book's call auction; see OrderBook.uncross
+    public CompletableFuture<AuctionQuote> uncrossAsync(OrderBook book) {
+        CompletableFuture<AuctionQuote> result = new CompletableFuture<>();
+        long sequence = claim();
+        OrderCommand command = ring.get(sequence);
+        command.kind = OrderCommand.Kind.UNCROSS;
+        command.book = book;
+        command.uncrossResult = result;
+        publish(sequence);
+        return result;
+    }
+
+    public CompletableFuture<Boolean> placeAsync(Order order) {
+        return placeAsync(singleBook(), order);
+    }
+
+    public CompletableFuture<Boolean> placeAsync(OrderBook book, Order order) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        order.submitNanos = System.nanoTime();
+        long sequence = claim();
+        OrderCommand command = ring.get(sequence);
+        command.kind = OrderCommand.Kind.PLACE;
+        command.book = book;
+        command.order = order;
+        command.result = result;
+        publish(sequence);
+        return result;
+    }
+
+    public CompletableFuture<Boolean> cancelAsync(int orderId) {
+        return cancelAsync(singleBook(), orderId, null);
+    }
+
+    CompletableFuture<Boolean> cancelAsync(OrderBook book, int orderId, Order.Type type) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        long sequence = claim();
+        OrderCommand command = ring.get(sequence);
+        command.kind = OrderCommand.Kind.CANCEL;
+        command.book = book;
+        command.orderId = orderId;
+        command.cancelType = type;
+        command.result = result;
+        command.submitNanos = System.nanoTime();
+        publish(sequence);
+        return result;
+    }
+
+    public CompletableFuture<Boolean> modifyAsync(OrderBook book, int orderId, double newPrice, int newQuantity) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        long sequence = claim();
+        OrderCommand command = ring.get(sequence);
+        command.kind = OrderCommand.Kind.MODIFY;
+        command.book = book;
+        command.orderId = orderId;
+        command.price = newPrice;
+        command.quantity = newQuantity;
+        command.result = result;
+        publish(sequence);
+        return result;
+    }
+
+    // Apply a whole batch to one book as a single engine command
+    public CompletableFuture<OrderBatch> submitBatchAsync(OrderBook book, OrderBatch batch) {
+        CompletableFuture<OrderBatch> result = new CompletableFuture<>();
+        long sequence = claim();
+        OrderCommand command = ring.get(sequence);
+        command.kind = OrderCommand.Kind.BATCH;
+        command.book = book;
+        command.batch = batch;
+        command.batchResult = result;
+        publish(sequence);
+        return result;
+    }
+
+    public List<OrderBook> getOrderBooks() {
+        return List.copyOf(books);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getBookCount() {
+        return books.size();
+    }
+
+    @Override
+    public long getProcessedCount() {
+        return processed.get();
+    }
+
+    @Override
+    public long getBacklog() {
+        return ring.backlog();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errors.get();
+    }
+
+    private OrderBook singleBook() {
+        if (books.size() != 1) {
+            throw new IllegalStateException(name + " owns " + books.size() + " books; pass the book explicitly");
+        }
+        return books.get(0);
+    }
+
+    boolean isEngineThread() {
+        return Thread.currentThread() == thread;
+    }
+
+    private long claim() {
+        if (closed) {
+            throw new IllegalStateException(name + " is stopped");
+        }
+        return ring.claim();
+    }
+
+    // The fence orders the publish before the read of 'closed': a producer that still sees the
+    // engine open knows the engine thread will see its command before it exits
+    private void publish(long sequence) {
+        ring.publish(sequence);
+        VarHandle.fullFence();
+        if (closed) {
+            abandonPending();
+        }
+    }
+
+    // Fail whatever was published after the engine thread exited. Whoever publishes last, the
+    // stopping thread or a late producer, finds every stranded command.
+    private synchronized void abandonPending() {
+        if (stopped) {
+            ring.drain(this::abandon, Integer.MAX_VALUE);
+        }
+    }
+
+    private void abandon(OrderCommand command, long sequence) {
+        IllegalStateException error = new IllegalStateException(name + " stopped before running the command");
+        OrderCommand.Kind kind = command.kind;
+        int orderId = kind == OrderCommand.Kind.PLACE ? command.order.getId() : command.orderId;
+        OrderCallback callback = command.callback;
+        CompletableFuture<Boolean> result = command.result;
+        CompletableFuture<OrderBatch> batchResult = command.batchResult;
+        CompletableFuture<AuctionQuote> uncrossResult = command.uncrossResult;
+        command.clear();
+
+        if (result != null) {
+            result.completeExceptionally(error);
+        }
+        if (batchResult != null) {
+            batchResult.completeExceptionally(error);
+        }
+        if (uncrossResult != null) {
+            uncrossResult.completeExceptionally(error);
+        }
+        if (callback != null) {
+            callback.onComplete(orderId, false);
+        }
+    }
+
+    // Writers never contend for a book's monitor; it is held once per drained batch, a run of
+    // consecutive commands for one book, only so that synchronized readers still see a consistent view
+    private void run() {
+        int idle = 0;
+        while (running || ring.hasPending()) {
+            OrderCommand head = ring.peek();
+            int drained = 0;
+            if (head != null) {
+                OrderBook book = head.book;
+                batchBook = book;
+                synchronized (book) {
+                    drained = ring.drain(this, BATCH_SIZE, sameBook);
+                }
+                batchBook = null;
+            }
+            if (drained > 0) {
+                processed.addAndGet(drained);
+                idle = 0;
+            } else {
+                idle(++idle);
+            }
+        }
+    }
+
+    private void idle(int idleCount) {
+        if (idleCount < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else if (idleCount < SPIN_TRIES + YIELD_TRIES) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+
+    @Override
+    public void onEntry(OrderCommand command, long sequence) {
+        if (command.kind == OrderCommand.Kind.BATCH) {
+            onBatch(command);
+            return;
+        }
+        if (command.kind == OrderCommand.Kind.UNCROSS) {
+            onUncross(command);
+            return;
+        }
+        int orderId = command.kind == OrderCommand.Kind.PLACE ? command.order.getId() : command.orderId;
+        boolean success = execute(command);
+        OrderCallback callback = command.callback;
+        CompletableFuture<Boolean> result = command.result;
+        command.clear();
+
+        if (result != null) {
+            result.complete(success);
+        }
+        if (callback != null) {
+            try {
+                callback.onComplete(orderId, success);
+            } catch (RuntimeException e) {
+                errors.incrementAndGet(); // A failing callback must not take the engine down
+            }
+        }
+    }
+
+    private void onBatch(OrderCommand command) {
+        OrderBook book = command.book;
+        OrderBatch batch = command.batch;
+        CompletableFuture<OrderBatch> result = command.batchResult;
+        command.clear();
+
+        try {
+            batch.applyTo(book);
+        } catch (RuntimeException e) {
+            errors.incrementAndGet();
+        }
+        result.complete(batch);
+    }
+
+    private void onUncross(OrderCommand command) {
+        OrderBook book = command.book;
+        CompletableFuture<AuctionQuote> result = command.uncrossResult;
+        command.clear();
+
+        AuctionQuote quote = null;
+        try {
+            quote = book.applyUncross();
+        } catch (RuntimeException e) {
+            errors.incrementAndGet();
+        }
+        result.complete(quote);
+    }
+
+    // Runs inside run()'s batch, which already holds the book's monitor
+    private boolean execute(OrderCommand command) {
+        OrderBook book = command.book;
+        try {
+            switch (command.kind) {
+                case PLACE:
+                    return book.apply(command.order);
+                case MODIFY:
+                    return book.applyModify(command.orderId, command.price, command.quantity);
+                case TRADE:
+                    return book.applyTrade(command.price, command.quantity);
+                case AUCTION:
+                    return book.applyStartAuction();
+                default:
+                    return book.applyCancel(command.orderId, command.cancelType, command.submitNanos);
+            }
+        } catch (RuntimeException e) {
+            errors.incrementAndGet();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package Engine;
+
+/**
+ * JMX view of one matching engine thread
+ */
+public interface MatchingEngineMXBean {
+    String getName();
+
+    int getBookCount();
+
+    // Commands applied since start
+    long getProcessedCount();
+
+    // Commands submitted but not yet applied
+    long getBacklog();
+
+    // Commands and callbacks that threw; the engine carries on with the next command
+    long getErrorCount();
+}
@@ -0,0 +1,65 @@
+package Engine;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Takes a metrics snapshot of every book at a fixed rate and hands the batch
+ * to a listener on the reporter's own thread.
+ */
+public final class MetricsReporter {
+    private final Supplier<? extends Collection<OrderBook>> books;
+    private final Consumer<List<BookMetrics.Snapshot>> listener;
+    private final long period;
+    private final TimeUnit unit;
+    private ScheduledExecutorService scheduler;
+
+    public MetricsReporter(Supplier<? extends Collection<OrderBook>> books, long period, TimeUnit unit,
+                           Consumer<List<BookMetrics.Snapshot>> listener) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Reporting period must be positive: " + period);
+        }
+        this.books = books;
+        this.period = period;
+        this.unit = unit;
+        this.listener = listener;
+    }
+
+    public synchronized void start() {
+        if (scheduler != null) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::report, period, period, unit);
+    }
+
+    public synchronized void stop() {
+        if (scheduler == null) return;
+        scheduler.shutdown();
+        scheduler = null;
+    }
+
+    public List<BookMetrics.Snapshot> snapshot() {
+        List<BookMetrics.Snapshot> snapshots = new ArrayList<>();
+        for (OrderBook book : books.get()) {
+            snapshots.add(book.getMetrics().snapshot());
+        }
+        return snapshots;
+    }
+
+    private void report() {
+        try {
+            listener.accept(snapshot());
+        } catch (RuntimeException e) {
+            System.out.println("Metrics listener error: " + e.getMessage());
+        }
+    }
+}
@@ -1,41 +1,112 @@
 package Engine;
 import Banking.*;
+import Sim.Clock;
 
 public class Order {
     public enum Side { LIMIT, MARKET , STOP}
     public enum Type {BUY, SELL };
 
-    private static int nextId = 1;
     private int id;
-    private String stockSymbol;
+    private int symbolId; // SymbolRegistry id of the stock
     private Type type;
     private Side side;
     private int quantity;
     private double price;
+    private long priceTicks; // Set by the order book when the order enters it
     private long timestamp;
+    private long entryStamp; // Unique, increasing; orders created in the same millisecond still have an order
     private Portfolio user_portfolio;
 
+    // Position in the book, maintained by PriceLevel while the order rests
+    PriceLevel level;
+    Order prev;
+    Order next;
+
+    boolean pooled; // Handed out by an OrderPool and recycled by the book when done
+
+    // Shares this sell order reserved in its portfolio and hasn't sold or given back yet;
+    // never more than its quantity, and 0 for short sells
+    int reservedStock;
+
+    // Latency bookkeeping for BookMetrics
+    long submitNanos; // When the order was handed to the book or its engine, 0 if never
+    boolean acked;
+    boolean filled;
+
     public Order(String stockSymbol, Type type, Side side, int quantity, double price, Portfolio user_portfolio) {
-        this.id = nextId++;
-        this.stockSymbol = stockSymbol;
+        init(OrderIdSequencer.global().next(), SymbolRegistry.intern(stockSymbol), type, side, quantity, price, user_portfolio);
+    }
+
+    // An order that keeps an id handed out earlier, e.g. when rebuilding a book from a journal
+    Order(int id, String stockSymbol, Type type, Side side, int quantity, double price, Portfolio user_portfolio) {
+        init(id, SymbolRegistry.intern(stockSymbol), type, side, quantity, price, user_portfolio);
+    }
+
+    // Blank order for OrderPool
+    Order() {}
+
+    // Final so the constructors can use it before a subclass is initialised
+    final void init(int id, int symbolId, Type type, Side side, int quantity, double price, Portfolio user_portfolio) {
+        this.id = id;
+        this.symbolId = symbolId;
         this.type = type;
         this.side = side;
         this.quantity = quantity;
         this.price = price;
-        this.timestamp = System.currentTimeMillis();
+        Clock clock = Clock.current();
+        this.timestamp = clock.currentTimeMillis();
+        this.entryStamp = clock.nextStamp();
         this.user_portfolio = user_portfolio;
+        this.priceTicks = 0;
+        this.reservedStock = 0;
+        this.submitNanos = 0;
+        this.acked = false;
+        this.filled = false;
+    }
+
+    // Drop references so a pooled order doesn't keep a portfolio alive
+    void clearReferences() {
+        this.user_portfolio = null;
+        this.level = null;
+        this.prev = null;
+        this.next = null;
     }
 
     // Getters
     public int getId() { return id; }
-    public String getStockSymbol() { return stockSymbol; }
+    public String getStockSymbol() { return SymbolRegistry.name(symbolId); }
+    public int getSymbolId() { return symbolId; }
     public Type getType() { return type; }
     public Side getSide() { return side; }
     public int getQuantity() { return quantity; }
     public double getPrice() { return price; }
+    public long getPriceTicks() { return priceTicks; }
     public long getTimestamp() { return timestamp; }
+    public long getEntryStamp() { return entryStamp; }
     public Portfolio getUser_portfolio(){ return user_portfolio; }
 
+    // Snap the order to the book's tick grid
+    void setPriceTicks(long priceTicks, double price) {
+        this.priceTicks = priceTicks;
+        this.price = price;
+    }
+
+    // A triggered stop turns into a market order in place
+    void setSide(Side side) {
+        this.side = side;
+    }
+
+    // Put back the entry times of an order loaded from a snapshot
+    void restoreTimes(long timestamp, long entryStamp) {
+        this.timestamp = timestamp;
+        this.entryStamp = entryStamp;
+    }
+
+    // Used by modify; the book keeps its level totals in step
+    void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+
     public void reduceQuantity(int amount) {
         this.quantity -= amount;
     }
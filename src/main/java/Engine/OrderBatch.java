@@ -0,0 +1,184 @@
+package Engine;
+
+import java.util.Arrays;
+
+/**
+ * A list of new, cancel, replace and modify commands applied to one order
+ * book in a single pass: the book is acquired once (one monitor or one engine
+ * command) and the commands run in the order they were added.
+ *
+ * Results are written back into the batch and read with isSuccess. A batch
+ * can be cleared and reused; ids are captured when commands are added, so
+ * they stay valid after pooled orders have been recycled.
+ */
+public final class OrderBatch {
+    public enum Kind { NEW, CANCEL, REPLACE, MODIFY }
+
+    private Kind[] kinds;
+    private int[] orderIds;       // New order id for NEW/REPLACE, target id for CANCEL/MODIFY
+    private int[] targetIds;      // Order replaced by REPLACE
+    private Order.Type[] cancelTypes;
+    private Order[] orders;
+    private double[] prices;      // MODIFY
+    private int[] quantities;     // MODIFY
+    private boolean[] results;
+    private int size;
+
+    public OrderBatch() {
+        this(8);
+    }
+
+    public OrderBatch(int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        kinds = new Kind[capacity];
+        orderIds = new int[capacity];
+        targetIds = new int[capacity];
+        cancelTypes = new Order.Type[capacity];
+        orders = new Order[capacity];
+        prices = new double[capacity];
+        quantities = new int[capacity];
+        results = new boolean[capacity];
+    }
+
+    public OrderBatch add(Order order) {
+        if (order == null) {
+            throw new IllegalArgumentException("Order must not be null");
+        }
+        int i = next(Kind.NEW);
+        order.submitNanos = System.nanoTime();
+        orders[i] = order;
+        orderIds[i] = order.getId();
+        return this;
+    }
+
+    public OrderBatch cancel(int orderId) {
+        return cancel(orderId, null);
+    }
+
+    // Cancel only if the order rests on the given side
+    public OrderBatch cancel(int orderId, Order.Type type) {
+        int i = next(Kind.CANCEL);
+        orderIds[i] = orderId;
+        cancelTypes[i] = type;
+        return this;
+    }
+
+    // Cancel orderId and, only if that succeeds, place the replacement under its own id
+    public OrderBatch replace(int orderId, Order replacement) {
+        if (replacement == null) {
+            throw new IllegalArgumentException("Replacement order must not be null");
+        }
+        int i = next(Kind.REPLACE);
+        replacement.submitNanos = System.nanoTime();
+        orders[i] = replacement;
+        orderIds[i] = replacement.getId();
+        targetIds[i] = orderId;
+        return this;
+    }
+
+    // Change a resting order's price and quantity; see OrderBook.modifyOrder
+    public OrderBatch modify(int orderId, double newPrice, int newQuantity) {
+        int i = next(Kind.MODIFY);
+        orderIds[i] = orderId;
+        prices[i] = newPrice;
+        quantities[i] = newQuantity;
+        return this;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Kind getKind(int index) {
+        checkIndex(index);
+        return kinds[index];
+    }
+
+    // The new order's id for NEW and REPLACE, the target id for CANCEL and MODIFY
+    public int getOrderId(int index) {
+        checkIndex(index);
+        return orderIds[index];
+    }
+
+    // The id a REPLACE cancelled
+    public int getReplacedId(int index) {
+        checkIndex(index);
+        return targetIds[index];
+    }
+
+    public boolean isSuccess(int index) {
+        checkIndex(index);
+        return results[index];
+    }
+
+    public int getSuccessCount() {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (results[i]) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public void clear() {
+        Arrays.fill(kinds, 0, size, null);
+        Arrays.fill(cancelTypes, 0, size, null);
+        Arrays.fill(orders, 0, size, null);
+        Arrays.fill(results, 0, size, false);
+        size = 0;
+    }
+
+    // Run every command against the book; the caller must own it (its monitor or its engine thread)
+    int applyTo(OrderBook book) {
+        int succeeded = 0;
+        for (int i = 0; i < size; i++) {
+            boolean success;
+            switch (kinds[i]) {
+                case NEW:
+                    success = book.apply(orders[i]);
+                    break;
+                case CANCEL:
+                    success = book.applyCancel(orderIds[i], cancelTypes[i]);
+                    break;
+                case MODIFY:
+                    success = book.applyModify(orderIds[i], prices[i], quantities[i]);
+                    break;
+                default:
+                    success = book.applyReplace(targetIds[i], orders[i]);
+                    break;
+            }
+            // The book owns the orders now; pooled ones may be recycled at any time
+            orders[i] = null;
+            results[i] = success;
+            if (success) {
+                succeeded++;
+            }
+        }
+        return succeeded;
+    }
+
+    private int next(Kind kind) {
+        if (size == kinds.length) {
+            int capacity = size * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            orderIds = Arrays.copyOf(orderIds, capacity);
+            targetIds = Arrays.copyOf(targetIds, capacity);
+            cancelTypes = Arrays.copyOf(cancelTypes, capacity);
+            orders = Arrays.copyOf(orders, capacity);
+            prices = Arrays.copyOf(prices, capacity);
+            quantities = Arrays.copyOf(quantities, capacity);
+            results = Arrays.copyOf(results, capacity);
+        }
+        int i = size++;
+        kinds[i] = kind;
+        results[i] = false;
+        return i;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Batch index " + index + " out of range for size " + size);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package Engine;
 import java.util.*;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -10,372 +11,458 @@ import java.util.concurrent.TimeUnit;
 import Banking.*;
 import Data.Candle;
 import Data.CandleManager;
+import Sim.Clock;
 
 public class OrderBook {
     private String symbol;
-    private List<Order> buyOrders;
-    private List<Order> sellOrders;
-    private List<Order> buyStops;
-    private List<Order> sellStops;
+    private final int symbolId; // SymbolRegistry id; orders, portfolios and candles are keyed by it
+    private final BookSide buyOrders;
+    private final BookSide sellOrders;
+    private final BookSide buyStops;  // Keyed by trigger price, nearest trigger first
+    private final BookSide sellStops;
+    private final IntObjectMap<Order> orderIndex; // Resting orders and stops by id
+    private volatile MatchingEngine engine; // Set when a single-writer engine owns this book
+    private volatile ExecutionReportStream executionReports; // Optional order lifecycle events
+    private volatile OrderJournal journal; // Optional command and fill journal
+    private volatile Leaderboard leaderboard; // Optional; marked with the last price after each command
+    private long markedPrice; // In ticks, the price the leaderboard last saw
+    int journalSymbolId; // Id this book's journal records carry
+    private final DepthPublisher depthPublisher;
+    private final MarketDataPublisher marketData = new MarketDataPublisher();
+    private final BookMetrics metrics;
+    private final OrderPool orderPool;
+    private final List<Order> retired = new ArrayList<>(64); // Finished pooled orders awaiting release
+
+    private final long tickCents; // Tick size of this symbol, in cents
+    private long lastTradePrice;  // In ticks
+    private volatile long currentPrice; // Current market price of the stock, in ticks
+    private volatile TopOfBook topOfBook; // Republished at the end of every command that changes it
+    private boolean stopsPending; // The price moved; stops are checked once the command's own matching is done
+
+    // Call auction: while 'auction' is set orders rest without matching and stops wait
+    private volatile boolean auction;
+    private volatile AuctionQuote auctionQuote; // Latest indicative quote, null outside an auction
+    private volatile long auctionQuoteIntervalMillis = 100;
+    private long lastAuctionQuoteMillis;
+    private long auctionSequence;
+    private long auctionPrice, auctionVolume, auctionBuySurplus, auctionSellSurplus; // Set by computeAuction
+    private long[] crossedAskPrices = new long[16], crossedAskSizes = new long[16];
+    private long[] crossedBidPrices = new long[16], crossedBidSizes = new long[16];
+
+    // Books created outside an Exchange share one default candle manager
+    private static final CandleManager defaultCandleManager = new CandleManager(1000); // Keep 1000 candles per timeframe
+    private final CandleManager candleManager;
 
-    private double lastTradePrice;
-    private double currentPrice; // Current market price of the stock
+    public OrderBook(String symbol, double initialPrice) {
+        this(symbol, initialPrice, 0.01);
+    }
+
+    public OrderBook(String symbol, double initialPrice, double tickSize) {
+        this(symbol, initialPrice, tickSize, defaultCandleManager);
+    }
 
-    // Use centralized candle manager
-    private static CandleManager candleManager = new CandleManager(1000); // Keep 1000 candles per timeframe
+    public OrderBook(String symbol, double initialPrice, double tickSize, CandleManager candleManager) {
+        this(symbol, initialPrice, tickSize, candleManager, OrderIdSequencer.global());
+    }
 
-    public OrderBook(String symbol, double initialPrice) {
+    // Orders from createOrder take their ids from 'orderIds' rather than the global sequence
+    public OrderBook(String symbol, double initialPrice, double tickSize, CandleManager candleManager,
+                     OrderIdSequencer orderIds) {
+        long tickCents = Money.toCents(tickSize);
+        if (tickCents <= 0 || Math.abs(Money.toDollars(tickCents) - tickSize) > 1e-9) {
+            throw new IllegalArgumentException("Tick size must be a positive whole number of cents: " + tickSize);
+        }
         this.symbol = symbol;
-        this.buyOrders = Collections.synchronizedList(new ArrayList<>());
-        this.sellOrders = Collections.synchronizedList(new ArrayList<>());
-        this.buyStops = Collections.synchronizedList(new ArrayList<>());
-        this.sellStops = Collections.synchronizedList(new ArrayList<>());
-        this.currentPrice = initialPrice;
-        this.lastTradePrice = initialPrice;
+        this.symbolId = SymbolRegistry.intern(symbol);
+        this.tickCents = tickCents;
+        this.candleManager = candleManager;
+        this.orderPool = new OrderPool(4096, orderIds);
+        this.orderIndex = new IntObjectMap<>(1024);
+        this.buyOrders = new BookSide(true, orderIndex);   // Highest bid first
+        this.sellOrders = new BookSide(false, orderIndex); // Lowest ask first
+        this.depthPublisher = new DepthPublisher(symbol, tickCents);
+        this.buyOrders.publishTo(depthPublisher, Order.Type.BUY);
+        this.sellOrders.publishTo(depthPublisher, Order.Type.SELL);
+        this.buyStops = new BookSide(false, orderIndex);  // Lowest trigger first
+        this.sellStops = new BookSide(true, orderIndex);  // Highest trigger first
+        this.metrics = new BookMetrics(symbol, buyOrders, sellOrders, buyStops, sellStops);
+        // Converted directly: toTicks and toPrice can be overridden and must not run before the book is built
+        this.currentPrice = Math.round(initialPrice * Money.CENTS_PER_DOLLAR / tickCents);
+        this.lastTradePrice = this.currentPrice;
+        double price = Money.toDollars(lastTradePrice * tickCents);
+        this.topOfBook = new TopOfBook(symbol, 0, 0, 0, 0, 0, 0, 0, lastTradePrice, price);
 
         // Initialize candles for this symbol
-        candleManager.initializeSymbol(symbol, initialPrice);
+        candleManager.initializeSymbol(symbolId, price);
+    }
+
+    // Conversions between API prices (dollars) and engine prices (ticks)
+    public long toTicks(double price) {
+        return Math.round(price * Money.CENTS_PER_DOLLAR / tickCents);
+    }
+
+    public double toPrice(long ticks) {
+        return Money.toDollars(ticks * tickCents);
+    }
+
+    private long toCents(long ticks) {
+        return ticks * tickCents;
+    }
+
+    // Snap a limit or stop price onto the tick grid, rejecting prices that round to zero
+    private boolean normalizePrice(Order order) {
+        long ticks = toTicks(order.getPrice());
+        if (ticks <= 0) {
+            reject(order, "Invalid price");
+            return false;
+        }
+        order.setPriceTicks(ticks, toPrice(ticks));
+        return true;
     }
 
     /**
      * Call this whenever a trade is executed - single point of candle updates
      */
-    private void onTradeExecuted(double price, int volume) {
+    private void onTradeExecuted(long price, int volume) {
         this.lastTradePrice = price;
         this.currentPrice = price;
 
         // Update candles - this is the only place candles get updated
-        candleManager.onTrade(symbol, price, volume, System.currentTimeMillis());
+        long timestamp = Clock.current().currentTimeMillis();
+        double tradePrice = toPrice(price);
+        marketData.trade(symbol, tradePrice, volume, timestamp);
+        candleManager.onTrade(symbolId, tradePrice, volume, timestamp, marketData.hasSubscribers() ? marketData : null);
+
+        // Stops are checked at the end of the command, so a stop that triggers never takes
+        // liquidity an aggressing order already priced and reserved for
+        stopsPending = true;
+    }
 
-        // Check for stop order triggers after price update
-        checkStopOrders();
+    public void placeBuyOrder(Order order) {
+        MatchingEngine engine = this.engine;
+        if (engine != null && !engine.isEngineThread()) {
+            engine.place(this, order, null);
+            return;
+        }
+        order.submitNanos = System.nanoTime();
+        synchronized (this) {
+            applyBuy(order);
+        }
     }
 
-    public synchronized void placeBuyOrder(Order order) {
+    public void placeSellOrder(Order order) {
+        MatchingEngine engine = this.engine;
+        if (engine != null && !engine.isEngineThread()) {
+            engine.place(this, order, null);
+            return;
+        }
+        order.submitNanos = System.nanoTime();
+        synchronized (this) {
+            applySell(order);
+        }
+    }
+
+    // Unsynchronized entry points; the caller must own the book (its monitor or its engine thread)
+    boolean apply(Order order) {
+        return order.getType() == Order.Type.BUY ? applyBuy(order) : applySell(order);
+    }
+
+    boolean applyBuy(Order order) {
+        OrderJournal journal = this.journal;
+        if (journal != null) {
+            journal.place(journalSymbolId, order);
+        }
+        metrics.orderReceived();
+        long start = System.nanoTime();
+        boolean accepted = placeBuy(order);
+        metrics.matched(System.nanoTime() - start);
+        finishCommand(order, accepted);
+        return accepted;
+    }
+
+    boolean applySell(Order order) {
+        OrderJournal journal = this.journal;
+        if (journal != null) {
+            journal.place(journalSymbolId, order);
+        }
+        metrics.orderReceived();
+        long start = System.nanoTime();
+        boolean accepted = placeSell(order);
+        metrics.matched(System.nanoTime() - start);
+        finishCommand(order, accepted);
+        return accepted;
+    }
+
+    private boolean placeBuy(Order order) {
         if (order.getSide() == Order.Side.MARKET) {
-            executeMarketBuyOrder(order);
+            if (auction) {
+                reject(order, "Market orders are not accepted during an auction");
+                return false;
+            }
+            return executeMarketBuyOrder(order);
+        } else if (!normalizePrice(order)) {
+            return false;
         } else if (order.getSide() == Order.Side.STOP) {
-            placeBuyStopOrder(order);
+            return placeBuyStopOrder(order);
         } else {
-            placeLimitBuyOrder(order);
+            return placeLimitBuyOrder(order);
         }
     }
 
-    public synchronized void placeSellOrder(Order order) {
+    private boolean placeSell(Order order) {
         if (order.getSide() == Order.Side.MARKET) {
-            executeMarketSellOrder(order);
+            if (auction) {
+                reject(order, "Market orders are not accepted during an auction");
+                return false;
+            }
+            return executeMarketSellOrder(order);
+        } else if (!normalizePrice(order)) {
+            return false;
         } else if (order.getSide() == Order.Side.STOP) {
-            placeSellStopOrder(order);
+            return placeSellStopOrder(order);
         } else {
-            placeLimitSellOrder(order);
+            return placeLimitSellOrder(order);
         }
     }
 
-    private void placeBuyStopOrder(Order order) {
+    private boolean placeBuyStopOrder(Order order) {
         buyStops.add(order);
-        // Sort by stop price (lowest first for buy stops)
-        buyStops.sort((a, b) -> Double.compare(a.getPrice(), b.getPrice()));
-        System.out.println("Buy stop order placed: " + order.getQuantity() + " shares of " + symbol +
-                " at stop price $" + order.getPrice());
+        report(ExecutionReport.Type.ACCEPTED, order, false);
+        return true;
     }
 
-    private void placeSellStopOrder(Order order) {
-        String stockSymbol = order.getStockSymbol();
+    private boolean placeSellStopOrder(Order order) {
         Portfolio portfolio = order.getUser_portfolio();
-        int availableStock = portfolio.getAvailableStock(stockSymbol);
+        int availableStock = portfolio.getAvailableStock(symbolId);
 
         // Check if this is a stop-loss that would result in short sell
         boolean isShortSell = availableStock < order.getQuantity();
 
         if (!isShortSell) {
             // For regular stop orders, reserve the stock
-            if (!portfolio.reserveStock(stockSymbol, order.getQuantity())) {
-                System.out.println("You do not have enough stock for this stop order");
-                return;
+            if (!portfolio.reserveStock(symbolId, order.getQuantity())) {
+                reject(order, "Not enough stock for this stop order");
+                return false;
             }
-        } else {
-            System.out.println("Sell stop order will result in short position when triggered");
+            order.reservedStock = order.getQuantity();
         }
 
+        // A short stop is flagged on acceptance; it goes short when triggered
         sellStops.add(order);
-        // Sort by stop price (highest first for sell stops)
-        sellStops.sort((a, b) -> Double.compare(b.getPrice(), a.getPrice()));
-        System.out.println("Sell stop order placed: " + order.getQuantity() + " shares of " + symbol +
-                " at stop price $" + order.getPrice());
+        report(ExecutionReport.Type.ACCEPTED, order, isShortSell);
+        return true;
     }
 
-    private synchronized void checkStopOrders() {
-        // Check buy stop orders (trigger when price goes above stop price)
-        List<Order> triggeredBuyStops = new ArrayList<>();
-        synchronized(buyStops) {
-            Iterator<Order> buyStopIterator = buyStops.iterator();
-            while (buyStopIterator.hasNext()) {
-                Order stopOrder = buyStopIterator.next();
-                if (stopOrder != null && currentPrice >= stopOrder.getPrice()) {
-                    triggeredBuyStops.add(stopOrder);
-                    buyStopIterator.remove();
-                }
-            }
+    // Only the nearest trigger on each side is compared, so a trade that triggers
+    // nothing costs two comparisons and allocates nothing. Stops wait out an auction.
+    // Runs until triggered stops stop moving the price into further triggers.
+    private void checkStopOrders() {
+        while (stopsPending && !auction) {
+            stopsPending = false;
+            triggerStopOrders();
         }
+    }
 
-        // Execute triggered buy stops outside of synchronized block
-        for (Order stopOrder : triggeredBuyStops) {
-            Order marketOrder = new Order(stopOrder.getStockSymbol(), Order.Type.BUY,
-                    Order.Side.MARKET, stopOrder.getQuantity(), 0, stopOrder.getUser_portfolio());
-            executeMarketBuyOrder(marketOrder);
-            System.out.println("Buy stop triggered at $" + currentPrice);
+    private void triggerStopOrders() {
+        // Check buy stop orders (trigger when price goes above stop price)
+        PriceLevel buyTrigger;
+        while ((buyTrigger = buyStops.bestLevel()) != null && currentPrice >= buyTrigger.getPrice()) {
+            Order stopOrder = buyTrigger.getHead();
+            buyStops.remove(stopOrder);
+            reportTrigger(stopOrder);
+
+            // The stop becomes a market order under the same id. A buy stop reserves nothing
+            // while it waits, and the market buy returns whatever cash it doesn't spend.
+            stopOrder.setSide(Order.Side.MARKET);
+            executeMarketBuyOrder(stopOrder);
+            retire(stopOrder);
         }
 
         // Check sell stop orders (trigger when price goes below stop price)
-        List<Order> triggeredSellStops = new ArrayList<>();
-        synchronized(sellStops) {
-            Iterator<Order> sellStopIterator = sellStops.iterator();
-            while (sellStopIterator.hasNext()) {
-                Order stopOrder = sellStopIterator.next();
-                if (stopOrder != null && currentPrice <= stopOrder.getPrice()) {
-                    triggeredSellStops.add(stopOrder);
-                    sellStopIterator.remove();
-                }
-            }
-        }
-
-        // Execute triggered sell stops outside of synchronized block
-        for (Order stopOrder : triggeredSellStops) {
-            Order marketOrder = new Order(stopOrder.getStockSymbol(), Order.Type.SELL,
-                    Order.Side.MARKET, stopOrder.getQuantity(), 0, stopOrder.getUser_portfolio());
-            executeMarketSellOrder(marketOrder);
-            System.out.println("Sell stop triggered at $" + currentPrice);
+        PriceLevel sellTrigger;
+        while ((sellTrigger = sellStops.bestLevel()) != null && currentPrice <= sellTrigger.getPrice()) {
+            Order stopOrder = sellTrigger.getHead();
+            sellStops.remove(stopOrder);
+            reportTrigger(stopOrder);
+
+            // Shares it reserved but didn't sell, e.g. when there were no bids, go back
+            stopOrder.setSide(Order.Side.MARKET);
+            executeMarketSellOrder(stopOrder);
+            releaseReservedStock(stopOrder);
+            retire(stopOrder);
         }
     }
 
-    private void executeMarketBuyOrder(Order order) {
-        synchronized(sellOrders) {
-            if (sellOrders.isEmpty()) {
-                System.out.println("No sell orders available to fulfill market buy order");
-                return;
-            }
+    private boolean executeMarketBuyOrder(Order order) {
+        if (sellOrders.isEmpty()) {
+            reject(order, "No sell orders available");
+            return false;
+        }
 
-            int remainingQuantity = order.getQuantity();
-            double totalCost = 0;
+        int remainingQuantity = order.getQuantity();
+        long totalCost = 0; // In cents
 
-            // Calculate total cost by walking through sell orders
-            for (Order sellOrder : sellOrders) {
-                if (sellOrder == null || remainingQuantity <= 0) break;
+        // Calculate total cost by walking the ask levels
+        for (PriceLevel level : sellOrders.levels()) {
+            if (remainingQuantity <= 0) break;
 
-                int tradeQuantity = Math.min(remainingQuantity, sellOrder.getQuantity());
-                totalCost += tradeQuantity * sellOrder.getPrice();
-                remainingQuantity -= tradeQuantity;
-            }
+            int tradeQuantity = (int) Math.min(remainingQuantity, level.getTotalQuantity());
+            totalCost += tradeQuantity * toCents(level.getPrice());
+            remainingQuantity -= tradeQuantity;
+        }
 
-            if (remainingQuantity > 0) {
-                System.out.println("Not enough liquidity to fulfill entire market buy order");
-                return;
-            }
+        if (remainingQuantity > 0) {
+            reject(order, "Not enough liquidity");
+            return false;
+        }
 
-            // Check if user has enough cash
-            if (order.getUser_portfolio().getUSD() < totalCost) {
-                System.out.println("You do not have enough cash to fulfill this market buy order");
-                return;
+        // Reserve the full cost up front so the fills below draw from reserved cash
+        Portfolio portfolio = order.getUser_portfolio();
+        if (!portfolio.reserveCash(totalCost)) {
+            reject(order, "Not enough cash");
+            return false;
+        }
+        report(ExecutionReport.Type.ACCEPTED, order, false);
+
+        // Execute the market order
+        long spent = 0;
+        while (order.getQuantity() > 0 && !sellOrders.isEmpty()) {
+            Order lowestSell = sellOrders.bestOrder();
+
+            int tradeQuantity = Math.min(order.getQuantity(), lowestSell.getQuantity());
+            boolean isShortSell = lowestSell.reservedStock < tradeQuantity; // Resting sells reserve what they own
+            long tradePrice = lowestSell.getPriceTicks();
+
+            // Execute the trade
+            portfolio.executeBuy(symbolId, tradeQuantity, toCents(tradePrice));
+            executeSell(lowestSell, tradeQuantity, tradePrice);
+            spent += tradeQuantity * toCents(tradePrice);
+
+            // Update quantities, removing the sell order once fully executed
+            order.reduceQuantity(tradeQuantity);
+            sellOrders.reduce(lowestSell, tradeQuantity);
+            reportFill(order, lowestSell, tradeQuantity, tradePrice, false);
+            reportFill(lowestSell, order, tradeQuantity, tradePrice, isShortSell);
+            if (lowestSell.getQuantity() == 0) {
+                retire(lowestSell);
             }
 
-            // Execute the market order
-            remainingQuantity = order.getQuantity();
-            Iterator<Order> sellIterator = sellOrders.iterator();
-            while (remainingQuantity > 0 && sellIterator.hasNext()) {
-                Order lowestSell = sellIterator.next();
-                if (lowestSell == null) continue;
-
-                int tradeQuantity = Math.min(remainingQuantity, lowestSell.getQuantity());
-                double tradePrice = lowestSell.getPrice();
-
-                // Execute the trade
-                order.getUser_portfolio().executeBuy(symbol, tradeQuantity, tradePrice);
-                lowestSell.getUser_portfolio().executeSell(symbol, tradeQuantity, tradePrice);
-
-                // Update prices and candles
-                onTradeExecuted(tradePrice, tradeQuantity);
-
-                // Update quantities
-                remainingQuantity -= tradeQuantity;
-                lowestSell.reduceQuantity(tradeQuantity);
-
-                // Remove fully executed sell order
-                if (lowestSell.getQuantity() == 0) {
-                    sellIterator.remove();
-                }
+            // Update prices and candles
+            onTradeExecuted(tradePrice, tradeQuantity);
+        }
 
-                System.out.println("Market buy executed: " + tradeQuantity + " shares of " + symbol +
-                        " at $" + tradePrice + " per share");
-            }
+        // Nothing else trades during the sweep, so it spends what was priced; never more
+        if (spent < totalCost) {
+            portfolio.releaseReservedCash(totalCost - spent);
         }
+        return true;
     }
 
-    private void placeLimitBuyOrder(Order order) {
-        double requiredCash = order.getQuantity() * order.getPrice();
-        double userCash = order.getUser_portfolio().getUSD();
-
-        if (userCash < requiredCash) {
-            System.out.println("You do not have enough cash to buy this order");
-            return;
-        }
+    private boolean placeLimitBuyOrder(Order order) {
+        long requiredCash = order.getQuantity() * toCents(order.getPriceTicks());
 
         // Reserve the cash when placing the order
-        order.getUser_portfolio().reserveCash(requiredCash);
+        if (!order.getUser_portfolio().reserveCash(requiredCash)) {
+            reject(order, "Not enough cash");
+            return false;
+        }
 
-        // Add order to the list
+        // Queue the order at the back of its price level
         buyOrders.add(order);
-
-        // Sort buy orders by price (highest first), then by timestamp for same price
-        buyOrders.sort((a, b) -> {
-            if (a == null && b == null) return 0;
-            if (a == null) return 1;
-            if (b == null) return -1;
-
-            int priceComparison = Double.compare(b.getPrice(), a.getPrice());
-            if (priceComparison == 0) {
-                return Long.compare(a.getTimestamp(), b.getTimestamp()); // Earlier orders first
-            }
-            return priceComparison;
-        });
+        report(ExecutionReport.Type.ACCEPTED, order, false);
 
         // Attempt to match orders
         matchOrders();
+        return true;
     }
 
-    private void executeMarketSellOrder(Order order) {
-        synchronized(buyOrders) {
-            if (buyOrders.isEmpty()) {
-                System.out.println("No buy orders available to fulfill market sell order");
-                return;
-            }
-
-            String stockSymbol = order.getStockSymbol();
-            Portfolio portfolio = order.getUser_portfolio();
-            int availableStock = portfolio.getAvailableStock(stockSymbol);
+    private boolean executeMarketSellOrder(Order order) {
+        if (buyOrders.isEmpty()) {
+            reject(order, "No buy orders available");
+            return false;
+        }
 
-            // Check if this is a short sell (user doesn't have enough stock)
-            boolean isShortSell = availableStock < order.getQuantity();
+        Portfolio portfolio = order.getUser_portfolio();
+        int availableStock = portfolio.getAvailableStock(symbolId);
 
-            if (isShortSell) {
-                System.out.println("Market sell order will result in short position");
-            }
+        // Check if this is a short sell (user doesn't have enough stock); a triggered
+        // stop counts the shares it reserved for itself
+        boolean isShortSell = order.reservedStock + availableStock < order.getQuantity();
 
-            // Check if there's enough liquidity
-            int availableLiquidity = 0;
-            for (Order buyOrder : buyOrders) {
-                if (buyOrder != null) {
-                    availableLiquidity += buyOrder.getQuantity();
-                    if (availableLiquidity >= order.getQuantity()) break;
-                }
-            }
+        // Check if there's enough liquidity
+        long availableLiquidity = 0;
+        for (PriceLevel level : buyOrders.levels()) {
+            availableLiquidity += level.getTotalQuantity();
+            if (availableLiquidity >= order.getQuantity()) break;
+        }
 
-            if (availableLiquidity < order.getQuantity()) {
-                System.out.println("Not enough liquidity to fulfill entire market sell order");
-                return;
+        if (availableLiquidity < order.getQuantity()) {
+            reject(order, "Not enough liquidity");
+            return false;
+        }
+        report(ExecutionReport.Type.ACCEPTED, order, isShortSell);
+
+        // Execute the market sell order
+        while (order.getQuantity() > 0 && !buyOrders.isEmpty()) {
+            Order highestBuy = buyOrders.bestOrder();
+
+            int tradeQuantity = Math.min(order.getQuantity(), highestBuy.getQuantity());
+            long tradePrice = highestBuy.getPriceTicks();
+
+            // Execute the trade
+            executeSell(order, tradeQuantity, tradePrice);
+            highestBuy.getUser_portfolio().executeBuy(symbolId, tradeQuantity, toCents(tradePrice));
+
+            // Update quantities, removing the buy order once fully executed
+            order.reduceQuantity(tradeQuantity);
+            buyOrders.reduce(highestBuy, tradeQuantity);
+            reportFill(order, highestBuy, tradeQuantity, tradePrice, isShortSell);
+            reportFill(highestBuy, order, tradeQuantity, tradePrice, false);
+            if (highestBuy.getQuantity() == 0) {
+                retire(highestBuy);
             }
 
-            // Execute the market sell order
-            int remainingQuantity = order.getQuantity();
-            Iterator<Order> buyIterator = buyOrders.iterator();
-            while (remainingQuantity > 0 && buyIterator.hasNext()) {
-                Order highestBuy = buyIterator.next();
-                if (highestBuy == null) continue;
-
-                int tradeQuantity = Math.min(remainingQuantity, highestBuy.getQuantity());
-                double tradePrice = highestBuy.getPrice();
-
-                // Execute the trade
-                order.getUser_portfolio().executeSell(symbol, tradeQuantity, tradePrice);
-                highestBuy.getUser_portfolio().executeBuy(symbol, tradeQuantity, tradePrice);
-
-                // Update prices and candles
-                onTradeExecuted(tradePrice, tradeQuantity);
-
-                // Update quantities
-                remainingQuantity -= tradeQuantity;
-                highestBuy.reduceQuantity(tradeQuantity);
-
-                // Remove fully executed buy order
-                if (highestBuy.getQuantity() == 0) {
-                    buyIterator.remove();
-                }
-
-                if (isShortSell) {
-                    System.out.println("Market short sell executed: " + tradeQuantity + " shares of " + symbol +
-                            " at $" + tradePrice + " per share");
-                } else {
-                    System.out.println("Market sell executed: " + tradeQuantity + " shares of " + symbol +
-                            " at $" + tradePrice + " per share");
-                }
-            }
+            // Update prices and candles
+            onTradeExecuted(tradePrice, tradeQuantity);
         }
+        return true;
     }
 
-    private void placeLimitSellOrder(Order order) {
-        String stockSymbol = order.getStockSymbol();
+    private boolean placeLimitSellOrder(Order order) {
         Portfolio portfolio = order.getUser_portfolio();
-        int availableStock = portfolio.getAvailableStock(stockSymbol);
+        int availableStock = portfolio.getAvailableStock(symbolId);
 
         // Check if this is a short sell
         boolean isShortSell = availableStock < order.getQuantity();
 
         if (!isShortSell) {
             // For regular sell orders, reserve the stock
-            if (!portfolio.reserveStock(stockSymbol, order.getQuantity())) {
-                System.out.println("You do not have enough stock to sell");
-                return;
+            if (!portfolio.reserveStock(symbolId, order.getQuantity())) {
+                reject(order, "Not enough stock");
+                return false;
             }
+            order.reservedStock = order.getQuantity();
         }
 
+        // Queue the order at the back of its price level
         sellOrders.add(order);
-
-        // Sort sell orders by price (lowest first), then by timestamp for same price
-        sellOrders.sort((a, b) -> {
-            if (a == null && b == null) return 0;
-            if (a == null) return 1;
-            if (b == null) return -1;
-
-            int priceComparison = Double.compare(a.getPrice(), b.getPrice());
-            if (priceComparison == 0) {
-                return Long.compare(a.getTimestamp(), b.getTimestamp()); // Earlier orders first
-            }
-            return priceComparison;
-        });
+        report(ExecutionReport.Type.ACCEPTED, order, isShortSell);
 
         matchOrders();
+        return true;
     }
 
-    private synchronized void matchOrders() {
+    private void matchOrders() {
+        if (auction) {
+            return; // Crossing orders wait for the uncross
+        }
         while (!buyOrders.isEmpty() && !sellOrders.isEmpty()) {
-            Order highestBuy = null;
-            Order lowestSell = null;
-
-            // Find first non-null buy and sell orders
-            synchronized(buyOrders) {
-                for (Order order : buyOrders) {
-                    if (order != null) {
-                        highestBuy = order;
-                        break;
-                    }
-                }
-            }
-
-            synchronized(sellOrders) {
-                for (Order order : sellOrders) {
-                    if (order != null) {
-                        lowestSell = order;
-                        break;
-                    }
-                }
-            }
-
-            if (highestBuy == null || lowestSell == null) {
-                break;
-            }
+            Order highestBuy = buyOrders.bestOrder();
+            Order lowestSell = sellOrders.bestOrder();
 
             // Only match limit orders here (market orders are executed immediately)
             if (highestBuy.getSide() == Order.Side.LIMIT && lowestSell.getSide() == Order.Side.LIMIT) {
-                if (highestBuy.getPrice() >= lowestSell.getPrice()) {
+                if (highestBuy.getPriceTicks() >= lowestSell.getPriceTicks()) {
                     executeOrders(highestBuy, lowestSell);
                 } else {
                     // No more matches possible
@@ -390,155 +477,601 @@ public class OrderBook {
 
     private void executeOrders(Order buyOrder, Order sellOrder) {
         int tradeQuantity = Math.min(buyOrder.getQuantity(), sellOrder.getQuantity());
-        double tradePrice = sellOrder.getPrice(); // Use sell price as execution price
+        long tradePrice = sellOrder.getPriceTicks(); // Use sell price as execution price
+        fill(buyOrder, sellOrder, tradeQuantity, tradePrice);
 
-        // Check if the sell is a short sell
-        Portfolio sellPortfolio = sellOrder.getUser_portfolio();
-        int availableStock = sellPortfolio.getAvailableStock(sellOrder.getStockSymbol());
-        boolean isShortSell = availableStock < tradeQuantity;
+        // Update prices and candles
+        onTradeExecuted(tradePrice, tradeQuantity);
+    }
+
+    // Sell from the order's portfolio, giving back only shares this order reserved
+    private void executeSell(Order order, int tradeQuantity, long tradePrice) {
+        int release = Math.min(order.reservedStock, tradeQuantity);
+        order.reservedStock -= release;
+        order.getUser_portfolio().executeSell(symbolId, tradeQuantity, toCents(tradePrice), release);
+    }
+
+    // Trade two resting orders against each other; the caller moves the last price
+    private void fill(Order buyOrder, Order sellOrder, int tradeQuantity, long tradePrice) {
+        // The sell is short if it didn't reserve the shares it sells; checked before executeSell uses them
+        boolean isShortSell = sellOrder.reservedStock < tradeQuantity;
 
         // Execute the trade in both portfolios
-        buyOrder.getUser_portfolio().executeBuy(symbol, tradeQuantity, tradePrice);
-        sellOrder.getUser_portfolio().executeSell(symbol, tradeQuantity, tradePrice);
+        Portfolio buyPortfolio = buyOrder.getUser_portfolio();
+        buyPortfolio.executeBuy(symbolId, tradeQuantity, toCents(tradePrice));
+        executeSell(sellOrder, tradeQuantity, tradePrice);
+
+        // The buyer reserved at its limit, so hand back any price improvement
+        long improvement = tradeQuantity * toCents(buyOrder.getPriceTicks() - tradePrice);
+        if (improvement > 0) {
+            buyPortfolio.releaseReservedCash(improvement);
+        }
 
-        // Update prices and candles
-        onTradeExecuted(tradePrice, tradeQuantity);
+        // Update order quantities, removing fully executed orders from their levels
+        buyOrders.reduce(buyOrder, tradeQuantity);
+        sellOrders.reduce(sellOrder, tradeQuantity);
+        reportFill(buyOrder, sellOrder, tradeQuantity, tradePrice, false);
+        reportFill(sellOrder, buyOrder, tradeQuantity, tradePrice, isShortSell);
+        if (buyOrder.getQuantity() == 0) {
+            retire(buyOrder);
+        }
+        if (sellOrder.getQuantity() == 0) {
+            retire(sellOrder);
+        }
+    }
 
-        // Update order quantities
-        buyOrder.reduceQuantity(tradeQuantity);
-        sellOrder.reduceQuantity(tradeQuantity);
+    /**
+     * Switch to a call auction: orders are accepted and rest without matching,
+     * even when they cross, and an indicative AuctionQuote is published to
+     * market data as it changes (see setAuctionQuoteInterval). Market orders are rejected and stops
+     * wait until the uncross. False if an auction is already running.
+     */
+    public boolean startAuction() {
+        MatchingEngine engine = this.engine;
+        if (engine != null && !engine.isEngineThread()) {
+            return engine.startAuctionAsync(this).join();
+        }
+        synchronized (this) {
+            return applyStartAuction();
+        }
+    }
 
-        // Remove fully executed orders
-        synchronized(buyOrders) {
-            if (buyOrder.getQuantity() == 0) {
-                buyOrders.remove(buyOrder);
-            }
+    /**
+     * End the auction: everything that crosses executes at once at the single
+     * price that trades the most volume (ties go to the smallest surplus,
+     * then to the price nearest the last trade), printed as one trade, and
+     * continuous matching resumes. Returns what executed, or null if the book
+     * was not in an auction.
+     */
+    public AuctionQuote uncross() {
+        MatchingEngine engine = this.engine;
+        if (engine != null && !engine.isEngineThread()) {
+            return engine.uncrossAsync(this).join();
         }
-        synchronized(sellOrders) {
-            if (sellOrder.getQuantity() == 0) {
-                sellOrders.remove(sellOrder);
-            }
+        synchronized (this) {
+            return applyUncross();
+        }
+    }
+
+    boolean applyStartAuction() {
+        if (auction) {
+            return false;
         }
+        OrderJournal journal = this.journal;
+        if (journal != null) {
+            journal.auction(journalSymbolId, true);
+        }
+        auction = true;
+        endCommand();
+        return true;
+    }
 
-        if (isShortSell) {
-            System.out.println("Short sell trade executed: " + tradeQuantity + " shares of " + symbol +
-                    " at $" + tradePrice + " per share");
+    AuctionQuote applyUncross() {
+        if (!auction) {
+            return null;
+        }
+        OrderJournal journal = this.journal;
+        if (journal != null) {
+            journal.auction(journalSymbolId, false);
+        }
+        computeAuction();
+        AuctionQuote result = new AuctionQuote(symbol, ++auctionSequence, auctionPrice, toPrice(auctionPrice),
+                auctionVolume, auctionBuySurplus, auctionSellSurplus);
+        auction = false;
+        auctionQuote = null;
+
+        // Bids at or above the price and offers at or below it, best first, until the volume is done;
+        // what is left no longer crosses
+        long remaining = auctionVolume;
+        while (remaining > 0) {
+            Order buyOrder = buyOrders.bestOrder();
+            Order sellOrder = sellOrders.bestOrder();
+            int quantity = (int) Math.min(remaining, Math.min(buyOrder.getQuantity(), sellOrder.getQuantity()));
+            fill(buyOrder, sellOrder, quantity, auctionPrice);
+            remaining -= quantity;
+        }
+        marketData.auctionQuoteChanged(result);
+        if (auctionVolume > 0) {
+            onTradeExecuted(auctionPrice, (int) Math.min(auctionVolume, Integer.MAX_VALUE));
         } else {
-            System.out.println("Trade executed: " + tradeQuantity + " shares of " + symbol +
-                    " at $" + tradePrice + " per share");
+            stopsPending = true; // Stops that waited out the auction may trigger at the current price
         }
+        endCommand();
+        return result;
     }
 
-    // Cancel a buy order and release reserved cash (only for limit orders)
-    public synchronized boolean cancelBuyOrder(int orderId) {
-        // Check regular buy orders
-        synchronized(buyOrders) {
-            Iterator<Order> iterator = buyOrders.iterator();
-            while (iterator.hasNext()) {
-                Order order = iterator.next();
-                if (order != null && order.getId() == orderId) {
-                    if (order.getSide() == Order.Side.LIMIT) {
-                        // Release reserved cash
-                        double reservedCash = order.getQuantity() * order.getPrice();
-                        order.getUser_portfolio().releaseReservedCash(reservedCash);
-                    }
-                    iterator.remove();
-                    return true;
-                }
+    public boolean isInAuction() {
+        return auction;
+    }
+
+    // Latest indicative auction quote, readable without locking; null outside an auction
+    public AuctionQuote getAuctionQuote() {
+        return auctionQuote;
+    }
+
+    /**
+     * Refresh the indicative quote at most once per interval of clock time
+     * (100 ms by default), on the first command after the interval has
+     * passed; 0 refreshes it after every command. Working out the quote
+     * walks every crossed level, which is what makes a busy auction slow if
+     * done on every order. The uncross always uses the exact book.
+     */
+    public void setAuctionQuoteInterval(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Quote interval must not be negative: " + millis);
+        }
+        this.auctionQuoteIntervalMillis = millis;
+    }
+
+    // Clearing price of the crossed part of the book. Candidate prices are the crossed
+    // levels' prices; walking them upwards, supply grows as each offer level is passed
+    // and demand shrinks as each bid level is passed.
+    private void computeAuction() {
+        auctionPrice = 0;
+        auctionVolume = 0;
+        auctionBuySurplus = 0;
+        auctionSellSurplus = 0;
+        PriceLevel bestBid = buyOrders.bestLevel();
+        PriceLevel bestAsk = sellOrders.bestLevel();
+        if (bestBid == null || bestAsk == null || bestBid.getPrice() < bestAsk.getPrice()) {
+            return;
+        }
+
+        int asks = 0;
+        for (PriceLevel level : sellOrders.levels()) {
+            if (level.getPrice() > bestBid.getPrice()) break;
+            if (asks == crossedAskPrices.length) {
+                crossedAskPrices = Arrays.copyOf(crossedAskPrices, asks * 2);
+                crossedAskSizes = Arrays.copyOf(crossedAskSizes, asks * 2);
+            }
+            crossedAskPrices[asks] = level.getPrice();
+            crossedAskSizes[asks++] = level.getTotalQuantity();
+        }
+        int bids = 0;
+        long bidTotal = 0;
+        for (PriceLevel level : buyOrders.levels()) {
+            if (level.getPrice() < bestAsk.getPrice()) break;
+            if (bids == crossedBidPrices.length) {
+                crossedBidPrices = Arrays.copyOf(crossedBidPrices, bids * 2);
+                crossedBidSizes = Arrays.copyOf(crossedBidSizes, bids * 2);
             }
+            crossedBidPrices[bids] = level.getPrice();
+            crossedBidSizes[bids++] = level.getTotalQuantity();
+            bidTotal += level.getTotalQuantity();
         }
 
-        // Check buy stop orders
-        synchronized(buyStops) {
-            Iterator<Order> iterator = buyStops.iterator();
-            while (iterator.hasNext()) {
-                Order order = iterator.next();
-                if (order != null && order.getId() == orderId) {
-                    iterator.remove();
-                    return true;
-                }
+        long supply = 0;    // Offers at or below the candidate
+        long bidsBelow = 0; // Bids below the candidate
+        long bestSurplus = Long.MAX_VALUE;
+        int a = 0;
+        int b = bids - 1;   // Bids are highest first; walk them from the lowest
+        while (a < asks || b >= 0) {
+            long price = b < 0 || (a < asks && crossedAskPrices[a] <= crossedBidPrices[b])
+                    ? crossedAskPrices[a] : crossedBidPrices[b];
+            while (a < asks && crossedAskPrices[a] <= price) {
+                supply += crossedAskSizes[a++];
+            }
+            long demand = bidTotal - bidsBelow;
+            while (b >= 0 && crossedBidPrices[b] <= price) {
+                bidsBelow += crossedBidSizes[b--];
+            }
+
+            long volume = Math.min(supply, demand);
+            long surplus = Math.abs(demand - supply);
+            if (volume > auctionVolume || (volume == auctionVolume && (surplus < bestSurplus
+                    || (surplus == bestSurplus && Math.abs(price - lastTradePrice) < Math.abs(auctionPrice - lastTradePrice))))) {
+                auctionPrice = price;
+                auctionVolume = volume;
+                auctionBuySurplus = demand - volume;
+                auctionSellSurplus = supply - volume;
+                bestSurplus = surplus;
             }
         }
-        return false;
-    }
-
-    // Cancel a sell order and release reserved stock (only for limit orders)
-    public synchronized boolean cancelSellOrder(int orderId) {
-        // Check regular sell orders
-        synchronized(sellOrders) {
-            Iterator<Order> iterator = sellOrders.iterator();
-            while (iterator.hasNext()) {
-                Order order = iterator.next();
-                if (order != null && order.getId() == orderId) {
-                    if (order.getSide() == Order.Side.LIMIT) {
-                        // Only release reserved stock if it's not a short sell
-                        Portfolio portfolio = order.getUser_portfolio();
-                        int availableStock = portfolio.getAvailableStock(order.getStockSymbol());
-
-                        // If the order quantity is less than or equal to available stock,
-                        // it means we reserved stock for this order
-                        if (order.getQuantity() <= availableStock + portfolio.getReservedStock().getOrDefault(order.getStockSymbol(), 0)) {
-                            portfolio.releaseReservedStock(order.getStockSymbol(), order.getQuantity());
-                        }
-                    }
-                    iterator.remove();
-                    return true;
-                }
+    }
+
+    private void publishAuctionQuote() {
+        long now = Clock.current().currentTimeMillis();
+        if (auctionQuote != null && now - lastAuctionQuoteMillis < auctionQuoteIntervalMillis) {
+            return;
+        }
+        lastAuctionQuoteMillis = now;
+        computeAuction();
+        AuctionQuote previous = auctionQuote;
+        if (previous == null || !previous.sameAs(auctionPrice, auctionVolume, auctionBuySurplus, auctionSellSurplus)) {
+            auctionQuote = new AuctionQuote(symbol, ++auctionSequence, auctionPrice, toPrice(auctionPrice),
+                    auctionVolume, auctionBuySurplus, auctionSellSurplus);
+            marketData.auctionQuoteChanged(auctionQuote);
+        }
+    }
+
+    // Execution reports; free when no stream is attached
+    private void report(ExecutionReport.Type type, Order order, boolean shortSell) {
+        if (type == ExecutionReport.Type.ACCEPTED) {
+            metrics.acknowledged(order, false);
+        }
+        ExecutionReportStream reports = executionReports;
+        if (reports != null) {
+            double price = order.getSide() == Order.Side.MARKET ? 0 : order.getPrice();
+            reports.publish(type, symbol, order, order.getQuantity(), price, 0, shortSell, null);
+        }
+    }
+
+    private void reject(Order order, String reason) {
+        metrics.acknowledged(order, true);
+        ExecutionReportStream reports = executionReports;
+        if (reports != null) {
+            reports.publish(ExecutionReport.Type.REJECTED, symbol, order, order.getQuantity(),
+                    order.getPrice(), 0, false, reason);
+        }
+    }
+
+    private void reportTrigger(Order stopOrder) {
+        ExecutionReportStream reports = executionReports;
+        if (reports != null) {
+            reports.publish(ExecutionReport.Type.STOP_TRIGGERED, symbol, stopOrder, stopOrder.getQuantity(),
+                    toPrice(currentPrice), 0, false, null);
+        }
+    }
+
+    // Report a fill of 'order' against 'counter'; call after the order's quantity was reduced
+    private void reportFill(Order order, Order counter, int quantity, long priceTicks, boolean shortSell) {
+        metrics.filled(order);
+        OrderJournal journal = this.journal;
+        if (journal != null && order.getType() == Order.Type.BUY) {
+            // Once per match: each fill is reported for the buy side and the sell side
+            journal.fill(journalSymbolId, order.getId(), counter.getId(), quantity, priceTicks);
+        }
+        ExecutionReportStream reports = executionReports;
+        if (reports != null) {
+            ExecutionReport.Type type = order.getQuantity() == 0
+                    ? ExecutionReport.Type.FILLED : ExecutionReport.Type.PARTIALLY_FILLED;
+            reports.publish(type, symbol, order, quantity, toPrice(priceTicks), counter.getId(), shortSell, null);
+        }
+    }
+
+    // Cancel any resting order or stop by id, whichever side it is on
+    public boolean cancel(int orderId) {
+        return cancel(orderId, null);
+    }
+
+    // Cancel a buy order and release reserved cash (only for limit orders)
+    public boolean cancelBuyOrder(int orderId) {
+        return cancel(orderId, Order.Type.BUY);
+    }
+
+    // Cancel a sell order and release reserved stock
+    public boolean cancelSellOrder(int orderId) {
+        return cancel(orderId, Order.Type.SELL);
+    }
+
+    private boolean cancel(int orderId, Order.Type type) {
+        MatchingEngine engine = this.engine;
+        if (engine != null && !engine.isEngineThread()) {
+            // Keep the synchronous contract by waiting for the engine to answer
+            return engine.cancelAsync(this, orderId, type).join();
+        }
+        long submitNanos = System.nanoTime();
+        synchronized (this) {
+            return applyCancel(orderId, type, submitNanos);
+        }
+    }
+
+    // Cancel by id, optionally only if the order is on the given side
+    boolean applyCancel(int orderId, Order.Type type) {
+        return applyCancel(orderId, type, System.nanoTime());
+    }
+
+    boolean applyCancel(int orderId, Order.Type type, long submitNanos) {
+        Order order = orderIndex.get(orderId);
+        if (order == null || (type != null && order.getType() != type)) {
+            return false;
+        }
+        OrderJournal journal = this.journal;
+        if (journal != null) {
+            journal.cancel(journalSymbolId, orderId, type);
+        }
+        if (order.getType() == Order.Type.BUY) {
+            cancelBuy(order);
+        } else {
+            cancelSell(order);
+        }
+        report(ExecutionReport.Type.CANCELLED, order, false);
+        metrics.cancelled(submitNanos);
+        retire(order);
+        endCommand();
+        return true;
+    }
+
+    /**
+     * Change the price and/or quantity of a resting limit order in one step.
+     * A pure size-down keeps the order's queue priority; any price change or
+     * size-up moves it to the back of its (new) level and may trade. Reserved
+     * cash or stock is adjusted by the difference only.
+     */
+    public boolean modifyOrder(int orderId, double newPrice, int newQuantity) {
+        MatchingEngine engine = this.engine;
+        if (engine != null && !engine.isEngineThread()) {
+            return engine.modifyAsync(this, orderId, newPrice, newQuantity).join();
+        }
+        synchronized (this) {
+            return applyModify(orderId, newPrice, newQuantity);
+        }
+    }
+
+    /**
+     * Record a trade that printed elsewhere, e.g. from historical market data.
+     * The last price, candles and market data move as for a local trade and
+     * stops can trigger, but no resting order is touched.
+     */
+    public void recordTrade(double price, int quantity) {
+        MatchingEngine engine = this.engine;
+        if (engine != null && !engine.isEngineThread()) {
+            engine.recordTrade(this, price, quantity);
+            return;
+        }
+        synchronized (this) {
+            applyTrade(price, quantity);
+        }
+    }
+
+    boolean applyTrade(double price, int quantity) {
+        long ticks = toTicks(price);
+        if (ticks <= 0 || quantity <= 0) {
+            return false;
+        }
+        OrderJournal journal = this.journal;
+        if (journal != null) {
+            journal.trade(journalSymbolId, price, quantity);
+        }
+        onTradeExecuted(ticks, quantity);
+        endCommand();
+        return true;
+    }
+
+    boolean applyModify(int orderId, double newPrice, int newQuantity) {
+        Order order = orderIndex.get(orderId);
+        if (order == null || order.getSide() != Order.Side.LIMIT || newQuantity <= 0) {
+            return false;
+        }
+        long newTicks = toTicks(newPrice);
+        if (newTicks <= 0) {
+            return false;
+        }
+        OrderJournal journal = this.journal;
+        if (journal != null) {
+            journal.modify(journalSymbolId, orderId, newPrice, newQuantity);
+        }
+
+        long oldTicks = order.getPriceTicks();
+        int oldQuantity = order.getQuantity();
+        boolean buy = order.getType() == Order.Type.BUY;
+        if (buy ? !adjustReservedCash(order, newTicks, newQuantity) : !adjustReservedStock(order, newQuantity)) {
+            return false;
+        }
+
+        BookSide side = buy ? buyOrders : sellOrders;
+        if (newTicks == oldTicks && newQuantity <= oldQuantity) {
+            if (newQuantity < oldQuantity) {
+                side.reduce(order, oldQuantity - newQuantity);
             }
+            report(ExecutionReport.Type.MODIFIED, order, false);
+        } else {
+            side.remove(order);
+            order.setQuantity(newQuantity);
+            order.setPriceTicks(newTicks, toPrice(newTicks));
+            side.add(order);
+            report(ExecutionReport.Type.MODIFIED, order, false);
+            matchOrders();
         }
+        endCommand();
+        return true;
+    }
 
-        // Check sell stop orders
-        synchronized(sellStops) {
-            Iterator<Order> iterator = sellStops.iterator();
-            while (iterator.hasNext()) {
-                Order order = iterator.next();
-                if (order != null && order.getId() == orderId) {
-                    if (order.getSide() == Order.Side.STOP) {
-                        // Release reserved stock for stop orders
-                        Portfolio portfolio = order.getUser_portfolio();
-                        int availableStock = portfolio.getAvailableStock(order.getStockSymbol());
-
-                        if (order.getQuantity() <= availableStock + portfolio.getReservedStock().getOrDefault(order.getStockSymbol(), 0)) {
-                            portfolio.releaseReservedStock(order.getStockSymbol(), order.getQuantity());
-                        }
-                    }
-                    iterator.remove();
-                    return true;
-                }
+    // Reserve or release only the difference between the old and new cost of a buy
+    private boolean adjustReservedCash(Order order, long newTicks, int newQuantity) {
+        long delta = newQuantity * toCents(newTicks) - order.getQuantity() * toCents(order.getPriceTicks());
+        Portfolio portfolio = order.getUser_portfolio();
+        if (delta > 0) {
+            return portfolio.reserveCash(delta);
+        }
+        portfolio.releaseReservedCash(-delta);
+        return true;
+    }
+
+    // Reserve or release only the difference in shares; an increase that cannot be
+    // covered goes short, like a new sell order would
+    private boolean adjustReservedStock(Order order, int newQuantity) {
+        int delta = newQuantity - order.getQuantity();
+        Portfolio portfolio = order.getUser_portfolio();
+        if (delta > 0) {
+            if (portfolio.getAvailableStock(symbolId) >= delta && portfolio.reserveStock(symbolId, delta)) {
+                order.reservedStock += delta;
             }
+        } else if (order.reservedStock > newQuantity) {
+            portfolio.releaseReservedStock(symbolId, order.reservedStock - newQuantity);
+            order.reservedStock = newQuantity;
+        }
+        return true;
+    }
+
+    // Cancel orderId and place the replacement; nothing is placed if the cancel fails
+    boolean applyReplace(int orderId, Order replacement) {
+        Order target = orderIndex.get(orderId);
+        if (target == null || target.getType() != replacement.getType()) {
+            reject(replacement, "Order " + orderId + " not found for replace");
+            finishCommand(replacement, false);
+            return false;
+        }
+        applyCancel(orderId, replacement.getType());
+        return apply(replacement);
+    }
+
+    /**
+     * Apply a batch of new, cancel and replace commands in order while holding
+     * the book once, instead of once per command. Results are written back into
+     * the batch; returns the number of commands that succeeded.
+     */
+    public int submitBatch(OrderBatch batch) {
+        MatchingEngine engine = this.engine;
+        if (engine != null && !engine.isEngineThread()) {
+            return engine.submitBatchAsync(this, batch).join().getSuccessCount();
+        }
+        synchronized (this) {
+            return batch.applyTo(this);
+        }
+    }
+
+    // Rejected and market orders are done once their command finishes; resting orders
+    // are retired as they fill or are cancelled
+    private void finishCommand(Order order, boolean accepted) {
+        if (!accepted || order.getSide() == Order.Side.MARKET) {
+            retire(order);
+        }
+        endCommand();
+    }
+
+    // Queue a finished order for recycling; released only when the whole command is
+    // done so nothing later in the same command can see it reused. Every path that
+    // finishes a sell order has given back its reservation by now.
+    private void retire(Order order) {
+        assert order.reservedStock == 0 : "Order " + order.getId() + " retired with " + order.reservedStock + " shares reserved";
+        if (order.pooled) {
+            retired.add(order);
+        }
+    }
+
+    // Every command ends here: run any stops its trades triggered, recycle finished orders,
+    // then publish the new top of book
+    // and, during an auction, the new indicative quote
+    private void endCommand() {
+        checkStopOrders();
+        releaseRetired();
+        publishTopOfBook();
+        Leaderboard leaderboard = this.leaderboard;
+        if (leaderboard != null && currentPrice != markedPrice) {
+            markedPrice = currentPrice;
+            leaderboard.mark(symbolId, toCents(markedPrice));
+        }
+        if (auction) {
+            publishAuctionQuote();
+        }
+    }
+
+    private void publishTopOfBook() {
+        PriceLevel bid = buyOrders.bestLevel();
+        PriceLevel ask = sellOrders.bestLevel();
+        long bidTicks = bid != null ? bid.getPrice() : 0;
+        long bidSize = bid != null ? bid.getTotalQuantity() : 0;
+        long askTicks = ask != null ? ask.getPrice() : 0;
+        long askSize = ask != null ? ask.getTotalQuantity() : 0;
+        TopOfBook previous = topOfBook;
+        if (!previous.sameAs(bidTicks, bidSize, askTicks, askSize, lastTradePrice)) {
+            topOfBook = new TopOfBook(symbol, previous.getSequence() + 1, bidTicks, toPrice(bidTicks), bidSize,
+                    askTicks, toPrice(askTicks), askSize, lastTradePrice, toPrice(lastTradePrice));
+            marketData.topOfBookChanged(topOfBook);
+        }
+    }
+
+    private void releaseRetired() {
+        for (int i = 0; i < retired.size(); i++) {
+            orderPool.release(retired.get(i));
+        }
+        retired.clear();
+    }
+
+    // Take an order from this book's pool; see OrderPool for the ownership rules
+    public Order createOrder(Order.Type type, Order.Side side, int quantity, double price, Portfolio portfolio) {
+        return orderPool.acquire(symbolId, type, side, quantity, price, portfolio);
+    }
+
+    // Whether the order still rests in the book, as a limit order or a stop
+    public synchronized boolean isResting(int orderId) {
+        return orderIndex.get(orderId) != null;
+    }
+
+    public OrderPool getOrderPool() {
+        return orderPool;
+    }
+
+    private void cancelBuy(Order order) {
+        if (order.getSide() == Order.Side.STOP) {
+            buyStops.remove(order);
+            return;
+        }
+
+        // Release reserved cash and unlink the order from its price level
+        long reservedCash = order.getQuantity() * toCents(order.getPriceTicks());
+        order.getUser_portfolio().releaseReservedCash(reservedCash);
+        buyOrders.remove(order);
+    }
+
+    private void cancelSell(Order order) {
+        releaseReservedStock(order);
+
+        if (order.getSide() == Order.Side.STOP) {
+            sellStops.remove(order);
+        } else {
+            sellOrders.remove(order);
+        }
+    }
+
+    // Give back only what this sell order still has reserved; a short sell reserved nothing
+    private void releaseReservedStock(Order order) {
+        if (order.reservedStock > 0) {
+            order.getUser_portfolio().releaseReservedStock(symbolId, order.reservedStock);
+            order.reservedStock = 0;
         }
-        return false;
     }
 
     // Get the best bid (highest buy price)
     public Double getBestBid() {
-        synchronized(buyOrders) {
-            for (Order order : buyOrders) {
-                if (order != null) {
-                    return order.getPrice();
-                }
-            }
-            return null;
-        }
+        TopOfBook top = topOfBook;
+        return top.hasBid() ? top.getBidPrice() : null;
     }
 
     // Get the best ask (lowest sell price)
     public Double getBestAsk() {
-        synchronized(sellOrders) {
-            for (Order order : sellOrders) {
-                if (order != null) {
-                    return order.getPrice();
-                }
-            }
-            return null;
-        }
+        TopOfBook top = topOfBook;
+        return top.hasAsk() ? top.getAskPrice() : null;
     }
 
     // Get the bid-ask spread
     public Double getSpread() {
-        Double bid = getBestBid();
-        Double ask = getBestAsk();
-        return (bid != null && ask != null) ? ask - bid : null;
+        TopOfBook top = topOfBook;
+        return (top.hasBid() && top.hasAsk()) ? toPrice(top.askTicks - top.bidTicks) : null;
+    }
+
+    // Counters, gauges and latency histograms for this book
+    public BookMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Latest best bid/offer and last trade, readable from any thread without
+     * locking. Fields of one snapshot are always consistent with each other.
+     */
+    public TopOfBook getTopOfBook() {
+        return topOfBook;
     }
 
     // Public methods to access candle data
@@ -556,28 +1089,20 @@ public class OrderBook {
     }
 
     // Getter methods for monitoring
-    public List<Order> getBuyOrders() {
-        synchronized(buyOrders) {
-            return buyOrders.stream().filter(order -> order != null).collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
-        }
+    public synchronized List<Order> getBuyOrders() {
+        return buyOrders.toList();
     }
 
-    public List<Order> getSellOrders() {
-        synchronized(sellOrders) {
-            return sellOrders.stream().filter(order -> order != null).collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
-        }
+    public synchronized List<Order> getSellOrders() {
+        return sellOrders.toList();
     }
 
-    public List<Order> getBuyStops() {
-        synchronized(buyStops) {
-            return buyStops.stream().filter(order -> order != null).collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
-        }
+    public synchronized List<Order> getBuyStops() {
+        return buyStops.toList();
     }
 
-    public List<Order> getSellStops() {
-        synchronized(sellStops) {
-            return sellStops.stream().filter(order -> order != null).collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
-        }
+    public synchronized List<Order> getSellStops() {
+        return sellStops.toList();
     }
 
     public String getSymbol() {
@@ -585,74 +1110,190 @@ public class OrderBook {
     }
 
     public double getCurrentPrice() {
-        return currentPrice;
+        return toPrice(currentPrice);
     }
 
     public double getLastTradePrice() {
+        return topOfBook.getLastPrice();
+    }
+
+    long getTickCents() {
+        return tickCents;
+    }
+
+    // Prices in ticks for Snapshotter; the caller holds the book
+    long getCurrentPriceTicks() {
+        return currentPrice;
+    }
+
+    long getLastTradeTicks() {
         return lastTradePrice;
     }
 
+    /**
+     * Load resting orders and stops from a snapshot, each list in priority
+     * order. The orders' reservations are already part of the restored
+     * portfolios, so nothing is reserved again.
+     */
+    synchronized void restore(long currentPriceTicks, long lastTradeTicks, boolean inAuction, List<Order> buys,
+                              List<Order> sells, List<Order> buyStopOrders, List<Order> sellStopOrders) {
+        if (orderIndex.size() > 0) {
+            throw new IllegalStateException("Order book " + symbol + " already has orders");
+        }
+        this.currentPrice = currentPriceTicks;
+        this.lastTradePrice = lastTradeTicks;
+        for (Order order : buys) buyOrders.add(order);
+        for (Order order : sells) sellOrders.add(order);
+        for (Order order : buyStopOrders) buyStops.add(order);
+        for (Order order : sellStopOrders) sellStops.add(order);
+        this.auction = inAuction;
+        endCommand();
+    }
+
+    public double getTickSize() {
+        return Money.toDollars(tickCents);
+    }
+
     public synchronized void setCurrentPrice(double price) {
-        this.currentPrice = price;
+        this.currentPrice = toTicks(price);
         // Don't update candles here - only update on actual trades
     }
 
-    // Static method to get the candle manager (for global access)
+    // Hand all writes to a single-writer engine; direct calls are routed through it from now on
+    synchronized void attachEngine(MatchingEngine engine) {
+        if (this.engine != null && engine != null) {
+            throw new IllegalStateException("Order book " + symbol + " already has an engine");
+        }
+        this.engine = engine;
+    }
+
+    // Publish order lifecycle events to the given stream, or stop publishing with null
+    public void setExecutionReportStream(ExecutionReportStream executionReports) {
+        this.executionReports = executionReports;
+    }
+
+    /**
+     * Journal every command and fill from now on, or stop with null. Attach
+     * after recovering the book from the journal, never before.
+     */
+    public synchronized void setJournal(OrderJournal journal) {
+        if (journal != null) {
+            journalSymbolId = journal.register(this);
+        }
+        this.journal = journal;
+    }
+
+    public OrderJournal getJournal() {
+        return journal;
+    }
+
+    // Mark holders of this symbol on the leaderboard after every price change, or stop with null
+    public synchronized void setLeaderboard(Leaderboard leaderboard) {
+        if (leaderboard != null) {
+            markedPrice = currentPrice;
+            leaderboard.mark(symbolId, toCents(markedPrice));
+        }
+        this.leaderboard = leaderboard;
+    }
+
+    public Leaderboard getLeaderboard() {
+        return leaderboard;
+    }
+
+    public ExecutionReportStream getExecutionReportStream() {
+        return executionReports;
+    }
+
+    // Static method to get the shared candle manager used by books created outside an Exchange
     public static CandleManager getCandleManager() {
+        return defaultCandleManager;
+    }
+
+    // The candle manager this book reports its trades to
+    public CandleManager getBookCandleManager() {
         return candleManager;
     }
 
+    // Aggregated depth of the top levels on each side
+    public synchronized DepthSnapshot getDepthSnapshot(int levels) {
+        int bidLevels = Math.min(levels, buyOrders.getLevelCount());
+        int askLevels = Math.min(levels, sellOrders.getLevelCount());
+        double[] bidPrices = new double[bidLevels];
+        long[] bidQuantities = new long[bidLevels];
+        int[] bidOrders = new int[bidLevels];
+        double[] askPrices = new double[askLevels];
+        long[] askQuantities = new long[askLevels];
+        int[] askOrders = new int[askLevels];
+
+        int i = 0;
+        for (PriceLevel level : buyOrders.levels()) {
+            if (i == bidLevels) break;
+            bidPrices[i] = toPrice(level.getPrice());
+            bidQuantities[i] = level.getTotalQuantity();
+            bidOrders[i++] = level.getOrderCount();
+        }
+        i = 0;
+        for (PriceLevel level : sellOrders.levels()) {
+            if (i == askLevels) break;
+            askPrices[i] = toPrice(level.getPrice());
+            askQuantities[i] = level.getTotalQuantity();
+            askOrders[i++] = level.getOrderCount();
+        }
+        return new DepthSnapshot(symbol, depthPublisher.getSequence(), bidPrices, bidQuantities, bidOrders,
+                askPrices, askQuantities, askOrders);
+    }
+
+    // Subscribe to the full-depth snapshot followed by incremental level updates, delivered on the executor
+    public synchronized DepthSubscription subscribeDepth(DepthListener listener, Executor executor) {
+        return depthPublisher.subscribe(listener, executor, getDepthSnapshot(Integer.MAX_VALUE));
+    }
+
+    /**
+     * Subscribe to trades, top-of-book changes and candle closes, delivered on
+     * the executor. The current top of book is sent first. With coalesce set, a
+     * slow subscriber only gets the latest trade and top of book.
+     */
+    public synchronized MarketDataSubscription subscribeMarketData(MarketDataListener listener, Executor executor,
+                                                                   boolean coalesce) {
+        return marketData.subscribe(listener, executor, coalesce, topOfBook);
+    }
+
+    public MarketDataSubscription subscribeMarketData(MarketDataListener listener, Executor executor) {
+        return subscribeMarketData(listener, executor, false);
+    }
+
     // Method to get market depth
-    public String getMarketDepth(int levels) {
+    public synchronized String getMarketDepth(int levels) {
+        DepthSnapshot snapshot = getDepthSnapshot(levels);
         StringBuilder depth = new StringBuilder();
         depth.append("Market Depth for ").append(symbol).append(":\n");
-        depth.append("Current Price: $").append(String.format("%.2f", currentPrice)).append("\n");
-        depth.append("Last Trade: $").append(String.format("%.2f", lastTradePrice)).append("\n\n");
+        depth.append("Current Price: $").append(String.format("%.2f", toPrice(currentPrice))).append("\n");
+        depth.append("Last Trade: $").append(String.format("%.2f", toPrice(lastTradePrice))).append("\n\n");
 
         depth.append("ASKS (Sell Orders):\n");
-        synchronized(sellOrders) {
-            int count = 0;
-            for (int i = Math.min(levels, sellOrders.size()) - 1; i >= 0 && count < levels; i--) {
-                Order order = sellOrders.get(i);
-                if (order != null) {
-                    depth.append(String.format("$%.2f - %d shares\n", order.getPrice(), order.getQuantity()));
-                    count++;
-                }
-            }
+        for (int i = snapshot.getAskLevels() - 1; i >= 0; i--) {
+            depth.append(String.format("$%.2f - %d shares (%d orders)\n", snapshot.getAskPrice(i),
+                    snapshot.getAskQuantity(i), snapshot.getAskOrderCount(i)));
         }
 
         depth.append("\nBIDS (Buy Orders):\n");
-        synchronized(buyOrders) {
-            int count = 0;
-            for (int i = 0; i < buyOrders.size() && count < levels; i++) {
-                Order order = buyOrders.get(i);
-                if (order != null) {
-                    depth.append(String.format("$%.2f - %d shares\n", order.getPrice(), order.getQuantity()));
-                    count++;
-                }
-            }
+        for (int i = 0; i < snapshot.getBidLevels(); i++) {
+            depth.append(String.format("$%.2f - %d shares (%d orders)\n", snapshot.getBidPrice(i),
+                    snapshot.getBidQuantity(i), snapshot.getBidOrderCount(i)));
         }
 
         return depth.toString();
     }
 
     // Method to get order book statistics
-    public String getOrderBookStats() {
+    public synchronized String getOrderBookStats() {
         StringBuilder stats = new StringBuilder();
         stats.append("Order Book Statistics for ").append(symbol).append(":\n");
 
-        synchronized(buyOrders) {
-            stats.append("Buy Orders: ").append(buyOrders.stream().mapToInt(order -> order != null ? 1 : 0).sum()).append("\n");
-        }
-        synchronized(sellOrders) {
-            stats.append("Sell Orders: ").append(sellOrders.stream().mapToInt(order -> order != null ? 1 : 0).sum()).append("\n");
-        }
-        synchronized(buyStops) {
-            stats.append("Buy Stop Orders: ").append(buyStops.stream().mapToInt(order -> order != null ? 1 : 0).sum()).append("\n");
-        }
-        synchronized(sellStops) {
-            stats.append("Sell Stop Orders: ").append(sellStops.stream().mapToInt(order -> order != null ? 1 : 0).sum()).append("\n");
-        }
+        stats.append("Buy Orders: ").append(buyOrders.getOrderCount()).append("\n");
+        stats.append("Sell Orders: ").append(sellOrders.getOrderCount()).append("\n");
+        stats.append("Buy Stop Orders: ").append(buyStops.getOrderCount()).append("\n");
+        stats.append("Sell Stop Orders: ").append(sellStops.getOrderCount()).append("\n");
 
         Double spread = getSpread();
         if (spread != null) {
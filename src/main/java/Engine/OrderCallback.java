@@ -0,0 +1,10 @@
+package Engine;
+
+/**
+ * Completion callback for commands submitted to a MatchingEngine. Runs on the
+ * engine thread, so implementations should return quickly and never block.
+ */
+@FunctionalInterface
+public interface OrderCallback {
+    void onComplete(int orderId, boolean success);
+}
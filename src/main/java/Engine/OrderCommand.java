@@ -0,0 +1,36 @@
+package Engine;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Pre-allocated, reusable ring buffer slot describing one engine command
+ */
+final class OrderCommand {
+    enum Kind { PLACE, CANCEL, MODIFY, TRADE, BATCH, AUCTION, UNCROSS }
+
+    Kind kind;
+    OrderBook book;
+    Order order;          // PLACE
+    int orderId;          // CANCEL, MODIFY
+    double price;         // MODIFY, TRADE
+    int quantity;         // MODIFY, TRADE
+    Order.Type cancelType; // CANCEL, null for either side
+    OrderBatch batch;      // BATCH
+    CompletableFuture<OrderBatch> batchResult; // BATCH
+    CompletableFuture<AuctionQuote> uncrossResult; // UNCROSS
+    OrderCallback callback;
+    CompletableFuture<Boolean> result; // Async PLACE, CANCEL, MODIFY and AUCTION, instead of a callback
+    long submitNanos;     // CANCEL, for cancel-to-ack latency
+
+    void clear() {
+        kind = null;
+        book = null;
+        order = null;
+        cancelType = null;
+        batch = null;
+        batchResult = null;
+        uncrossResult = null;
+        callback = null;
+        result = null;
+    }
+}
@@ -0,0 +1,38 @@
+package Engine;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Source of order ids. Safe to call from any number of threads; ids are
+ * unique and increase in the order they are handed out.
+ *
+ * Orders normally draw from the process-wide global() sequence. A book can
+ * be given its own sequence instead, e.g. a backtest that wants the same ids
+ * on every run without touching the ids of live books.
+ */
+public final class OrderIdSequencer {
+    private static final OrderIdSequencer GLOBAL = new OrderIdSequencer();
+
+    private final AtomicInteger nextId = new AtomicInteger(1);
+
+    // A fresh sequence starting at 1
+    public OrderIdSequencer() {}
+
+    public static OrderIdSequencer global() {
+        return GLOBAL;
+    }
+
+    public int next() {
+        return nextId.getAndIncrement();
+    }
+
+    // The id the next call to next() will return
+    public int peek() {
+        return nextId.get();
+    }
+
+    // Make sure future ids are at least 'id', e.g. after restoring orders created earlier
+    public void advanceTo(int id) {
+        nextId.accumulateAndGet(id, Math::max);
+    }
+}
@@ -0,0 +1,393 @@
+package Engine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32C;
+
+import Banking.Portfolio;
+import Banking.Position;
+import Sim.Clock;
+
+/**
+ * Append-only, memory-mapped journal of every command applied to the
+ * attached books (place, cancel, modify, external trade, auction start and
+ * uncross) and every fill.
+ * JournalRecovery rebuilds books and portfolios from it after a restart.
+ *
+ * Matching threads only copy a command into a pre-allocated ring slot; a
+ * writer thread encodes the slots into the mapped file and forces them to
+ * disk every syncEveryRecords records or syncIntervalMillis milliseconds,
+ * whichever comes first. A crash can lose at most the records written since
+ * the last sync, and always leaves a journal that is readable up to there.
+ * sync() waits until everything journaled so far is on disk.
+ *
+ * The file is mapped in fixed regions and grows one region at a time;
+ * reopening an existing journal appends after its last intact record.
+ * Portfolio ids are unique across the whole file, so after a restart
+ * resume() lets the recovered portfolios keep theirs.
+ * Records queue in the ring until start() (or the first book attached with
+ * OrderBook.setJournal) starts the writer.
+ */
+public class OrderJournal implements Closeable, RingBuffer.Handler<JournalRecord> {
+    private static final int DEFAULT_CAPACITY = 1 << 16;
+    private static final int DEFAULT_SYNC_EVERY_RECORDS = 4096;
+    private static final long DEFAULT_SYNC_INTERVAL_MILLIS = 10;
+    private static final long REGION_BYTES = 64L << 20;
+    private static final int BATCH_SIZE = 256;
+    private static final long PARK_NANOS = 50_000;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final RingBuffer<JournalRecord> ring;
+    private final int syncEveryRecords;
+    private final long syncIntervalNanos;
+    private Thread writer; // Created by start
+    private volatile boolean running = true;
+    private boolean closed;
+
+    // Ids used in place of symbols and portfolios on disk; recovery maps them back.
+    // Symbol ids start again with each opening of the file, portfolio ids carry on.
+    private final AtomicInteger nextSymbolId = new AtomicInteger(1);
+    private final AtomicInteger nextPortfolioId = new AtomicInteger(1);
+    private final Map<Portfolio, Integer> portfolioIds = new ConcurrentHashMap<>();
+    private final Map<OrderBook, Integer> symbolIds = new ConcurrentHashMap<>();
+
+    // Writer thread only
+    private MappedByteBuffer region;
+    private long regionStart;     // File offset of the mapped region
+    private long position;        // File offset of the next record
+    private long syncedPosition;  // Everything before this is on disk
+    private long unsyncedRecords;
+    private long lastSyncNanos;
+    private volatile long recordsWritten;
+    private ByteBuffer scratch = ByteBuffer.allocate(256).order(ByteOrder.LITTLE_ENDIAN);
+    private final CRC32C crc = new CRC32C();
+
+    public OrderJournal(Path path) throws IOException {
+        this(path, DEFAULT_SYNC_EVERY_RECORDS, DEFAULT_SYNC_INTERVAL_MILLIS);
+    }
+
+    // Either limit can be 0 to disable it; with both 0 only sync() and close() force the file
+    public OrderJournal(Path path, int syncEveryRecords, long syncIntervalMillis) throws IOException {
+        this(path, syncEveryRecords, syncIntervalMillis, DEFAULT_CAPACITY);
+    }
+
+    public OrderJournal(Path path, int syncEveryRecords, long syncIntervalMillis, int capacity) throws IOException {
+        if (syncEveryRecords < 0 || syncIntervalMillis < 0) {
+            throw new IllegalArgumentException("Sync limits must not be negative");
+        }
+        this.path = path;
+        this.syncEveryRecords = syncEveryRecords;
+        this.syncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(syncIntervalMillis);
+        this.ring = new RingBuffer<>(capacity, JournalRecord::new);
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            this.position = JournalReader.endOfRecords(channel, record -> {
+                if (record.type == JournalRecord.Type.PORTFOLIO && record.counterId >= nextPortfolioId.get()) {
+                    nextPortfolioId.set(record.counterId + 1);
+                }
+            });
+            this.syncedPosition = position;
+            mapRegion(position);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        this.lastSyncNanos = System.nanoTime();
+    }
+
+    // Start writing queued records to the file; later calls do nothing
+    public synchronized void start() {
+        if (writer != null || closed) {
+            return;
+        }
+        writer = new Thread(this::run, "order-journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    // Records encoded into the file by this instance so far
+    public long getRecordsWritten() {
+        return recordsWritten;
+    }
+
+    public long getBacklog() {
+        return ring.backlog();
+    }
+
+    // Wait until every record journaled before this call is on disk
+    public void sync() {
+        checkpoint().join();
+    }
+
+    /**
+     * Mark the current end of the journal. The future completes with the file
+     * offset just past every record journaled before this call, once they are
+     * on disk. Called with every journaled book held, the offset splits the
+     * journal exactly at that point in time.
+     */
+    CompletableFuture<Long> checkpoint() {
+        CompletableFuture<Long> done = new CompletableFuture<>();
+        long sequence = ring.claim();
+        JournalRecord record = ring.get(sequence);
+        record.type = JournalRecord.Type.SYNC;
+        record.onSynced = done::complete;
+        ring.publish(sequence);
+        return done;
+    }
+
+    /**
+     * Carry on journaling the portfolios a recovery of this file rebuilt
+     * under the ids they already have, instead of journaling them again as
+     * new portfolios. Call before any of them places an order.
+     */
+    public void resume(JournalRecovery recovery) {
+        if (!path.toAbsolutePath().normalize().equals(recovery.getJournal().toAbsolutePath().normalize())) {
+            throw new IllegalArgumentException("Recovered from " + recovery.getJournal() + ", not " + path);
+        }
+        portfolioIds.putAll(recovery.getPortfolioIds());
+    }
+
+    // Journal ids of the portfolios seen so far
+    Map<Portfolio, Integer> getPortfolioIds() {
+        return new HashMap<>(portfolioIds);
+    }
+
+    // Every book registered so far, including any that stopped journaling since
+    Set<OrderBook> getBooks() {
+        return new HashSet<>(symbolIds.keySet());
+    }
+
+    // Write everything still queued, force it to disk and trim the unused tail of the file
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        running = false;
+        if (writer != null) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        } else {
+            while (ring.hasPending()) {
+                ring.drain(this, BATCH_SIZE);
+            }
+        }
+        force();
+        region = null;
+        channel.truncate(position);
+        channel.force(true);
+        channel.close();
+    }
+
+    // Called when a book starts journaling; returns the id its records carry
+    int register(OrderBook book) {
+        start();
+        int symbolId = nextSymbolId.getAndIncrement();
+        // Recorded before the record is claimed, so a checkpoint claimed later sees the book
+        symbolIds.put(book, symbolId);
+        long sequence = ring.claim();
+        JournalRecord record = ring.get(sequence);
+        record.type = JournalRecord.Type.SYMBOL;
+        record.symbolId = symbolId;
+        record.amount = book.getTickCents();
+        record.priceTicks = book.toTicks(book.getCurrentPrice());
+        record.text = book.getSymbol();
+        ring.publish(sequence);
+        return symbolId;
+    }
+
+    void place(int symbolId, Order order) {
+        int portfolioId = portfolioId(order.getUser_portfolio());
+        long sequence = ring.claim();
+        JournalRecord record = ring.get(sequence);
+        record.type = JournalRecord.Type.PLACE;
+        record.timestamp = Clock.current().currentTimeMillis();
+        record.symbolId = symbolId;
+        record.orderId = order.getId();
+        record.counterId = portfolioId;
+        record.orderType = order.getType();
+        record.orderSide = order.getSide();
+        record.quantity = order.getQuantity();
+        record.price = order.getPrice();
+        ring.publish(sequence);
+    }
+
+    void cancel(int symbolId, int orderId, Order.Type type) {
+        long sequence = ring.claim();
+        JournalRecord record = ring.get(sequence);
+        record.type = JournalRecord.Type.CANCEL;
+        record.timestamp = Clock.current().currentTimeMillis();
+        record.symbolId = symbolId;
+        record.orderId = orderId;
+        record.orderType = type;
+        ring.publish(sequence);
+    }
+
+    void modify(int symbolId, int orderId, double price, int quantity) {
+        long sequence = ring.claim();
+        JournalRecord record = ring.get(sequence);
+        record.type = JournalRecord.Type.MODIFY;
+        record.timestamp = Clock.current().currentTimeMillis();
+        record.symbolId = symbolId;
+        record.orderId = orderId;
+        record.price = price;
+        record.quantity = quantity;
+        ring.publish(sequence);
+    }
+
+    void trade(int symbolId, double price, int quantity) {
+        long sequence = ring.claim();
+        JournalRecord record = ring.get(sequence);
+        record.type = JournalRecord.Type.TRADE;
+        record.timestamp = Clock.current().currentTimeMillis();
+        record.symbolId = symbolId;
+        record.price = price;
+        record.quantity = quantity;
+        ring.publish(sequence);
+    }
+
+    // Start or end of a call auction
+    void auction(int symbolId, boolean start) {
+        long sequence = ring.claim();
+        JournalRecord record = ring.get(sequence);
+        record.type = start ? JournalRecord.Type.AUCTION : JournalRecord.Type.UNCROSS;
+        record.timestamp = Clock.current().currentTimeMillis();
+        record.symbolId = symbolId;
+        ring.publish(sequence);
+    }
+
+    void fill(int symbolId, int buyOrderId, int sellOrderId, int quantity, long priceTicks) {
+        long sequence = ring.claim();
+        JournalRecord record = ring.get(sequence);
+        record.type = JournalRecord.Type.FILL;
+        record.timestamp = Clock.current().currentTimeMillis();
+        record.symbolId = symbolId;
+        record.orderId = buyOrderId;
+        record.counterId = sellOrderId;
+        record.quantity = quantity;
+        record.amount = priceTicks;
+        ring.publish(sequence);
+    }
+
+    // The first order from a new portfolio journals its name, cash and holdings; recovery starts it from there
+    private int portfolioId(Portfolio portfolio) {
+        Integer id = portfolioIds.get(portfolio);
+        if (id != null) {
+            return id;
+        }
+        return portfolioIds.computeIfAbsent(portfolio, p -> {
+            int portfolioId = nextPortfolioId.getAndIncrement();
+            long sequence = ring.claim();
+            JournalRecord record = ring.get(sequence);
+            record.type = JournalRecord.Type.PORTFOLIO;
+            record.counterId = portfolioId;
+            record.amount = p.getUSDCents() + p.getReservedCashCents();
+            record.text = p.getUsername();
+            ring.publish(sequence);
+            for (Map.Entry<String, Position> holding : p.getStockHoldings().entrySet()) {
+                Position position = holding.getValue();
+                sequence = ring.claim();
+                record = ring.get(sequence);
+                record.type = JournalRecord.Type.HOLDING;
+                record.counterId = portfolioId;
+                record.quantity = position.isShort() ? -position.getQuantity() : position.getQuantity();
+                record.price = position.getPrice();
+                record.text = holding.getKey();
+                ring.publish(sequence);
+            }
+            return portfolioId;
+        });
+    }
+
+    private void run() {
+        try {
+            while (running || ring.hasPending()) {
+                int written = ring.drain(this, BATCH_SIZE);
+                if (syncDue()) {
+                    force();
+                }
+                if (written == 0) {
+                    LockSupport.parkNanos(PARK_NANOS);
+                }
+            }
+        } catch (RuntimeException e) {
+            // Nothing more can be journaled safely: stop consuming, so matching stalls
+            // once the ring fills instead of trading on without a journal
+            System.out.println("Order journal " + path + " failed: " + e.getMessage());
+            running = false;
+        }
+    }
+
+    @Override
+    public void onEntry(JournalRecord record, long sequence) {
+        try {
+            if (record.type == JournalRecord.Type.SYNC) {
+                force();
+                record.onSynced.accept(position);
+                return;
+            }
+            if (scratch.capacity() < record.maxEncodedSize()) {
+                scratch = ByteBuffer.allocate(record.maxEncodedSize() * 2).order(ByteOrder.LITTLE_ENDIAN);
+            }
+            scratch.clear();
+            int length = record.encode(scratch, crc);
+            if (position + length > regionStart + region.capacity()) {
+                force();
+                mapRegion(position);
+            }
+            region.put((int) (position - regionStart), scratch.array(), 0, length);
+            position += length;
+            unsyncedRecords++;
+            recordsWritten++;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            record.clear();
+        }
+    }
+
+    private boolean syncDue() {
+        if (unsyncedRecords == 0) {
+            return false;
+        }
+        return (syncEveryRecords > 0 && unsyncedRecords >= syncEveryRecords)
+                || (syncIntervalNanos > 0 && System.nanoTime() - lastSyncNanos >= syncIntervalNanos);
+    }
+
+    private void force() {
+        if (position > syncedPosition) {
+            region.force((int) (syncedPosition - regionStart), (int) (position - syncedPosition));
+            syncedPosition = position;
+        }
+        unsyncedRecords = 0;
+        lastSyncNanos = System.nanoTime();
+    }
+
+    private void mapRegion(long start) throws IOException {
+        region = channel.map(FileChannel.MapMode.READ_WRITE, start, REGION_BYTES);
+        regionStart = start;
+        syncedPosition = Math.max(syncedPosition, start);
+    }
+}
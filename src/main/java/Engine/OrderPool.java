@@ -0,0 +1,70 @@
+package Engine;
+
+import Banking.Portfolio;
+import Banking.SymbolRegistry;
+
+/**
+ * Recycles Order objects so the steady-state order path allocates nothing.
+ *
+ * Orders handed out here belong to the order book once placed: the book
+ * returns them to the pool when they are fully filled, cancelled or rejected,
+ * after which they are reused under a new id. Callers must therefore keep the
+ * id (read before placing), never the Order reference.
+ */
+public final class OrderPool {
+    private final OrderIdSequencer ids;
+    private final Order[] free;
+    private int size;
+    private long created;
+
+    public OrderPool(int capacity) {
+        this(capacity, OrderIdSequencer.global());
+    }
+
+    // A pool that numbers its orders from 'ids' instead of the global sequence
+    public OrderPool(int capacity, OrderIdSequencer ids) {
+        this.ids = ids;
+        this.free = new Order[capacity];
+    }
+
+    public Order acquire(String stockSymbol, Order.Type type, Order.Side side, int quantity, double price,
+                         Portfolio portfolio) {
+        return acquire(SymbolRegistry.intern(stockSymbol), type, side, quantity, price, portfolio);
+    }
+
+    Order acquire(int symbolId, Order.Type type, Order.Side side, int quantity, double price, Portfolio portfolio) {
+        Order order = null;
+        synchronized (this) {
+            if (size > 0) {
+                order = free[--size];
+                free[size] = null;
+            } else {
+                created++;
+            }
+        }
+        if (order == null) {
+            order = new Order();
+        }
+        order.init(ids.next(), symbolId, type, side, quantity, price, portfolio);
+        order.pooled = true;
+        return order;
+    }
+
+    void release(Order order) {
+        order.clearReferences();
+        synchronized (this) {
+            if (size < free.length) {
+                free[size++] = order;
+            }
+        }
+    }
+
+    public synchronized int getFreeCount() {
+        return size;
+    }
+
+    // Orders this pool had to allocate because none were free
+    public synchronized long getCreatedCount() {
+        return created;
+    }
+}
@@ -0,0 +1,69 @@
+package Engine;
+
+/**
+ * All resting orders at one price, kept as an intrusive FIFO queue so that
+ * appending, popping the head and unlinking any order are O(1)
+ */
+class PriceLevel {
+    private long price; // In ticks
+    private Order head;
+    private Order tail;
+    private int orderCount;
+    private long totalQuantity;
+
+    PriceLevel(long price) {
+        this.price = price;
+    }
+
+    // Reuse an emptied level for another price
+    void reset(long price) {
+        this.price = price;
+        this.head = null;
+        this.tail = null;
+        this.orderCount = 0;
+        this.totalQuantity = 0;
+    }
+
+    void append(Order order) {
+        order.level = this;
+        order.prev = tail;
+        order.next = null;
+        if (tail == null) {
+            head = order;
+        } else {
+            tail.next = order;
+        }
+        tail = order;
+        orderCount++;
+        totalQuantity += order.getQuantity();
+    }
+
+    void remove(Order order) {
+        if (order.prev == null) {
+            head = order.next;
+        } else {
+            order.prev.next = order.next;
+        }
+        if (order.next == null) {
+            tail = order.prev;
+        } else {
+            order.next.prev = order.prev;
+        }
+        totalQuantity -= order.getQuantity();
+        orderCount--;
+        order.level = null;
+        order.prev = null;
+        order.next = null;
+    }
+
+    // Keep the aggregate in step when an order in this level is partially filled
+    void reduceQuantity(long amount) {
+        totalQuantity -= amount;
+    }
+
+    long getPrice() { return price; }
+    Order getHead() { return head; }
+    int getOrderCount() { return orderCount; }
+    long getTotalQuantity() { return totalQuantity; }
+    boolean isEmpty() { return head == null; }
+}
@@ -0,0 +1,123 @@
+package Engine;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Bounded multi-producer, single-consumer ring of pre-allocated entries.
+ *
+ * Producers claim a sequence with one atomic operation, fill the entry and
+ * publish it; no locks are taken. claim() waits while the ring is full, which
+ * applies back-pressure; tryClaim() gives up instead so latency-sensitive
+ * producers can drop rather than wait on a slow consumer.
+ */
+final class RingBuffer<E> {
+    interface Handler<E> {
+        void onEntry(E entry, long sequence);
+    }
+
+    private final Object[] entries;
+    private final AtomicLongArray published; // Sequence last published in each slot
+    private final int mask;
+    private final AtomicLong claimSequence = new AtomicLong();
+    private final AtomicLong consumerSequence = new AtomicLong(); // Next sequence to consume
+
+    RingBuffer(int capacity, Supplier<E> factory) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Ring buffer capacity must be a power of two: " + capacity);
+        }
+        this.entries = new Object[capacity];
+        this.published = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            entries[i] = factory.get();
+            published.set(i, -1);
+        }
+    }
+
+    // Reserve the next slot, waiting while the ring is full
+    long claim() {
+        long sequence = claimSequence.getAndIncrement();
+        int spins = 0;
+        while (sequence - consumerSequence.get() >= entries.length) {
+            // Back off quickly so a waiting producer never starves the consumer of CPU
+            if (++spins < 64) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+        return sequence;
+    }
+
+    // Reserve the next slot, or return -1 straight away if the ring is full
+    long tryClaim() {
+        while (true) {
+            long sequence = claimSequence.get();
+            if (sequence - consumerSequence.get() >= entries.length) {
+                return -1;
+            }
+            if (claimSequence.compareAndSet(sequence, sequence + 1)) {
+                return sequence;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    E get(long sequence) {
+        return (E) entries[(int) sequence & mask];
+    }
+
+    void publish(long sequence) {
+        published.lazySet((int) sequence & mask, sequence);
+    }
+
+    boolean hasPending() {
+        long next = consumerSequence.get();
+        return published.get((int) next & mask) == next;
+    }
+
+    // Claimed but not yet consumed entries; approximate while producers are active
+    long backlog() {
+        return Math.max(0, claimSequence.get() - consumerSequence.get());
+    }
+
+    // The next published entry, left in place; null if there is none
+    @SuppressWarnings("unchecked")
+    E peek() {
+        long next = consumerSequence.get();
+        int index = (int) next & mask;
+        return published.get(index) == next ? (E) entries[index] : null;
+    }
+
+    // Hand up to 'limit' consecutive published entries to the handler, returning how many ran
+    int drain(Handler<E> handler, int limit) {
+        return drain(handler, limit, null);
+    }
+
+    // As drain, but stop early at the first entry 'accept' turns down, leaving it in place
+    @SuppressWarnings("unchecked")
+    int drain(Handler<E> handler, int limit, Predicate<? super E> accept) {
+        long next = consumerSequence.get();
+        int count = 0;
+        while (count < limit) {
+            int index = (int) next & mask;
+            if (published.get(index) != next || (accept != null && !accept.test((E) entries[index]))) {
+                break;
+            }
+            try {
+                handler.onEntry((E) entries[index], next);
+            } finally {
+                consumerSequence.lazySet(++next);
+            }
+            count++;
+        }
+        return count;
+    }
+
+    int capacity() {
+        return entries.length;
+    }
+}
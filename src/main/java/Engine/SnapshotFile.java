@@ -0,0 +1,285 @@
+package Engine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import Data.CandleManager;
+
+/**
+ * In-memory copy of a snapshot and its binary encoding. Snapshotter fills
+ * one in while it holds the books, then writes it after letting them go;
+ * JournalRecovery reads it back before replaying the journal tail.
+ *
+ * Layout, big-endian: magic, version, snapshot id, time, journal offset and
+ * next order id, then every portfolio, then every book with its resting
+ * orders, stops, prices and candles, and finally a CRC32C of everything
+ * before it. A file whose CRC doesn't match is ignored as a whole.
+ */
+final class SnapshotFile {
+    static final long MAGIC = 0x4E5345534E415031L; // "NSESNAP1"
+    static final int VERSION = 1;
+
+    long id;
+    long timestamp;
+    long journalOffset;   // Journal records from here on are not in the snapshot
+    int nextOrderId;
+    final List<PortfolioState> portfolios = new ArrayList<>();
+    final List<BookState> books = new ArrayList<>();
+
+    static final class PortfolioState {
+        int journalId;    // 0 if the journal never saw it
+        String name;
+        long cashCents;
+        long reservedCashCents;
+        long realizedPnLCents;
+        final List<String> symbols = new ArrayList<>();
+        final List<Integer> quantities = new ArrayList<>();
+        final List<Double> prices = new ArrayList<>();
+        final List<String> statuses = new ArrayList<>();
+        final List<String> reservedSymbols = new ArrayList<>();
+        final List<Integer> reservedQuantities = new ArrayList<>();
+    }
+
+    static final class OrderState {
+        int id;
+        Order.Type type;
+        Order.Side side;
+        int quantity;
+        long priceTicks;
+        long timestamp;
+        long entryStamp;
+        int portfolio;    // Index into portfolios
+        int reservedStock; // Shares this sell order reserved, 0 for buys and short sells
+    }
+
+    static final class CandleState {
+        long start;
+        double high, low, open, close, volume;
+    }
+
+    static final class BookState {
+        String symbol;
+        long tickCents;
+        int journalSymbolId;
+        long currentPriceTicks;
+        long lastTradeTicks;
+        boolean auction;
+        final List<OrderState> buyOrders = new ArrayList<>();
+        final List<OrderState> sellOrders = new ArrayList<>();
+        final List<OrderState> buyStops = new ArrayList<>();
+        final List<OrderState> sellStops = new ArrayList<>();
+        final long[] currentCandleTimes = new long[CandleManager.TimeFrame.values().length];
+        final List<List<CandleState>> candles = new ArrayList<>();
+    }
+
+    // Write to 'path' and force it to disk
+    void write(Path path) throws IOException {
+        CRC32C crc = new CRC32C();
+        try (FileOutputStream file = new FileOutputStream(path.toFile());
+             DataOutputStream out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(file, 1 << 16), crc))) {
+            out.writeLong(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(id);
+            out.writeLong(timestamp);
+            out.writeLong(journalOffset);
+            out.writeInt(nextOrderId);
+
+            out.writeInt(portfolios.size());
+            for (PortfolioState p : portfolios) {
+                out.writeInt(p.journalId);
+                out.writeUTF(p.name);
+                out.writeLong(p.cashCents);
+                out.writeLong(p.reservedCashCents);
+                out.writeLong(p.realizedPnLCents);
+                out.writeInt(p.symbols.size());
+                for (int i = 0; i < p.symbols.size(); i++) {
+                    out.writeUTF(p.symbols.get(i));
+                    out.writeInt(p.quantities.get(i));
+                    out.writeDouble(p.prices.get(i));
+                    out.writeUTF(p.statuses.get(i));
+                }
+                out.writeInt(p.reservedSymbols.size());
+                for (int i = 0; i < p.reservedSymbols.size(); i++) {
+                    out.writeUTF(p.reservedSymbols.get(i));
+                    out.writeInt(p.reservedQuantities.get(i));
+                }
+            }
+
+            out.writeInt(books.size());
+            for (BookState b : books) {
+                out.writeUTF(b.symbol);
+                out.writeLong(b.tickCents);
+                out.writeInt(b.journalSymbolId);
+                out.writeLong(b.currentPriceTicks);
+                out.writeLong(b.lastTradeTicks);
+                out.writeBoolean(b.auction);
+                writeOrders(out, b.buyOrders);
+                writeOrders(out, b.sellOrders);
+                writeOrders(out, b.buyStops);
+                writeOrders(out, b.sellStops);
+                for (int tf = 0; tf < b.currentCandleTimes.length; tf++) {
+                    out.writeLong(b.currentCandleTimes[tf]);
+                    List<CandleState> series = b.candles.get(tf);
+                    out.writeInt(series.size());
+                    for (CandleState c : series) {
+                        out.writeLong(c.start);
+                        out.writeDouble(c.high);
+                        out.writeDouble(c.low);
+                        out.writeDouble(c.open);
+                        out.writeDouble(c.close);
+                        out.writeDouble(c.volume);
+                    }
+                }
+            }
+
+            // The CRC covers everything above; write it past the checked stream
+            out.flush();
+            DataOutputStream trailer = new DataOutputStream(file);
+            trailer.writeInt((int) crc.getValue());
+            trailer.flush();
+            file.getFD().sync();
+        }
+    }
+
+    // Read a whole snapshot, or null if the file is damaged or not a snapshot
+    static SnapshotFile read(Path path) throws IOException {
+        CRC32C crc = new CRC32C();
+        try (InputStream file = new BufferedInputStream(Files.newInputStream(path), 1 << 16)) {
+            DataInputStream in = new DataInputStream(new CheckedInputStream(file, crc));
+            SnapshotFile snapshot = new SnapshotFile();
+            try {
+                if (in.readLong() != MAGIC || in.readInt() != VERSION) {
+                    return null;
+                }
+                snapshot.readBody(in);
+                int expected = (int) crc.getValue();
+                if (new DataInputStream(file).readInt() != expected) {
+                    return null;
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                // Truncated or garbled; the CRC would not have matched either
+                return null;
+            }
+            return snapshot;
+        }
+    }
+
+    private void readBody(DataInputStream in) throws IOException {
+        id = in.readLong();
+        timestamp = in.readLong();
+        journalOffset = in.readLong();
+        nextOrderId = in.readInt();
+
+        int portfolioCount = count(in);
+        for (int i = 0; i < portfolioCount; i++) {
+            PortfolioState p = new PortfolioState();
+            p.journalId = in.readInt();
+            p.name = in.readUTF();
+            p.cashCents = in.readLong();
+            p.reservedCashCents = in.readLong();
+            p.realizedPnLCents = in.readLong();
+            int holdings = count(in);
+            for (int h = 0; h < holdings; h++) {
+                p.symbols.add(in.readUTF());
+                p.quantities.add(in.readInt());
+                p.prices.add(in.readDouble());
+                p.statuses.add(in.readUTF());
+            }
+            int reservations = count(in);
+            for (int r = 0; r < reservations; r++) {
+                p.reservedSymbols.add(in.readUTF());
+                p.reservedQuantities.add(in.readInt());
+            }
+            portfolios.add(p);
+        }
+
+        int bookCount = count(in);
+        for (int i = 0; i < bookCount; i++) {
+            BookState b = new BookState();
+            b.symbol = in.readUTF();
+            b.tickCents = in.readLong();
+            b.journalSymbolId = in.readInt();
+            b.currentPriceTicks = in.readLong();
+            b.lastTradeTicks = in.readLong();
+            b.auction = in.readBoolean();
+            readOrders(in, b.buyOrders);
+            readOrders(in, b.sellOrders);
+            readOrders(in, b.buyStops);
+            readOrders(in, b.sellStops);
+            for (int tf = 0; tf < b.currentCandleTimes.length; tf++) {
+                b.currentCandleTimes[tf] = in.readLong();
+                int candleCount = count(in);
+                List<CandleState> series = new ArrayList<>();
+                for (int c = 0; c < candleCount; c++) {
+                    CandleState candle = new CandleState();
+                    candle.start = in.readLong();
+                    candle.high = in.readDouble();
+                    candle.low = in.readDouble();
+                    candle.open = in.readDouble();
+                    candle.close = in.readDouble();
+                    candle.volume = in.readDouble();
+                    series.add(candle);
+                }
+                b.candles.add(series);
+            }
+            books.add(b);
+        }
+    }
+
+    private static void writeOrders(DataOutputStream out, List<OrderState> orders) throws IOException {
+        out.writeInt(orders.size());
+        for (OrderState o : orders) {
+            out.writeInt(o.id);
+            out.writeByte(o.type.ordinal());
+            out.writeByte(o.side.ordinal());
+            out.writeInt(o.quantity);
+            out.writeLong(o.priceTicks);
+            out.writeLong(o.timestamp);
+            out.writeLong(o.entryStamp);
+            out.writeInt(o.portfolio);
+            out.writeInt(o.reservedStock);
+        }
+    }
+
+    private void readOrders(DataInputStream in, List<OrderState> orders) throws IOException {
+        Order.Type[] types = Order.Type.values();
+        Order.Side[] sides = Order.Side.values();
+        int orderCount = count(in);
+        for (int i = 0; i < orderCount; i++) {
+            OrderState o = new OrderState();
+            o.id = in.readInt();
+            o.type = types[in.readUnsignedByte() % types.length];
+            o.side = sides[in.readUnsignedByte() % sides.length];
+            o.quantity = in.readInt();
+            o.priceTicks = in.readLong();
+            o.timestamp = in.readLong();
+            o.entryStamp = in.readLong();
+            o.portfolio = in.readInt();
+            o.reservedStock = in.readInt();
+            if (o.portfolio < 0 || o.portfolio >= portfolios.size()) {
+                throw new IllegalArgumentException("Order " + o.id + " refers to unknown portfolio " + o.portfolio);
+            }
+            orders.add(o);
+        }
+    }
+
+    private static int count(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IllegalArgumentException("Negative count " + count);
+        }
+        return count;
+    }
+}
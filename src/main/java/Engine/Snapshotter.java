@@ -0,0 +1,356 @@
+package Engine;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import Banking.Portfolio;
+import Banking.Position;
+import Data.Candle;
+import Data.CandleManager;
+import Sim.Clock;
+
+/**
+ * Writes periodic binary snapshots of the journaled books (resting orders,
+ * stops, prices and candles) and of every portfolio the journal has seen,
+ * so a restart loads the latest snapshot and replays only the journal
+ * written after it (JournalRecovery.recover with a snapshot directory).
+ *
+ * A snapshot is a consistent cut: every book is held at once, just long
+ * enough to copy its state and mark the journal, so the journal offset in
+ * the file splits exactly the commands the snapshot already contains from
+ * the ones it doesn't. Encoding and writing happen after the books are let
+ * go, on the snapshotter's own thread. Files are written under a temporary
+ * name and moved into place, and only the newest few are kept.
+ */
+public final class Snapshotter {
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".bin";
+    private static final int DEFAULT_KEEP = 2;
+    private static final long CHECKPOINT_TIMEOUT_SECONDS = 30;
+    private static final CandleManager.TimeFrame[] TIME_FRAMES = CandleManager.TimeFrame.values();
+
+    private final Path directory;
+    private final OrderJournal journal;
+    private final Set<Portfolio> extraPortfolios = new LinkedHashSet<>();
+    private final int keep;
+    private final Object takeLock = new Object(); // One snapshot at a time
+    private long nextId;
+    private volatile long snapshotsTaken;
+    private volatile long lastPauseNanos;
+    private ScheduledExecutorService scheduler;
+
+    // Snapshot every book journaling to the exchange's journal
+    public Snapshotter(Path directory, Exchange exchange) throws IOException {
+        this(directory, exchange.getJournal());
+    }
+
+    // Snapshot every book journaling to 'journal'
+    public Snapshotter(Path directory, OrderJournal journal) throws IOException {
+        this(directory, journal, DEFAULT_KEEP);
+    }
+
+    // Keep the newest 'keep' snapshots; older ones are deleted after each new one is in place
+    public Snapshotter(Path directory, OrderJournal journal, int keep) throws IOException {
+        if (journal == null) {
+            throw new IllegalArgumentException("Snapshots need the journal their books write to");
+        }
+        if (keep <= 0) {
+            throw new IllegalArgumentException("Must keep at least one snapshot: " + keep);
+        }
+        this.directory = directory;
+        this.journal = journal;
+        this.keep = keep;
+        Files.createDirectories(directory);
+        List<Path> existing = list(directory);
+        this.nextId = existing.isEmpty() ? 1 : idOf(existing.get(existing.size() - 1)) + 1;
+    }
+
+    // Also snapshot a portfolio with no orders in the books, e.g. one that only holds cash
+    public void addPortfolio(Portfolio portfolio) {
+        synchronized (takeLock) {
+            extraPortfolios.add(portfolio);
+        }
+    }
+
+    public synchronized void start(long period, TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Snapshot period must be positive: " + period);
+        }
+        if (scheduler != null) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "snapshotter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::takeScheduled, period, period, unit);
+    }
+
+    public synchronized void stop() {
+        if (scheduler == null) return;
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(CHECKPOINT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        scheduler = null;
+    }
+
+    /**
+     * Take a snapshot now and return its file. Books are held only while
+     * their state is copied; the file is written afterwards.
+     */
+    public Path take() throws IOException {
+        synchronized (takeLock) {
+            return takeLocked();
+        }
+    }
+
+    private Path takeLocked() throws IOException {
+        SnapshotFile snapshot;
+        CompletableFuture<Long> offset;
+        do {
+            List<OrderBook> held = new ArrayList<>(journal.getBooks());
+            // Always lock in the same order so two snapshotters can't deadlock each other
+            held.sort(Comparator.comparing(OrderBook::getSymbol));
+            snapshot = new SnapshotFile();
+            snapshot.id = nextId;
+            offset = new CompletableFuture<>();
+            SnapshotFile capturing = snapshot;
+            CompletableFuture<Long> marking = offset;
+            long pauseStart = System.nanoTime();
+            holdAll(held, 0, () -> capture(held, capturing, marking));
+            lastPauseNanos = System.nanoTime() - pauseStart;
+            // A book that joined the journal meanwhile isn't in the cut; try again
+        } while (offset.isCancelled());
+
+        try {
+            snapshot.journalOffset = offset.get(CHECKPOINT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IOException("Journal " + journal.getPath() + " did not reach the snapshot point", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for the journal", e);
+        }
+
+        Path file = directory.resolve(PREFIX + String.format("%012d", snapshot.id) + SUFFIX);
+        Path temp = directory.resolve(file.getFileName() + ".tmp");
+        snapshot.write(temp);
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        nextId++;
+        snapshotsTaken++;
+
+        List<Path> existing = list(directory);
+        for (int i = 0; i < existing.size() - keep; i++) {
+            Files.deleteIfExists(existing.get(i));
+        }
+        return file;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public long getSnapshotsTaken() {
+        return snapshotsTaken;
+    }
+
+    // How long the last snapshot held the books, in nanoseconds
+    public long getLastPauseNanos() {
+        return lastPauseNanos;
+    }
+
+    // Snapshot files in the directory, oldest first
+    static List<Path> list(Path directory) throws IOException {
+        TreeMap<Long, Path> files = new TreeMap<>();
+        if (!Files.isDirectory(directory)) {
+            return new ArrayList<>();
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path path : stream) {
+                long id = idOf(path);
+                if (id > 0) {
+                    files.put(id, path);
+                }
+            }
+        }
+        return new ArrayList<>(files.values());
+    }
+
+    private static long idOf(Path path) {
+        String name = path.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+
+    // Take every book's monitor in turn, run 'body' with all of them held, then let go
+    private static void holdAll(List<OrderBook> books, int index, Runnable body) {
+        if (index == books.size()) {
+            body.run();
+            return;
+        }
+        synchronized (books.get(index)) {
+            holdAll(books, index + 1, body);
+        }
+    }
+
+    // With every book held: nothing can trade, reserve or journal until this returns
+    private void capture(List<OrderBook> held, SnapshotFile snapshot, CompletableFuture<Long> offset) {
+        // Mark the journal first, then check the mark can't follow a book we don't hold
+        CompletableFuture<Long> checkpoint = journal.checkpoint();
+        if (!new HashSet<>(held).containsAll(journal.getBooks())) {
+            offset.cancel(false);
+            return;
+        }
+        checkpoint.whenComplete((position, error) -> {
+            if (error != null) {
+                offset.completeExceptionally(error);
+            } else {
+                offset.complete(position);
+            }
+        });
+
+        snapshot.timestamp = Clock.current().currentTimeMillis();
+        snapshot.nextOrderId = OrderIdSequencer.global().peek();
+
+        Capture capture = new Capture(snapshot, journal.getPortfolioIds());
+        for (Portfolio portfolio : capture.journalIds.keySet()) {
+            capture.indexOf(portfolio);
+        }
+        for (Portfolio portfolio : extraPortfolios) {
+            capture.indexOf(portfolio);
+        }
+
+        for (OrderBook book : held) {
+            if (book.getJournal() != journal) {
+                continue; // Stopped journaling; its later commands aren't in the journal
+            }
+            SnapshotFile.BookState state = new SnapshotFile.BookState();
+            state.symbol = book.getSymbol();
+            state.tickCents = book.getTickCents();
+            state.journalSymbolId = book.journalSymbolId;
+            state.currentPriceTicks = book.getCurrentPriceTicks();
+            state.lastTradeTicks = book.getLastTradeTicks();
+            state.auction = book.isInAuction();
+            capture.copyOrders(book.getBuyOrders(), state.buyOrders);
+            capture.copyOrders(book.getSellOrders(), state.sellOrders);
+            capture.copyOrders(book.getBuyStops(), state.buyStops);
+            capture.copyOrders(book.getSellStops(), state.sellStops);
+
+            CandleManager candles = book.getBookCandleManager();
+            for (int tf = 0; tf < TIME_FRAMES.length; tf++) {
+                state.currentCandleTimes[tf] = candles.getCurrentCandleTime(state.symbol, TIME_FRAMES[tf]);
+                List<SnapshotFile.CandleState> series = new ArrayList<>();
+                for (Map.Entry<Long, Candle> entry : candles.copySeries(state.symbol, TIME_FRAMES[tf]).entrySet()) {
+                    Candle candle = entry.getValue();
+                    SnapshotFile.CandleState c = new SnapshotFile.CandleState();
+                    c.start = entry.getKey();
+                    c.high = candle.getHigh();
+                    c.low = candle.getLow();
+                    c.open = candle.getOpen();
+                    c.close = candle.getClose();
+                    c.volume = candle.getVolume();
+                    series.add(c);
+                }
+                state.candles.add(series);
+            }
+            snapshot.books.add(state);
+        }
+
+        // Portfolios last: copying orders may have added some
+        for (int i = 0; i < snapshot.portfolios.size(); i++) {
+            copyPortfolio(capture.portfolios.get(i), snapshot.portfolios.get(i));
+        }
+    }
+
+    private static void copyPortfolio(Portfolio portfolio, SnapshotFile.PortfolioState state) {
+        state.cashCents = portfolio.getUSDCents();
+        state.reservedCashCents = portfolio.getReservedCashCents();
+        state.realizedPnLCents = portfolio.getRealizedPnLCents();
+        for (Map.Entry<String, Position> entry : portfolio.getStockHoldings().entrySet()) {
+            Position position = entry.getValue();
+            state.symbols.add(entry.getKey());
+            state.quantities.add(position.getQuantity());
+            state.prices.add(position.getPrice());
+            state.statuses.add(position.getStatus());
+        }
+        for (Map.Entry<String, Integer> entry : portfolio.getReservedStock().entrySet()) {
+            state.reservedSymbols.add(entry.getKey());
+            state.reservedQuantities.add(entry.getValue());
+        }
+    }
+
+    // Portfolios found so far in one snapshot; orders refer to them by index
+    private static final class Capture {
+        final SnapshotFile snapshot;
+        final Map<Portfolio, Integer> journalIds;
+        final Map<Portfolio, Integer> indexes = new IdentityHashMap<>();
+        final List<Portfolio> portfolios = new ArrayList<>();
+
+        Capture(SnapshotFile snapshot, Map<Portfolio, Integer> journalIds) {
+            this.snapshot = snapshot;
+            this.journalIds = journalIds;
+        }
+
+        int indexOf(Portfolio portfolio) {
+            Integer index = indexes.get(portfolio);
+            if (index != null) {
+                return index;
+            }
+            SnapshotFile.PortfolioState state = new SnapshotFile.PortfolioState();
+            state.journalId = journalIds.getOrDefault(portfolio, 0);
+            state.name = portfolio.getUsername();
+            snapshot.portfolios.add(state);
+            portfolios.add(portfolio);
+            indexes.put(portfolio, portfolios.size() - 1);
+            return portfolios.size() - 1;
+        }
+
+        void copyOrders(List<Order> orders, List<SnapshotFile.OrderState> into) {
+            for (Order order : orders) {
+                SnapshotFile.OrderState state = new SnapshotFile.OrderState();
+                state.id = order.getId();
+                state.type = order.getType();
+                state.side = order.getSide();
+                state.quantity = order.getQuantity();
+                state.priceTicks = order.getPriceTicks();
+                state.timestamp = order.getTimestamp();
+                state.entryStamp = order.getEntryStamp();
+                state.portfolio = indexOf(order.getUser_portfolio());
+                state.reservedStock = order.reservedStock;
+                into.add(state);
+            }
+        }
+    }
+
+    private void takeScheduled() {
+        try {
+            Path file = take();
+            System.out.println("Snapshot " + file.getFileName() + " written; books held for " +
+                    String.format("%.2f", lastPauseNanos / 1e6) + " ms");
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Snapshot failed: " + e.getMessage());
+        }
+    }
+}
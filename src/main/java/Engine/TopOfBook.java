@@ -0,0 +1,61 @@
+package Engine;
+
+import Sim.Clock;
+
+/**
+ * Immutable best bid/offer and last trade of one book. The book publishes a
+ * new instance through a volatile reference whenever any of these values
+ * change, so readers get a consistent view without taking the book's lock.
+ */
+public final class TopOfBook {
+    private final String symbol;
+    private final long sequence;  // Increases by one with every published change
+    private final double bidPrice;
+    private final long bidSize;   // 0 when there is no bid
+    private final double askPrice;
+    private final long askSize;   // 0 when there is no ask
+    private final double lastPrice;
+    private final long timestamp;
+
+    // Ticks kept alongside the prices so the book can tell cheaply whether anything changed
+    final long bidTicks;
+    final long askTicks;
+    final long lastTicks;
+
+    TopOfBook(String symbol, long sequence, long bidTicks, double bidPrice, long bidSize,
+              long askTicks, double askPrice, long askSize, long lastTicks, double lastPrice) {
+        this.symbol = symbol;
+        this.sequence = sequence;
+        this.bidTicks = bidTicks;
+        this.bidPrice = bidPrice;
+        this.bidSize = bidSize;
+        this.askTicks = askTicks;
+        this.askPrice = askPrice;
+        this.askSize = askSize;
+        this.lastTicks = lastTicks;
+        this.lastPrice = lastPrice;
+        this.timestamp = Clock.current().currentTimeMillis();
+    }
+
+    boolean sameAs(long bidTicks, long bidSize, long askTicks, long askSize, long lastTicks) {
+        return this.bidTicks == bidTicks && this.bidSize == bidSize && this.askTicks == askTicks
+                && this.askSize == askSize && this.lastTicks == lastTicks;
+    }
+
+    public String getSymbol() { return symbol; }
+    public long getSequence() { return sequence; }
+    public boolean hasBid() { return bidSize > 0; }
+    public boolean hasAsk() { return askSize > 0; }
+    public double getBidPrice() { return bidPrice; }
+    public long getBidSize() { return bidSize; }
+    public double getAskPrice() { return askPrice; }
+    public long getAskSize() { return askSize; }
+    public double getLastPrice() { return lastPrice; }
+    public long getTimestamp() { return timestamp; }
+
+    @Override
+    public String toString() {
+        return symbol + " #" + sequence + ": " + (hasBid() ? bidSize + " @ $" + bidPrice : "no bid") + " / " +
+                (hasAsk() ? askSize + " @ $" + askPrice : "no ask") + ", last $" + lastPrice;
+    }
+}
@@ -0,0 +1,31 @@
+package Engine;
+
+/**
+ * One execution on a book, as seen by market-data subscribers
+ */
+public final class Trade {
+    private final String symbol;
+    private final long sequence; // Per-book trade number, starting at 1
+    private final double price;
+    private final int quantity;
+    private final long timestamp;
+
+    Trade(String symbol, long sequence, double price, int quantity, long timestamp) {
+        this.symbol = symbol;
+        this.sequence = sequence;
+        this.price = price;
+        this.quantity = quantity;
+        this.timestamp = timestamp;
+    }
+
+    public String getSymbol() { return symbol; }
+    public long getSequence() { return sequence; }
+    public double getPrice() { return price; }
+    public int getQuantity() { return quantity; }
+    public long getTimestamp() { return timestamp; }
+
+    @Override
+    public String toString() {
+        return "Trade " + sequence + ": " + quantity + " shares of " + symbol + " at $" + price;
+    }
+}
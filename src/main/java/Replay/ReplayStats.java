@@ -0,0 +1,47 @@
+package Replay;
+
+/**
+ * Progress of a replay: what has been injected so far and how fast
+ */
+public final class ReplayStats {
+    private final long ticks;
+    private final long orders;
+    private final long cancels;
+    private final long trades;
+    private final long wallNanos;
+    private final long firstTimestamp;
+    private final long lastTimestamp;
+
+    ReplayStats(long ticks, long orders, long cancels, long trades, long wallNanos,
+                long firstTimestamp, long lastTimestamp) {
+        this.ticks = ticks;
+        this.orders = orders;
+        this.cancels = cancels;
+        this.trades = trades;
+        this.wallNanos = wallNanos;
+        this.firstTimestamp = firstTimestamp;
+        this.lastTimestamp = lastTimestamp;
+    }
+
+    public long getTicks() { return ticks; }
+    public long getOrders() { return orders; }
+    public long getCancels() { return cancels; }
+    public long getTrades() { return trades; }
+    public long getWallNanos() { return wallNanos; }
+    public double getTicksPerSecond() { return wallNanos == 0 ? 0 : ticks * 1e9 / wallNanos; }
+    public double getMegabytesPerSecond() { return getTicksPerSecond() * TickFile.RECORD_SIZE / (1 << 20); }
+
+    // Recorded time covered so far, in milliseconds
+    public long getRecordedMillis() { return ticks == 0 ? 0 : lastTimestamp - firstTimestamp; }
+
+    // How much faster than recorded time the replay is running
+    public double getSpeedup() {
+        return wallNanos == 0 ? 0 : getRecordedMillis() * 1e6 / wallNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d ticks (%d orders, %d cancels, %d trades) in %.1f ms: %.0f ticks/s, %.1f MB/s, %.0fx recorded speed",
+                ticks, orders, cancels, trades, wallNanos / 1e6, getTicksPerSecond(), getMegabytesPerSecond(), getSpeedup());
+    }
+}
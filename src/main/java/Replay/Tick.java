@@ -0,0 +1,38 @@
+package Replay;
+
+import Banking.Money;
+
+/**
+ * One recorded market event. TickReader fills the same instance over and
+ * over, so copy out anything that has to outlive the next read.
+ */
+public final class Tick {
+    public enum Kind {
+        TRADE,        // A print: moves the last price and candles without touching the book
+        BUY,          // Limit buy with a recorded order id
+        SELL,         // Limit sell with a recorded order id
+        MARKET_BUY,
+        MARKET_SELL,
+        CANCEL;       // Cancel of an earlier BUY or SELL by its recorded order id
+
+        static final Kind[] VALUES = values();
+    }
+
+    Kind kind;
+    long timestamp;  // Epoch milliseconds
+    long priceCents; // 0 for market orders and cancels
+    int quantity;
+    int orderId;     // Recorded id, 0 when the event has none
+
+    public Kind getKind() { return kind; }
+    public long getTimestamp() { return timestamp; }
+    public long getPriceCents() { return priceCents; }
+    public double getPrice() { return Money.toDollars(priceCents); }
+    public int getQuantity() { return quantity; }
+    public int getOrderId() { return orderId; }
+
+    @Override
+    public String toString() {
+        return kind + " " + quantity + " @ $" + getPrice() + " (order " + orderId + ", t=" + timestamp + ")";
+    }
+}
@@ -0,0 +1,52 @@
+package Replay;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Converts CSV ticks to the binary format TickReader maps. One event per line:
+ *
+ *   timestamp,kind,price,quantity,orderId
+ *
+ * with the timestamp in epoch milliseconds and kind one of Tick.Kind
+ * (any case). Blank lines, '#' comments and a header line starting with
+ * "timestamp" are skipped. The file is streamed, so its size doesn't matter.
+ */
+public final class TickCsv {
+    private TickCsv() {}
+
+    // Returns the number of records written
+    public static long toBinary(Path csv, Path out, String symbol) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(csv, StandardCharsets.US_ASCII);
+             TickWriter writer = new TickWriter(out, symbol)) {
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#") || line.regionMatches(true, 0, "timestamp", 0, 9)) {
+                    continue;
+                }
+                String[] fields = line.split(",");
+                if (fields.length < 4) {
+                    throw new IllegalArgumentException(csv + ":" + lineNumber + ": expected timestamp,kind,price,quantity[,orderId]");
+                }
+                try {
+                    long timestamp = Long.parseLong(fields[0].trim());
+                    Tick.Kind kind = Tick.Kind.valueOf(fields[1].trim().toUpperCase(Locale.ROOT));
+                    double price = Double.parseDouble(fields[2].trim());
+                    int quantity = Integer.parseInt(fields[3].trim());
+                    int orderId = fields.length > 4 ? Integer.parseInt(fields[4].trim()) : 0;
+                    writer.write(kind, timestamp, price, quantity, orderId);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException(csv + ":" + lineNumber + ": " + e.getMessage(), e);
+                }
+            }
+            return writer.getRecordCount();
+        }
+    }
+}
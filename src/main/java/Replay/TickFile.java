@@ -0,0 +1,57 @@
+package Replay;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Layout of a binary tick file: a 32 byte header followed by fixed 32 byte
+ * little-endian records. A record cut short by a crash is ignored, so a file
+ * is readable up to its last complete record at any time.
+ *
+ * Header: magic (8), version (4), record size (4), symbol (16, ASCII, zero padded)
+ * Record: timestamp (8), price in cents (8), quantity (4), order id (4), kind (1), padding (7)
+ */
+final class TickFile {
+    static final long MAGIC = 0x314B4349_5445534EL; // "NSETICK1" read little-endian
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int RECORD_SIZE = 32;
+    static final int MAX_SYMBOL_LENGTH = 16;
+    static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    private TickFile() {}
+
+    static void writeHeader(ByteBuffer buffer, String symbol) {
+        byte[] bytes = symbol.getBytes(StandardCharsets.US_ASCII);
+        if (bytes.length == 0 || bytes.length > MAX_SYMBOL_LENGTH) {
+            throw new IllegalArgumentException("Symbol must be 1 to " + MAX_SYMBOL_LENGTH + " characters: " + symbol);
+        }
+        buffer.putLong(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(RECORD_SIZE);
+        buffer.put(bytes);
+        for (int i = bytes.length; i < MAX_SYMBOL_LENGTH; i++) {
+            buffer.put((byte) 0);
+        }
+    }
+
+    // Returns the symbol, or throws if this is not a tick file we can read
+    static String readHeader(ByteBuffer buffer) {
+        if (buffer.getLong() != MAGIC) {
+            throw new IllegalArgumentException("Not a tick file");
+        }
+        int version = buffer.getInt();
+        int recordSize = buffer.getInt();
+        if (version != VERSION || recordSize != RECORD_SIZE) {
+            throw new IllegalArgumentException("Unsupported tick file version " + version + " (record size " + recordSize + ")");
+        }
+        byte[] bytes = new byte[MAX_SYMBOL_LENGTH];
+        buffer.get(bytes);
+        int length = 0;
+        while (length < bytes.length && bytes[length] != 0) {
+            length++;
+        }
+        return new String(bytes, 0, length, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,111 @@
+package Replay;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Sequential reader over a binary tick file.
+ *
+ * The file is memory-mapped one window at a time, so files far larger than
+ * the heap (or than a single 2 GB mapping) are read with a fixed footprint:
+ * the pages live in the OS page cache, and every record is decoded into the
+ * caller's Tick without allocating.
+ */
+public final class TickReader implements Closeable {
+    private static final long WINDOW_BYTES = 64L << 20; // A whole number of records
+
+    private final FileChannel channel;
+    private final String symbol;
+    private final long recordCount;
+    private MappedByteBuffer window;
+    private long windowFirst;   // Index of the first record in the window
+    private long windowEnd;     // Index one past the last record in the window
+    private long next;
+
+    public TickReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(TickFile.HEADER_SIZE).order(TickFile.ORDER);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    break;
+                }
+            }
+            if (header.hasRemaining()) {
+                throw new IllegalArgumentException("Not a tick file: " + path);
+            }
+            header.flip();
+            this.symbol = TickFile.readHeader(header);
+            this.recordCount = (channel.size() - TickFile.HEADER_SIZE) / TickFile.RECORD_SIZE;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    // Index of the record the next call to next() returns
+    public long getPosition() {
+        return next;
+    }
+
+    public boolean hasNext() {
+        return next < recordCount;
+    }
+
+    // Decode the next record into 'tick'; false at the end of the file
+    public boolean next(Tick tick) throws IOException {
+        if (next >= recordCount) {
+            return false;
+        }
+        if (next >= windowEnd || next < windowFirst) {
+            map(next);
+        }
+        int offset = (int) ((next - windowFirst) * TickFile.RECORD_SIZE);
+        tick.timestamp = window.getLong(offset);
+        tick.priceCents = window.getLong(offset + 8);
+        tick.quantity = window.getInt(offset + 16);
+        tick.orderId = window.getInt(offset + 20);
+        int kind = window.get(offset + 24);
+        if (kind < 0 || kind >= Tick.Kind.VALUES.length) {
+            throw new IOException("Corrupt tick record " + next + ": unknown kind " + kind);
+        }
+        tick.kind = Tick.Kind.VALUES[kind];
+        next++;
+        return true;
+    }
+
+    public void seek(long record) {
+        if (record < 0 || record > recordCount) {
+            throw new IllegalArgumentException("Record " + record + " out of range for " + recordCount + " records");
+        }
+        next = record;
+    }
+
+    private void map(long first) throws IOException {
+        long records = Math.min(WINDOW_BYTES / TickFile.RECORD_SIZE, recordCount - first);
+        window = channel.map(FileChannel.MapMode.READ_ONLY,
+                TickFile.HEADER_SIZE + first * TickFile.RECORD_SIZE, records * TickFile.RECORD_SIZE);
+        window.order(TickFile.ORDER);
+        windowFirst = first;
+        windowEnd = first + records;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
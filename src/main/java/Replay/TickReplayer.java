@@ -0,0 +1,159 @@
+package Replay;
+
+import Banking.Portfolio;
+import Engine.Order;
+import Engine.OrderBook;
+import Sim.VirtualClock;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Feeds a tick file into an order book.
+ *
+ * Recorded orders are placed for one participant portfolio, which should have
+ * enough cash to cover them (sells may go short). Recorded trades go through
+ * OrderBook.recordTrade, so candles and market data follow the tape. Orders
+ * come from the book's pool and recorded ids are mapped in a primitive map
+ * that is pruned of filled orders, so heap use stays flat however long the
+ * file is.
+ *
+ * By default ticks are injected as fast as possible; setSpeed(1) paces them at
+ * the recorded rate and larger values replay faster. With a VirtualClock the
+ * clock follows the recorded timestamps, so candles land in the recorded
+ * minutes even when replaying far faster than real time.
+ */
+public final class TickReplayer {
+    private static final int INITIAL_LIVE_ORDERS = 1024;
+
+    private final OrderBook book;
+    private final Portfolio participant;
+    private final IntIntMap liveOrders = new IntIntMap(INITIAL_LIVE_ORDERS); // Recorded id -> book id
+    private int pruneAt = INITIAL_LIVE_ORDERS;
+    private double speed;
+    private VirtualClock clock;
+    private Consumer<ReplayStats> progressListener;
+    private long progressInterval;
+    private volatile boolean stopped;
+
+    public TickReplayer(OrderBook book, Portfolio participant) {
+        this.book = book;
+        this.participant = participant;
+    }
+
+    // 0 for as fast as possible, 1 for recorded speed, 60 for an hour a minute
+    public TickReplayer setSpeed(double speed) {
+        if (speed < 0 || Double.isNaN(speed)) {
+            throw new IllegalArgumentException("Speed must be 0 or positive: " + speed);
+        }
+        this.speed = speed;
+        return this;
+    }
+
+    // Advance this clock to each tick's recorded time before injecting it
+    public TickReplayer setClock(VirtualClock clock) {
+        this.clock = clock;
+        return this;
+    }
+
+    // Report the running stats every 'interval' ticks
+    public TickReplayer setProgressListener(long interval, Consumer<ReplayStats> listener) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Progress interval must be positive: " + interval);
+        }
+        this.progressInterval = interval;
+        this.progressListener = listener;
+        return this;
+    }
+
+    // Ask a running replay to return after the current tick
+    public void stop() {
+        stopped = true;
+    }
+
+    public ReplayStats replay(TickReader reader) throws IOException {
+        if (!reader.getSymbol().equals(book.getSymbol())) {
+            throw new IllegalArgumentException("Tick file is for " + reader.getSymbol() + ", book is " + book.getSymbol());
+        }
+        stopped = false;
+        Tick tick = new Tick();
+        long ticks = 0, orders = 0, cancels = 0, trades = 0;
+        long firstTimestamp = 0, lastTimestamp = 0;
+        long wallStart = System.nanoTime();
+
+        while (!stopped && reader.next(tick)) {
+            if (ticks == 0) {
+                firstTimestamp = tick.timestamp;
+            }
+            lastTimestamp = tick.timestamp;
+            if (speed > 0) {
+                pace(wallStart, tick.timestamp - firstTimestamp);
+            }
+            if (clock != null && tick.timestamp * 1_000_000L > clock.epochNanos()) {
+                clock.advanceTo(tick.timestamp * 1_000_000L);
+            }
+
+            switch (tick.kind) {
+                case TRADE:
+                    book.recordTrade(tick.getPrice(), tick.quantity);
+                    trades++;
+                    break;
+                case CANCEL:
+                    int bookId = liveOrders.remove(tick.orderId);
+                    if (bookId != 0) {
+                        book.cancel(bookId);
+                    }
+                    cancels++;
+                    break;
+                default:
+                    place(tick);
+                    orders++;
+                    break;
+            }
+            ticks++;
+
+            if (progressListener != null && ticks % progressInterval == 0) {
+                progressListener.accept(new ReplayStats(ticks, orders, cancels, trades,
+                        System.nanoTime() - wallStart, firstTimestamp, lastTimestamp));
+            }
+        }
+        return new ReplayStats(ticks, orders, cancels, trades, System.nanoTime() - wallStart, firstTimestamp, lastTimestamp);
+    }
+
+    private void place(Tick tick) {
+        boolean buy = tick.kind == Tick.Kind.BUY || tick.kind == Tick.Kind.MARKET_BUY;
+        boolean limit = tick.kind == Tick.Kind.BUY || tick.kind == Tick.Kind.SELL;
+        Order order = book.createOrder(buy ? Order.Type.BUY : Order.Type.SELL,
+                limit ? Order.Side.LIMIT : Order.Side.MARKET, tick.quantity, limit ? tick.getPrice() : 0, participant);
+        // Read the id first: a pooled order can be recycled as soon as it is placed
+        int id = order.getId();
+        if (limit && tick.orderId != 0) {
+            track(tick.orderId, id);
+        }
+        if (buy) {
+            book.placeBuyOrder(order);
+        } else {
+            book.placeSellOrder(order);
+        }
+    }
+
+    private void track(int recordedId, int bookId) {
+        if (liveOrders.size() >= pruneAt) {
+            // Orders that filled never see a cancel; forget them before growing
+            liveOrders.retainValues(book::isResting);
+            pruneAt = Math.max(INITIAL_LIVE_ORDERS, liveOrders.size() * 2);
+        }
+        liveOrders.put(recordedId, bookId);
+    }
+
+    // Wait until the wall clock catches up with the tick's scaled recorded offset
+    private void pace(long wallStart, long recordedOffsetMillis) {
+        long due = wallStart + (long) (TimeUnit.MILLISECONDS.toNanos(recordedOffsetMillis) / speed);
+        long wait;
+        while ((wait = due - System.nanoTime()) > 0 && !stopped) {
+            LockSupport.parkNanos(wait);
+        }
+    }
+}
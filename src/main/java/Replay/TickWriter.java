@@ -0,0 +1,71 @@
+package Replay;
+
+import Banking.Money;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a binary tick file for one symbol through a reusable direct buffer
+ */
+public final class TickWriter implements Closeable {
+    private static final int BUFFER_RECORDS = 32 * 1024; // 1 MB
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private long recordCount;
+
+    public TickWriter(Path path, String symbol) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_RECORDS * TickFile.RECORD_SIZE).order(TickFile.ORDER);
+        try {
+            TickFile.writeHeader(buffer, symbol);
+        } catch (IllegalArgumentException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public void write(Tick.Kind kind, long timestamp, double price, int quantity, int orderId) throws IOException {
+        if (buffer.remaining() < TickFile.RECORD_SIZE) {
+            flush();
+        }
+        buffer.putLong(timestamp);
+        buffer.putLong(Money.toCents(price));
+        buffer.putInt(quantity);
+        buffer.putInt(orderId);
+        buffer.put((byte) kind.ordinal());
+        buffer.position(buffer.position() + 7);
+        recordCount++;
+    }
+
+    public void write(Tick tick) throws IOException {
+        write(tick.kind, tick.timestamp, tick.getPrice(), tick.quantity, tick.orderId);
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
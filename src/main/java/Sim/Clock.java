@@ -0,0 +1,63 @@
+package Sim;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Source of time for the engine, candles and bots.
+ *
+ * The process-wide clock defaults to the wall clock; install a VirtualClock
+ * with use() to run a simulation on virtual time. nextStamp() hands out
+ * strictly increasing nanosecond stamps, so two events never share a time
+ * even when they fall in the same millisecond.
+ */
+public abstract class Clock {
+    private static final Clock SYSTEM = new SystemClock();
+    private static volatile Clock current = SYSTEM;
+
+    private final AtomicLong lastStamp = new AtomicLong(Long.MIN_VALUE);
+
+    public static Clock current() {
+        return current;
+    }
+
+    public static Clock system() {
+        return SYSTEM;
+    }
+
+    // Install the clock every component reads from now on
+    public static void use(Clock clock) {
+        if (clock == null) {
+            throw new IllegalArgumentException("Clock must not be null");
+        }
+        current = clock;
+    }
+
+    public abstract long currentTimeMillis();
+
+    // Nanoseconds since the epoch; only as fine-grained as the clock itself
+    public abstract long epochNanos();
+
+    // Unique, strictly increasing stamp close to epochNanos()
+    public final long nextStamp() {
+        long now = epochNanos();
+        while (true) {
+            long last = lastStamp.get();
+            long next = Math.max(now, last + 1);
+            if (lastStamp.compareAndSet(last, next)) {
+                return next;
+            }
+        }
+    }
+
+    private static final class SystemClock extends Clock {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+
+        @Override
+        public long epochNanos() {
+            return System.currentTimeMillis() * 1_000_000L;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package Sim;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * As-fast-as-possible scheduler over a VirtualClock.
+ *
+ * Events are kept in time order (ties broken by submission order) and run one
+ * at a time on the thread that calls run/runUntil; before each event the clock
+ * jumps straight to its time, so idle stretches cost nothing. Everything that
+ * shares this scheduler sees one deterministic interleaving.
+ */
+public final class DiscreteEventScheduler implements Scheduler {
+    private final VirtualClock clock;
+    private final PriorityQueue<Event> events = new PriorityQueue<>();
+    private long submitted;
+    private long executed;
+
+    public DiscreteEventScheduler(VirtualClock clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public VirtualClock clock() {
+        return clock;
+    }
+
+    // Run at the current virtual time, after anything already due now
+    @Override
+    public void execute(Runnable task) {
+        enqueue(task, clock.epochNanos(), 0);
+    }
+
+    @Override
+    public ScheduledTask schedule(Runnable task, long delay, TimeUnit unit) {
+        return enqueue(task, clock.epochNanos() + unit.toNanos(delay), 0);
+    }
+
+    @Override
+    public ScheduledTask scheduleAtFixedRate(Runnable task, long initialDelay, long period, TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be positive: " + period);
+        }
+        return enqueue(task, clock.epochNanos() + unit.toNanos(initialDelay), unit.toNanos(period));
+    }
+
+    // Run every event due up to and including endMillis, then leave the clock there
+    public void runUntil(long endMillis) {
+        long end = TimeUnit.MILLISECONDS.toNanos(endMillis);
+        while (true) {
+            Event event;
+            synchronized (this) {
+                event = events.peek();
+                if (event == null || event.time > end) {
+                    break;
+                }
+                events.poll();
+            }
+            run(event);
+        }
+        if (end > clock.epochNanos()) {
+            clock.advanceTo(end);
+        }
+    }
+
+    public void runFor(long duration, TimeUnit unit) {
+        runUntil(clock.currentTimeMillis() + unit.toMillis(duration));
+    }
+
+    public synchronized int getPendingCount() {
+        return events.size();
+    }
+
+    public synchronized long getExecutedCount() {
+        return executed;
+    }
+
+    private void run(Event event) {
+        if (event.cancelled) {
+            return;
+        }
+        clock.advanceTo(event.time);
+        try {
+            event.task.run();
+        } catch (RuntimeException e) {
+            System.out.println("Simulation task error: " + e.getMessage());
+        }
+        synchronized (this) {
+            executed++;
+            if (event.period > 0 && !event.cancelled) {
+                event.time += event.period;
+                event.sequence = submitted++;
+                events.add(event);
+            }
+        }
+    }
+
+    private synchronized Event enqueue(Runnable task, long time, long period) {
+        Event event = new Event(task, Math.max(time, clock.epochNanos()), period, submitted++);
+        events.add(event);
+        return event;
+    }
+
+    private static final class Event implements Comparable<Event>, ScheduledTask {
+        final Runnable task;
+        final long period;
+        long time;
+        long sequence;
+        volatile boolean cancelled;
+
+        Event(Runnable task, long time, long period, long sequence) {
+            this.task = task;
+            this.time = time;
+            this.period = period;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        @Override
+        public int compareTo(Event other) {
+            if (time != other.time) {
+                return Long.compare(time, other.time);
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+}
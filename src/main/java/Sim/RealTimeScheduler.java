@@ -0,0 +1,38 @@
+package Sim;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wall-clock scheduler backed by one ScheduledExecutorService thread
+ */
+public final class RealTimeScheduler implements Scheduler {
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    @Override
+    public Clock clock() {
+        return Clock.system();
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    @Override
+    public ScheduledTask schedule(Runnable task, long delay, TimeUnit unit) {
+        var future = executor.schedule(task, delay, unit);
+        return () -> future.cancel(false);
+    }
+
+    @Override
+    public ScheduledTask scheduleAtFixedRate(Runnable task, long initialDelay, long period, TimeUnit unit) {
+        var future = executor.scheduleAtFixedRate(task, initialDelay, period, unit);
+        return () -> future.cancel(false);
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,8 @@
+package Sim;
+
+/**
+ * Handle to a task submitted to a Scheduler
+ */
+public interface ScheduledTask {
+    void cancel();
+}
@@ -0,0 +1,17 @@
+package Sim;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Where bots run their timers and receive market data. Tasks submitted to
+ * one scheduler never run concurrently with each other, so a bot that uses a
+ * single scheduler needs no locking of its own.
+ */
+public interface Scheduler extends Executor {
+    Clock clock();
+
+    ScheduledTask schedule(Runnable task, long delay, TimeUnit unit);
+
+    ScheduledTask scheduleAtFixedRate(Runnable task, long initialDelay, long period, TimeUnit unit);
+}
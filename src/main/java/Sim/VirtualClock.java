@@ -0,0 +1,35 @@
+package Sim;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A clock that only moves when told to, normally by a DiscreteEventScheduler
+ */
+public final class VirtualClock extends Clock {
+    private volatile long nanos;
+
+    public VirtualClock(long startMillis) {
+        this.nanos = TimeUnit.MILLISECONDS.toNanos(startMillis);
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    @Override
+    public long epochNanos() {
+        return nanos;
+    }
+
+    public void advanceTo(long epochNanos) {
+        if (epochNanos < nanos) {
+            throw new IllegalArgumentException("Virtual time cannot move backwards: " + epochNanos + " < " + nanos);
+        }
+        nanos = epochNanos;
+    }
+
+    public void advanceBy(long duration, TimeUnit unit) {
+        advanceTo(nanos + unit.toNanos(duration));
+    }
+}
@@ -11,6 +11,7 @@ module org.example.nysesim {
     requires eu.hansolo.tilesfx;
     requires com.almasb.fxgl.all;
     requires java.desktop;
+    requires java.management;
     requires org.jfree.jfreechart;
     requires io.fair_acc.chartfx;
     requires io.fair_acc.dataset;
@@ -0,0 +1,41 @@
+package org.example.nysesim;
+
+import Backtest.BacktestResult;
+import Backtest.BacktestRunner;
+import Backtest.Scenario;
+import Backtest.Scenario.BotType;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Backtests the Main bot line-up over one trading day without a UI.
+ * Runs the scenario twice with the same seed to show the fills repeat.
+ *
+ * Usage: BacktestMain [seed] [yyyy-mm-dd]
+ */
+public class BacktestMain {
+    public static void main(String[] args) {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 42;
+        LocalDate day = args.length > 1 ? LocalDate.parse(args[1]) : LocalDate.of(2024, 1, 2);
+        long open = day.atTime(LocalTime.of(9, 30)).atZone(ZoneId.of("America/New_York")).toInstant().toEpochMilli();
+
+        Scenario scenario = new Scenario(seed, open, 390, TimeUnit.MINUTES)
+                .symbol("AAPL", 150)
+                .bots(BotType.MARKET_MAKER, "AAPL", 4, 50000, 2.0, 10)
+                .bots(BotType.HF_MARKET_MAKER, "AAPL", 3, 50000, 2.0, 10)
+                .bots(BotType.MOMENTUM, "AAPL", 3, 25000, 0.02, 5)
+                .bots(BotType.MEAN_REVERSION, "AAPL", 3, 30000, 0.03, 8)
+                .bots(BotType.RANDOM, "AAPL", 3, 20000, 0, 5);
+
+        BacktestRunner runner = new BacktestRunner();
+        BacktestResult first = runner.run(scenario);
+        BacktestResult second = runner.run(scenario);
+        System.out.print(first);
+        System.out.print(second);
+        System.out.println(first.getFillDigest() == second.getFillDigest()
+                ? "Runs are identical" : "Runs differ!");
+    }
+}
@@ -5,15 +5,66 @@ import Engine.*;
 import Banking.*;
 import Bots.BotManager;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
 public class Main {
-    public static void main(String[] args) {
-        // Create human traders
-        Portfolio user1 = new Portfolio(10000, "Alice");
-        Portfolio user2 = new Portfolio(10000, "Bob");
+    public static void main(String[] args) throws IOException {
+        // Every listed symbol matches on one of the exchange's engine threads
+        Exchange exchange = new Exchange();
+        OrderBook AAPL = exchange.listSymbol("AAPL", 5);
+        exchange.getExecutionReports().addListener(new ConsoleExecutionListener());
+
+        // With -Dnysesim.journal=<file>, pick up where the last run left off and keep journaling;
+        // with -Dnysesim.snapshots=<dir> as well, start from the latest snapshot and take one every minute
+        String journalFile = System.getProperty("nysesim.journal");
+        Map<String, Portfolio> recovered = new HashMap<>();
+        if (journalFile != null) {
+            String snapshotDir = System.getProperty("nysesim.snapshots");
+            Path snapshots = snapshotDir != null ? Path.of(snapshotDir) : null;
+            JournalRecovery recovery = JournalRecovery.recover(Path.of(journalFile), snapshots, exchange);
+            System.out.println(recovery);
+            for (Portfolio portfolio : recovery.getPortfolios()) {
+                recovered.put(portfolio.getUsername(), portfolio);
+            }
 
-        OrderBook AAPL = new OrderBook("AAPL", 5);
+            OrderJournal journal = new OrderJournal(Path.of(journalFile));
+            journal.resume(recovery);
+            exchange.setJournal(journal);
+            Snapshotter snapshotter = snapshots != null ? new Snapshotter(snapshots, journal) : null;
+            if (snapshotter != null) {
+                snapshotter.start(1, TimeUnit.MINUTES);
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                if (snapshotter != null) {
+                    snapshotter.stop();
+                }
+                exchange.stop();
+                try {
+                    journal.close();
+                } catch (IOException e) {
+                    System.out.println("Error closing journal: " + e.getMessage());
+                }
+            }));
+        }
+        exchange.start();
+
+        // Human traders, carrying on from their recovered portfolios if there are any
+        Portfolio user1 = recovered.containsKey("Alice") ? recovered.remove("Alice") : new Portfolio(10000, "Alice");
+        Portfolio user2 = recovered.containsKey("Bob") ? recovered.remove("Bob") : new Portfolio(10000, "Bob");
+
+        // Rank the humans and every bot by mark-to-market P&L
+        Leaderboard leaderboard = new Leaderboard();
+        exchange.setLeaderboard(leaderboard);
+        leaderboard.track(user1);
+        leaderboard.track(user2);
 
         BotManager botManager = new BotManager();
+        botManager.setLeaderboard(leaderboard);
+        botManager.usePortfolios(recovered.values());
 
         for (int i = 1; i <= 4; i++) {
             botManager.addMarketMaker("MarketMaker " + i, 50000, AAPL, 2.0, 10);
@@ -91,6 +142,7 @@ public class Main {
                     Thread.sleep(30000);
                     System.out.println("\n=== Market Statistics ===");
                     System.out.println(AAPL.getOrderBookStats());
+                    System.out.println(AAPL.getMetrics().snapshot());
                     System.out.println("Current Price: $" + String.format("%.2f", AAPL.getCurrentPrice()));
 
                     var recentCandles = AAPL.getRecentCandles(CandleManager.TimeFrame.ONE_MINUTE, 3);
@@ -101,6 +153,10 @@ public class Main {
                                 i+1, candle.getOpen(), candle.getHigh(),
                                 candle.getLow(), candle.getClose(), candle.getVolume());
                     }
+                    System.out.println("Leaderboard:");
+                    for (Leaderboard.Standing standing : leaderboard.top(5)) {
+                        System.out.println("  " + standing);
+                    }
                     System.out.println("========================\n");
                 }
             } catch (InterruptedException e) {
@@ -0,0 +1,79 @@
+package org.example.nysesim;
+
+import Banking.Portfolio;
+import Data.CandleManager;
+import Engine.OrderBook;
+import Replay.ReplayStats;
+import Replay.Tick;
+import Replay.TickCsv;
+import Replay.TickReader;
+import Replay.TickReplayer;
+import Sim.Clock;
+import Sim.VirtualClock;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Replays a recorded tick file into a fresh order book and prints the rate.
+ * CSV input is converted to a .ticks file next to it first.
+ *
+ * Usage: ReplayMain <file.ticks | file.csv symbol> [speed]
+ *   speed: 0 (default) as fast as possible, 1 recorded speed, N times faster
+ */
+public class ReplayMain {
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: ReplayMain <file.ticks | file.csv symbol> [speed]");
+            return;
+        }
+        Path path = Path.of(args[0]);
+        int next = 1;
+        if (args[0].endsWith(".csv")) {
+            if (args.length < 2) {
+                throw new IllegalArgumentException("CSV input needs a symbol");
+            }
+            Path binary = path.resolveSibling(path.getFileName().toString().replaceAll("\\.csv$", ".ticks"));
+            long records = TickCsv.toBinary(path, binary, args[1]);
+            System.out.println("Converted " + records + " ticks to " + binary);
+            path = binary;
+            next = 2;
+        }
+        double speed = args.length > next ? Double.parseDouble(args[next]) : 0;
+
+        try (TickReader reader = new TickReader(path)) {
+            // Open the book at the first recorded price and time
+            Tick first = new Tick();
+            while (reader.next(first) && first.getPriceCents() == 0) {
+                // Skip cancels and market orders
+            }
+            if (first.getPriceCents() == 0) {
+                System.out.println("No priced ticks in " + path);
+                return;
+            }
+            reader.seek(0);
+
+            VirtualClock clock = new VirtualClock(first.getTimestamp());
+            Clock.use(clock);
+            OrderBook book = new OrderBook(reader.getSymbol(), first.getPrice());
+            Portfolio tape = new Portfolio(1_000_000_000_000.0, "Replay");
+
+            System.out.println("Replaying " + reader.getRecordCount() + " ticks of " + reader.getSymbol() +
+                    (speed == 0 ? " as fast as possible" : " at " + speed + "x"));
+            ReplayStats stats = new TickReplayer(book, tape)
+                    .setSpeed(speed)
+                    .setClock(clock)
+                    .setProgressListener(10_000_000, progress -> System.out.println("  " + progress))
+                    .replay(reader);
+
+            System.out.println(stats);
+            System.out.println(book.getOrderBookStats());
+            var candles = book.getRecentCandles(CandleManager.TimeFrame.ONE_HOUR, 3);
+            for (int i = 0; i < candles.size(); i++) {
+                var candle = candles.get(i);
+                System.out.printf("  Candle %d: O=%.2f H=%.2f L=%.2f C=%.2f V=%.0f%n",
+                        i + 1, candle.getOpen(), candle.getHigh(), candle.getLow(), candle.getClose(), candle.getVolume());
+            }
+        }
+    }
+}
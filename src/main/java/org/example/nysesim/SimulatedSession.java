@@ -0,0 +1,81 @@
+package org.example.nysesim;
+
+import Data.CandleManager;
+import Engine.*;
+import Bots.BotManager;
+import Sim.Clock;
+import Sim.DiscreteEventScheduler;
+import Sim.VirtualClock;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a full 6.5 hour trading day on virtual time, as fast as the events can
+ * be processed. The book has no engine thread and every bot shares one
+ * discrete-event scheduler, so the whole session runs on this thread.
+ *
+ * Usage: SimulatedSession [yyyy-mm-dd]
+ */
+public class SimulatedSession {
+    private static final LocalTime OPEN = LocalTime.of(9, 30);
+    private static final LocalTime CLOSE = LocalTime.of(16, 0);
+    private static final ZoneId NEW_YORK = ZoneId.of("America/New_York");
+
+    public static void main(String[] args) {
+        LocalDate day = args.length > 0 ? LocalDate.parse(args[0]) : LocalDate.of(2024, 1, 2);
+        long open = day.atTime(OPEN).atZone(NEW_YORK).toInstant().toEpochMilli();
+        long close = day.atTime(CLOSE).atZone(NEW_YORK).toInstant().toEpochMilli();
+
+        // The clock has to be in place before the book stamps its first candles
+        VirtualClock clock = new VirtualClock(open);
+        Clock.use(clock);
+        DiscreteEventScheduler scheduler = new DiscreteEventScheduler(clock);
+
+        OrderBook AAPL = new OrderBook("AAPL", 150);
+        BotManager botManager = new BotManager(scheduler);
+
+        for (int i = 1; i <= 4; i++) {
+            botManager.addMarketMaker("MarketMaker " + i, 50000, AAPL, 2.0, 10);
+        }
+        for (int i = 1; i <= 3; i++) {
+            botManager.addHFMarketMakerBot("HFMM " + i, 50000, AAPL, 2.0, 10);
+        }
+        for (int i = 1; i <= 3; i++) {
+            botManager.addMomentumBot("MomentumTrader" + i, 25000, AAPL, 0.02, 5);
+        }
+        for (int i = 1; i <= 3; i++) {
+            botManager.addMeanReversionBot("MeanReverter" + i, 30000, AAPL, 0.03, 8);
+        }
+        for (int i = 1; i <= 3; i++) {
+            botManager.addRandomBot("RandomTrader" + i, 20000, AAPL, 5);
+        }
+
+        System.out.println("=== Simulated session " + day + " ===");
+        long wallStart = System.nanoTime();
+
+        // Hourly statistics are just another event on the virtual timeline
+        scheduler.scheduleAtFixedRate(() -> {
+            System.out.println("\n=== " + Instant.ofEpochMilli(clock.currentTimeMillis()).atZone(NEW_YORK).toLocalTime() + " ===");
+            System.out.println(AAPL.getOrderBookStats());
+            System.out.println("Current Price: $" + String.format("%.2f", AAPL.getCurrentPrice()));
+        }, 1, 1, TimeUnit.HOURS);
+
+        scheduler.runUntil(close);
+        botManager.stopAllBots();
+
+        long wallMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - wallStart);
+        System.out.println("\n=== Session closed ===");
+        System.out.println("Events processed: " + scheduler.getExecutedCount() + " in " + wallMillis + " ms");
+        System.out.println(AAPL.getOrderBookStats());
+        var candles = AAPL.getRecentCandles(CandleManager.TimeFrame.ONE_HOUR, 7);
+        for (int i = 0; i < candles.size(); i++) {
+            var candle = candles.get(i);
+            System.out.printf("  Candle %d: O=%.2f H=%.2f L=%.2f C=%.2f V=%.0f%n",
+                    i + 1, candle.getOpen(), candle.getHigh(), candle.getLow(), candle.getClose(), candle.getVolume());
+        }
+    }
+}